@@ -0,0 +1,1240 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Generates version-aware message classes from Kafka-style JSON schemas. Runs with the single-file
+// launcher so it needs nothing but a JDK: java MessageGenerator.java <schema dir> <output dir>
+public class MessageGenerator {
+    static final String PACKAGE = "messages.generated";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java MessageGenerator.java <schema dir> <output dir>");
+            System.exit(1);
+        }
+        Path schemaDir = Paths.get(args[0]);
+        Path outputDir = Paths.get(args[1]).resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(outputDir);
+
+        List<Path> schemas = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(schemaDir, "*.json")) {
+            stream.forEach(schemas::add);
+        }
+        schemas.sort(Comparator.naturalOrder());
+
+        for (Path schema : schemas) {
+            MessageSpec spec;
+            try {
+                spec = MessageSpec.parse(Json.parse(Files.readString(schema)));
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid schema " + schema.getFileName() + ": " + e.getMessage(), e);
+            }
+            String source = new ClassWriter(spec, schema.getFileName().toString()).write();
+            Path target = outputDir.resolve(spec.root.name + ".java");
+            // Leave unchanged files alone so incremental compiles stay incremental
+            if (!Files.exists(target) || !Files.readString(target).equals(source)) {
+                Files.writeString(target, source, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    // Minimal JSON reader; also accepts // line comments
+    static final class Json {
+        private final String text;
+        private int pos;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        static Object parse(String text) {
+            Json json = new Json(text);
+            Object value = json.value();
+            json.skipWhitespace();
+            if (json.pos != text.length()) {
+                throw json.error("Trailing content");
+            }
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                map.put(key, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return map;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return list;
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(escaped);
+                }
+            }
+        }
+
+        private Object number() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Unexpected character '" + text.charAt(pos) + "'");
+            }
+            String number = text.substring(start, pos);
+            if (number.contains(".") || number.contains("e") || number.contains("E")) {
+                return Double.parseDouble(number);
+            }
+            return Long.parseLong(number);
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, pos)) {
+                throw error("Expected " + word);
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (text.startsWith("//", pos)) {
+                    while (pos < text.length() && text.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private char next() {
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(pos++);
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            int line = 1;
+            for (int i = 0; i < pos && i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return new IllegalArgumentException(message + " at line " + line);
+        }
+    }
+
+    // Inclusive version range; "3+", "0-11", "5" or "none"
+    static final class Versions {
+        static final Versions NONE = new Versions(0, -1);
+        static final int MAX = Short.MAX_VALUE;
+
+        final int lowest;
+        final int highest;
+
+        Versions(int lowest, int highest) {
+            this.lowest = lowest;
+            this.highest = highest;
+        }
+
+        static Versions parse(Object value, Versions defaultVersions) {
+            if (value == null) {
+                return defaultVersions;
+            }
+            String text = value.toString().trim();
+            if (text.equals("none")) {
+                return NONE;
+            }
+            if (text.endsWith("+")) {
+                return new Versions(Integer.parseInt(text.substring(0, text.length() - 1)), MAX);
+            }
+            int dash = text.indexOf('-');
+            if (dash > 0) {
+                return new Versions(Integer.parseInt(text.substring(0, dash)), Integer.parseInt(text.substring(dash + 1)));
+            }
+            int version = Integer.parseInt(text);
+            return new Versions(version, version);
+        }
+
+        boolean isEmpty() {
+            return lowest > highest;
+        }
+
+        Versions intersect(Versions other) {
+            Versions result = new Versions(Math.max(lowest, other.lowest), Math.min(highest, other.highest));
+            return result.isEmpty() ? NONE : result;
+        }
+
+        boolean contains(Versions other) {
+            return other.isEmpty() || (lowest <= other.lowest && other.highest <= highest);
+        }
+
+        boolean equalsRange(Versions other) {
+            return (isEmpty() && other.isEmpty()) || (lowest == other.lowest && highest == other.highest);
+        }
+
+        // Java condition true exactly for the versions of this range that lie within `within`,
+        // or null when that is every version of `within`
+        String condition(Versions within) {
+            Versions present = intersect(within);
+            if (present.isEmpty()) {
+                return "false";
+            }
+            if (present.equalsRange(within)) {
+                return null;
+            }
+            List<String> parts = new ArrayList<>();
+            if (present.lowest > within.lowest) {
+                parts.add("version >= " + present.lowest);
+            }
+            if (present.highest < within.highest) {
+                parts.add("version <= " + present.highest);
+            }
+            return String.join(" && ", parts);
+        }
+    }
+
+    static final Set<String> SCALAR_TYPES = Set.of(
+            "bool", "int8", "int16", "uint16", "int32", "int64", "float64", "string", "bytes", "uuid", "records");
+
+    static final class FieldSpec {
+        String name;
+        String type;            // Schema type, e.g. "int32", "[]FetchTopic"
+        Versions versions;
+        Versions nullableVersions;
+        Versions taggedVersions;
+        int tag = -1;
+        String defaultValue;
+        String about;
+        StructSpec struct;      // Element struct for struct and struct-array fields
+
+        boolean isArray() {
+            return type.startsWith("[]");
+        }
+
+        String elementType() {
+            return isArray() ? type.substring(2) : type;
+        }
+
+        boolean isStruct() {
+            return !SCALAR_TYPES.contains(elementType());
+        }
+
+        boolean isTagged() {
+            return tag >= 0;
+        }
+
+        boolean canBeNull() {
+            return isArray() || isStruct() || type.equals("string") || type.equals("bytes") || type.equals("records");
+        }
+
+        String fieldName() {
+            return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+
+    static final class StructSpec {
+        final String name;
+        final Versions versions;
+        final List<FieldSpec> fields = new ArrayList<>();
+
+        StructSpec(String name, Versions versions) {
+            this.name = name;
+            this.versions = versions;
+        }
+
+        boolean hasTaggedFields() {
+            return fields.stream().anyMatch(FieldSpec::isTagged);
+        }
+    }
+
+    static final class MessageSpec {
+        String name;
+        String type;
+        int apiKey;
+        Versions validVersions;
+        Versions flexibleVersions;
+        StructSpec root;
+        final Map<String, StructSpec> structs = new LinkedHashMap<>(); // Nested structs in declaration order
+        final Map<String, List<Object>> commonStructs = new LinkedHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        static MessageSpec parse(Object json) {
+            Map<String, Object> root = (Map<String, Object>) json;
+            MessageSpec spec = new MessageSpec();
+            spec.name = required(root, "name").toString();
+            spec.type = required(root, "type").toString();
+            spec.apiKey = root.containsKey("apiKey") ? ((Number) root.get("apiKey")).intValue() : -1;
+            spec.validVersions = Versions.parse(required(root, "validVersions"), null);
+            spec.flexibleVersions = Versions.parse(root.get("flexibleVersions"), Versions.NONE);
+            List<Object> common = (List<Object>) root.getOrDefault("commonStructs", List.of());
+            for (Object struct : common) {
+                Map<String, Object> structJson = (Map<String, Object>) struct;
+                spec.commonStructs.put(required(structJson, "name").toString(), (List<Object>) required(structJson, "fields"));
+            }
+            spec.root = new StructSpec(spec.name + "Data", spec.validVersions);
+            spec.parseFields(spec.root, (List<Object>) required(root, "fields"));
+            return spec;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void parseFields(StructSpec struct, List<Object> fieldsJson) {
+            Set<Integer> tags = new TreeSet<>();
+            for (Object fieldObject : fieldsJson) {
+                Map<String, Object> fieldJson = (Map<String, Object>) fieldObject;
+                FieldSpec field = new FieldSpec();
+                field.name = required(fieldJson, "name").toString();
+                field.type = required(fieldJson, "type").toString();
+                field.versions = Versions.parse(required(fieldJson, "versions"), null);
+                field.nullableVersions = Versions.parse(fieldJson.get("nullableVersions"), Versions.NONE);
+                field.taggedVersions = Versions.parse(fieldJson.get("taggedVersions"), Versions.NONE);
+                if (fieldJson.containsKey("tag")) {
+                    field.tag = ((Number) fieldJson.get("tag")).intValue();
+                    if (field.taggedVersions.isEmpty()) {
+                        throw new IllegalArgumentException("Tagged field " + field.name + " has no taggedVersions");
+                    }
+                    if (!tags.add(field.tag)) {
+                        throw new IllegalArgumentException("Duplicate tag " + field.tag + " in " + struct.name);
+                    }
+                }
+                Object defaultValue = fieldJson.get("default");
+                field.defaultValue = defaultValue == null ? null : defaultValue.toString();
+                field.about = fieldJson.containsKey("about") ? fieldJson.get("about").toString() : null;
+
+                if (field.isStruct()) {
+                    String structName = field.elementType();
+                    List<Object> nestedFields = (List<Object>) fieldJson.get("fields");
+                    if (nestedFields == null) {
+                        nestedFields = commonStructs.get(structName);
+                    }
+                    if (nestedFields == null) {
+                        throw new IllegalArgumentException("Unknown type " + field.type + " for field " + field.name);
+                    }
+                    StructSpec existing = structs.get(structName);
+                    if (existing != null) {
+                        field.struct = existing;
+                    } else {
+                        field.struct = new StructSpec(structName, field.versions.intersect(struct.versions));
+                        structs.put(structName, field.struct);
+                        parseFields(field.struct, nestedFields);
+                    }
+                } else if (fieldJson.containsKey("fields")) {
+                    throw new IllegalArgumentException("Field " + field.name + " of type " + field.type + " cannot have fields");
+                }
+                struct.fields.add(field);
+            }
+        }
+
+        private static Object required(Map<String, Object> json, String key) {
+            Object value = json.get(key);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing \"" + key + "\" in " + json.getOrDefault("name", "schema"));
+            }
+            return value;
+        }
+    }
+
+    // Whether a piece of code runs in flexible versions only, legacy versions only, or both
+    static final class Flex {
+        static final Flex ALWAYS = new Flex(null);
+        static final Flex NEVER = new Flex(null);
+
+        final String condition;
+
+        private Flex(String condition) {
+            this.condition = condition;
+        }
+
+        static Flex of(Versions flexibleVersions, Versions versions) {
+            String condition = flexibleVersions.condition(versions);
+            if (condition == null) {
+                return ALWAYS;
+            }
+            if (condition.equals("false")) {
+                return NEVER;
+            }
+            return new Flex(condition);
+        }
+
+        boolean isMixed() {
+            return this != ALWAYS && this != NEVER;
+        }
+
+        String pick(String flexible, String legacy) {
+            if (this == ALWAYS) {
+                return flexible;
+            }
+            if (this == NEVER) {
+                return legacy;
+            }
+            return "(flexible ? " + flexible + " : " + legacy + ")";
+        }
+    }
+
+    static final class CodeBuffer {
+        private final StringBuilder sb = new StringBuilder();
+        private int indent;
+
+        void line(String line) {
+            if (line.startsWith("}")) {
+                indent--;
+            }
+            if (!line.isEmpty()) {
+                sb.append("    ".repeat(Math.max(0, indent)));
+            }
+            sb.append(line).append('\n');
+            if (line.endsWith("{")) {
+                indent++;
+            }
+        }
+
+        void incr() {
+            indent++;
+        }
+
+        void decr() {
+            indent--;
+        }
+
+        // Run `flexible` or `legacy` depending on the mode, branching at runtime when it is mixed
+        void choose(Flex flex, Runnable flexible, Runnable legacy) {
+            if (flex == Flex.ALWAYS) {
+                flexible.run();
+            } else if (flex == Flex.NEVER) {
+                legacy.run();
+            } else {
+                line("if (flexible) {");
+                flexible.run();
+                line("} else {");
+                legacy.run();
+                line("}");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+
+    static final class ClassWriter {
+        private final MessageSpec spec;
+        private final String schemaFile;
+
+        ClassWriter(MessageSpec spec, String schemaFile) {
+            this.spec = spec;
+            this.schemaFile = schemaFile;
+        }
+
+        String write() {
+            CodeBuffer body = new CodeBuffer();
+            writeStruct(body, spec.root, true);
+
+            String text = body.toString();
+            Set<String> imports = new TreeSet<>();
+            imports.add("Kafka.ByteBufferTypes");
+            imports.add("java.io.IOException");
+            imports.add("java.nio.ByteBuffer");
+            imports.add("java.util.Objects");
+            if (text.contains("RawTaggedField")) imports.add("Kafka.RawTaggedField");
+            if (text.contains("ArrayList<")) imports.add("java.util.ArrayList");
+            if (text.contains("List<")) imports.add("java.util.List");
+            if (text.contains("UUID")) imports.add("java.util.UUID");
+            if (text.contains("Arrays.")) imports.add("java.util.Arrays");
+
+            StringBuilder out = new StringBuilder();
+            out.append("// Generated by MessageGenerator from ").append(schemaFile).append(". Do not edit.\n");
+            out.append("package ").append(PACKAGE).append(";\n\n");
+            boolean javaGroup = false;
+            for (String name : imports) {
+                if (name.startsWith("java.") && !javaGroup) {
+                    out.append('\n');
+                    javaGroup = true;
+                }
+                out.append("import ").append(name).append(";\n");
+            }
+            out.append('\n').append(text);
+            return out.toString();
+        }
+
+        private void writeStruct(CodeBuffer b, StructSpec struct, boolean topLevel) {
+            Flex flex = Flex.of(spec.flexibleVersions, struct.versions);
+            boolean taggedSection = flex != Flex.NEVER;
+
+            // Final, so the constructors that call read() do not leak this to a subclass
+            b.line((topLevel ? "public final class " : "public static final class ") + struct.name + " {");
+            if (topLevel) {
+                if (spec.apiKey >= 0) {
+                    b.line("public static final short API_KEY = " + spec.apiKey + ";");
+                }
+                b.line("public static final short LOWEST_SUPPORTED_VERSION = " + spec.validVersions.lowest + ";");
+                b.line("public static final short HIGHEST_SUPPORTED_VERSION = " + spec.validVersions.highest + ";");
+                // Short.MAX_VALUE when no version is flexible
+                b.line("public static final short LOWEST_FLEXIBLE_VERSION = "
+                        + (spec.flexibleVersions.isEmpty() ? Versions.MAX : spec.flexibleVersions.lowest) + ";");
+                b.line("");
+            }
+            for (FieldSpec field : struct.fields) {
+                if (field.about != null) {
+                    b.line("// " + field.about);
+                }
+                b.line("private " + javaType(field) + " " + field.fieldName() + ";");
+            }
+            if (taggedSection) {
+                b.line("private List<RawTaggedField> unknownTaggedFields;");
+            }
+            b.line("");
+
+            // Constructors
+            b.line("public " + struct.name + "() {");
+            for (FieldSpec field : struct.fields) {
+                b.line("this." + field.fieldName() + " = " + defaultValue(field) + ";");
+            }
+            b.line("}");
+            b.line("");
+            b.line("public " + struct.name + "(ByteBuffer buffer, short version) throws IOException {");
+            b.line("read(buffer, version);");
+            b.line("}");
+            b.line("");
+
+            writeRead(b, struct, flex, topLevel);
+            b.line("");
+            writeWrite(b, struct, flex);
+            b.line("");
+            writeSize(b, struct, flex);
+            b.line("");
+            writeAccessors(b, struct, taggedSection);
+            writeEquals(b, struct);
+            b.line("");
+            writeToString(b, struct);
+
+            if (topLevel) {
+                for (StructSpec nested : spec.structs.values()) {
+                    b.line("");
+                    writeStruct(b, nested, false);
+                }
+            }
+            b.line("}");
+        }
+
+        private void writeRead(CodeBuffer b, StructSpec struct, Flex flex, boolean topLevel) {
+            b.line("public void read(ByteBuffer buffer, short version) throws IOException {");
+            if (topLevel) {
+                b.line("if (version < LOWEST_SUPPORTED_VERSION || version > HIGHEST_SUPPORTED_VERSION) {");
+                b.line("throw new IllegalArgumentException(\"Can't read version \" + version + \" of " + struct.name + "\");");
+                b.line("}");
+            }
+            if (flex.isMixed()) {
+                b.line("boolean flexible = " + flex.condition + ";");
+            }
+            for (FieldSpec field : struct.fields) {
+                String target = "this." + field.fieldName();
+                if (field.isTagged()) {
+                    b.line(target + " = " + defaultValue(field) + ";"); // Overwritten if the tag is present
+                    continue;
+                }
+                String present = field.versions.condition(struct.versions);
+                if ("false".equals(present)) {
+                    b.line(target + " = " + defaultValue(field) + ";");
+                    continue;
+                }
+                if (present != null) {
+                    b.line("if (" + present + ") {");
+                }
+                readField(b, field, struct.versions, target, fieldFlex(field, struct));
+                if (present != null) {
+                    b.line("} else {");
+                    b.line(target + " = " + defaultValue(field) + ";");
+                    b.line("}");
+                }
+            }
+            if (flex != Flex.NEVER) {
+                b.line("this.unknownTaggedFields = null;");
+                if (flex.isMixed()) {
+                    b.line("if (flexible) {");
+                }
+                b.line("int numTaggedFields = ByteBufferTypes.decodeVarint(buffer);");
+                b.line("for (int t = 0; t < numTaggedFields; t++) {");
+                b.line("int tag = ByteBufferTypes.decodeVarint(buffer);");
+                b.line("int size = ByteBufferTypes.decodeVarint(buffer);");
+                String unknown = "this.unknownTaggedFields = RawTaggedField.read(this.unknownTaggedFields, tag, size, buffer);";
+                if (struct.hasTaggedFields()) {
+                    b.line("switch (tag) {");
+                    for (FieldSpec field : taggedFields(struct)) {
+                        b.line("case " + field.tag + ":");
+                        b.incr();
+                        String present = taggedCondition(field, struct);
+                        if (present != null) {
+                            b.line("if (" + present + ") {");
+                        }
+                        readField(b, field, struct.versions, "this." + field.fieldName(), Flex.ALWAYS);
+                        if (present != null) {
+                            b.line("} else {");
+                            b.line(unknown);
+                            b.line("}");
+                        }
+                        b.line("break;");
+                        b.decr();
+                    }
+                    b.line("default:");
+                    b.incr();
+                    b.line(unknown);
+                    b.line("break;");
+                    b.decr();
+                    b.line("}");
+                } else {
+                    b.line(unknown);
+                }
+                b.line("}");
+                if (flex.isMixed()) {
+                    b.line("}");
+                }
+            }
+            b.line("}");
+        }
+
+        private void readField(CodeBuffer b, FieldSpec field, Versions structVersions, String target, Flex flex) {
+            Versions present = field.versions.intersect(structVersions);
+            String nullable = field.nullableVersions.condition(present);
+            if (field.isArray()) {
+                b.line("{");
+                b.line("int length = " + flex.pick("ByteBufferTypes.decodeVarint(buffer) - 1", "buffer.getInt()") + ";");
+                b.line("if (length < 0) {");
+                nullOrThrow(b, field, nullable, target);
+                b.line("} else {");
+                b.line("ByteBufferTypes.checkLength(buffer, length);");
+                b.line("ArrayList<" + boxedElementType(field) + "> list = new ArrayList<>(length);");
+                b.line("for (int i = 0; i < length; i++) {");
+                b.line("list.add(" + readElement(field, flex) + ");");
+                b.line("}");
+                b.line(target + " = list;");
+                b.line("}");
+                b.line("}");
+            } else if (field.isStruct()) {
+                if ("false".equals(nullable)) {
+                    b.line(target + " = new " + field.struct.name + "(buffer, version);");
+                } else {
+                    String marker = nullable == null ? "buffer.get() < 0" : "(" + nullable + ") && buffer.get() < 0";
+                    b.line("if (" + marker + ") {");
+                    b.line(target + " = null;");
+                    b.line("} else {");
+                    b.line(target + " = new " + field.struct.name + "(buffer, version);");
+                    b.line("}");
+                }
+            } else {
+                b.line(target + " = " + readScalar(field.type, flex) + ";");
+                if (field.canBeNull() && nullable != null) {
+                    String check = nullable.equals("false") ? target + " == null" : target + " == null && !(" + nullable + ")";
+                    b.line("if (" + check + ") {");
+                    b.line("throw new IOException(\"non-nullable field " + field.fieldName() + " was serialized as null\");");
+                    b.line("}");
+                }
+            }
+        }
+
+        private void nullOrThrow(CodeBuffer b, FieldSpec field, String nullable, String target) {
+            if (nullable == null) {
+                b.line(target + " = null;");
+            } else if (nullable.equals("false")) {
+                b.line("throw new IOException(\"non-nullable field " + field.fieldName() + " was serialized as null\");");
+            } else {
+                b.line("if (!(" + nullable + ")) {");
+                b.line("throw new IOException(\"non-nullable field " + field.fieldName() + " was serialized as null\");");
+                b.line("}");
+                b.line(target + " = null;");
+            }
+        }
+
+        private String readElement(FieldSpec field, Flex flex) {
+            if (field.isStruct()) {
+                return "new " + field.struct.name + "(buffer, version)";
+            }
+            return readScalar(field.elementType(), flex);
+        }
+
+        private String readScalar(String type, Flex flex) {
+            switch (type) {
+                case "bool": return "ByteBufferTypes.decodeBoolean(buffer)";
+                case "int8": return "buffer.get()";
+                case "int16": return "buffer.getShort()";
+                case "uint16": return "Short.toUnsignedInt(buffer.getShort())";
+                case "int32": return "buffer.getInt()";
+                case "int64": return "buffer.getLong()";
+                case "float64": return "buffer.getDouble()";
+                case "uuid": return "ByteBufferTypes.decodeUUID(buffer)";
+                case "string": return flex.pick("ByteBufferTypes.decodeCompactString(buffer)", "ByteBufferTypes.decodeString(buffer)");
+                case "bytes": return flex.pick("ByteBufferTypes.decodeCompactBytes(buffer)", "ByteBufferTypes.decodeBytes(buffer)");
+                case "records": return flex.pick("ByteBufferTypes.decodeCompactRecords(buffer)", "ByteBufferTypes.decodeRecords(buffer)");
+                default: throw new IllegalArgumentException("Not a scalar type: " + type);
+            }
+        }
+
+        private void writeWrite(CodeBuffer b, StructSpec struct, Flex flex) {
+            b.line("public void write(ByteBuffer buffer, short version) {");
+            if (flex.isMixed()) {
+                b.line("boolean flexible = " + flex.condition + ";");
+            }
+            for (FieldSpec field : struct.fields) {
+                if (field.isTagged()) {
+                    continue;
+                }
+                String present = field.versions.condition(struct.versions);
+                if ("false".equals(present)) {
+                    continue;
+                }
+                if (present != null) {
+                    b.line("if (" + present + ") {");
+                }
+                writeField(b, field, struct.versions, "this." + field.fieldName(), fieldFlex(field, struct));
+                if (present != null) {
+                    b.line("}");
+                }
+            }
+            if (flex != Flex.NEVER) {
+                if (flex.isMixed()) {
+                    b.line("if (flexible) {");
+                }
+                b.line("int numTaggedFields = RawTaggedField.count(this.unknownTaggedFields);");
+                for (FieldSpec field : taggedFields(struct)) {
+                    b.line("if (" + taggedPresent(field, struct) + ") {");
+                    b.line("numTaggedFields++;");
+                    b.line("}");
+                }
+                b.line("ByteBufferTypes.encodeVarint(buffer, numTaggedFields);");
+                for (FieldSpec field : taggedFields(struct)) {
+                    String sizeVar = field.fieldName() + "Size";
+                    b.line("if (" + taggedPresent(field, struct) + ") {");
+                    b.line("ByteBufferTypes.encodeVarint(buffer, " + field.tag + ");");
+                    b.line("int " + sizeVar + " = 0;");
+                    sizeField(b, field, struct.versions, "this." + field.fieldName(), Flex.ALWAYS, sizeVar);
+                    b.line("ByteBufferTypes.encodeVarint(buffer, " + sizeVar + ");");
+                    writeField(b, field, struct.versions, "this." + field.fieldName(), Flex.ALWAYS);
+                    b.line("}");
+                }
+                b.line("RawTaggedField.writeAll(buffer, this.unknownTaggedFields);");
+                if (flex.isMixed()) {
+                    b.line("}");
+                }
+            }
+            b.line("}");
+        }
+
+        private void writeField(CodeBuffer b, FieldSpec field, Versions structVersions, String value, Flex flex) {
+            Versions present = field.versions.intersect(structVersions);
+            String nullable = field.nullableVersions.condition(present);
+            if (field.isArray()) {
+                boolean canBeNull = !"false".equals(nullable);
+                if (canBeNull) {
+                    b.line("if (" + value + " == null) {");
+                    b.choose(flex, () -> b.line("ByteBufferTypes.encodeVarint(buffer, 0);"), () -> b.line("buffer.putInt(-1);"));
+                    b.line("} else {");
+                }
+                b.choose(flex,
+                        () -> b.line("ByteBufferTypes.encodeVarint(buffer, " + value + ".size() + 1);"),
+                        () -> b.line("buffer.putInt(" + value + ".size());"));
+                b.line("for (" + boxedElementType(field) + " element : " + value + ") {");
+                if (field.isStruct()) {
+                    b.line("element.write(buffer, version);");
+                } else {
+                    writeScalar(b, field.elementType(), "element", flex);
+                }
+                b.line("}");
+                if (canBeNull) {
+                    b.line("}");
+                }
+            } else if (field.isStruct()) {
+                if ("false".equals(nullable)) {
+                    b.line(value + ".write(buffer, version);");
+                } else {
+                    if (nullable != null) {
+                        b.line("if (" + nullable + ") {");
+                    }
+                    b.line("buffer.put(" + value + " == null ? (byte) -1 : (byte) 1);");
+                    if (nullable != null) {
+                        b.line("}");
+                    }
+                    b.line("if (" + value + " != null) {");
+                    b.line(value + ".write(buffer, version);");
+                    b.line("}");
+                }
+            } else {
+                writeScalar(b, field.type, value, flex);
+            }
+        }
+
+        private void writeScalar(CodeBuffer b, String type, String value, Flex flex) {
+            switch (type) {
+                case "bool": b.line("ByteBufferTypes.encodeBoolean(buffer, " + value + ");"); break;
+                case "int8": b.line("buffer.put(" + value + ");"); break;
+                case "int16": b.line("buffer.putShort(" + value + ");"); break;
+                case "uint16": b.line("buffer.putShort((short) " + value + ");"); break;
+                case "int32": b.line("buffer.putInt(" + value + ");"); break;
+                case "int64": b.line("buffer.putLong(" + value + ");"); break;
+                case "float64": b.line("buffer.putDouble(" + value + ");"); break;
+                case "uuid": b.line("ByteBufferTypes.encodeUUID(buffer, " + value + ");"); break;
+                case "string":
+                    b.choose(flex, () -> b.line("ByteBufferTypes.encodeCompactString(buffer, " + value + ");"),
+                            () -> b.line("ByteBufferTypes.encodeString(buffer, " + value + ");"));
+                    break;
+                case "bytes":
+                    b.choose(flex, () -> b.line("ByteBufferTypes.encodeCompactBytes(buffer, " + value + ");"),
+                            () -> b.line("ByteBufferTypes.encodeBytes(buffer, " + value + ");"));
+                    break;
+                case "records":
+                    b.choose(flex, () -> b.line("ByteBufferTypes.encodeCompactRecords(buffer, " + value + ");"),
+                            () -> b.line("ByteBufferTypes.encodeRecords(buffer, " + value + ");"));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a scalar type: " + type);
+            }
+        }
+
+        private void writeSize(CodeBuffer b, StructSpec struct, Flex flex) {
+            b.line("// Exact number of bytes write() produces for this version");
+            b.line("public int size(short version) {");
+            if (flex.isMixed()) {
+                b.line("boolean flexible = " + flex.condition + ";");
+            }
+            b.line("int size = 0;");
+            for (FieldSpec field : struct.fields) {
+                if (field.isTagged()) {
+                    continue;
+                }
+                String present = field.versions.condition(struct.versions);
+                if ("false".equals(present)) {
+                    continue;
+                }
+                if (present != null) {
+                    b.line("if (" + present + ") {");
+                }
+                sizeField(b, field, struct.versions, "this." + field.fieldName(), fieldFlex(field, struct), "size");
+                if (present != null) {
+                    b.line("}");
+                }
+            }
+            if (flex != Flex.NEVER) {
+                if (flex.isMixed()) {
+                    b.line("if (flexible) {");
+                }
+                b.line("int numTaggedFields = RawTaggedField.count(this.unknownTaggedFields);");
+                for (FieldSpec field : taggedFields(struct)) {
+                    String sizeVar = field.fieldName() + "Size";
+                    b.line("if (" + taggedPresent(field, struct) + ") {");
+                    b.line("numTaggedFields++;");
+                    b.line("int " + sizeVar + " = 0;");
+                    sizeField(b, field, struct.versions, "this." + field.fieldName(), Flex.ALWAYS, sizeVar);
+                    b.line("size += ByteBufferTypes.sizeOfVarint(" + field.tag + ") + ByteBufferTypes.sizeOfVarint("
+                            + sizeVar + ") + " + sizeVar + ";");
+                    b.line("}");
+                }
+                b.line("size += ByteBufferTypes.sizeOfVarint(numTaggedFields) + RawTaggedField.sizeOf(this.unknownTaggedFields);");
+                if (flex.isMixed()) {
+                    b.line("}");
+                }
+            }
+            b.line("return size;");
+            b.line("}");
+        }
+
+        private void sizeField(CodeBuffer b, FieldSpec field, Versions structVersions, String value, Flex flex, String target) {
+            Versions present = field.versions.intersect(structVersions);
+            String nullable = field.nullableVersions.condition(present);
+            if (field.isArray()) {
+                boolean canBeNull = !"false".equals(nullable);
+                if (canBeNull) {
+                    b.line("if (" + value + " == null) {");
+                    b.line(target + " += " + flex.pick("1", "4") + ";");
+                    b.line("} else {");
+                }
+                b.line(target + " += " + flex.pick("ByteBufferTypes.sizeOfVarint(" + value + ".size() + 1)", "4") + ";");
+                String fixed = fixedSize(field.elementType());
+                if (fixed != null) {
+                    b.line(target + " += " + value + ".size() * " + fixed + ";");
+                } else {
+                    b.line("for (" + boxedElementType(field) + " element : " + value + ") {");
+                    if (field.isStruct()) {
+                        b.line(target + " += element.size(version);");
+                    } else {
+                        b.line(target + " += " + sizeScalar(field.elementType(), "element", flex) + ";");
+                    }
+                    b.line("}");
+                }
+                if (canBeNull) {
+                    b.line("}");
+                }
+            } else if (field.isStruct()) {
+                if ("false".equals(nullable)) {
+                    b.line(target + " += " + value + ".size(version);");
+                } else {
+                    if (nullable == null) {
+                        b.line(target + " += 1;");
+                    } else {
+                        b.line("if (" + nullable + ") {");
+                        b.line(target + " += 1;");
+                        b.line("}");
+                    }
+                    b.line("if (" + value + " != null) {");
+                    b.line(target + " += " + value + ".size(version);");
+                    b.line("}");
+                }
+            } else {
+                b.line(target + " += " + sizeScalar(field.type, value, flex) + ";");
+            }
+        }
+
+        private String fixedSize(String type) {
+            switch (type) {
+                case "bool":
+                case "int8": return "1";
+                case "int16":
+                case "uint16": return "2";
+                case "int32": return "4";
+                case "int64":
+                case "float64": return "8";
+                case "uuid": return "16";
+                default: return null;
+            }
+        }
+
+        private String sizeScalar(String type, String value, Flex flex) {
+            String fixed = fixedSize(type);
+            if (fixed != null) {
+                return fixed;
+            }
+            switch (type) {
+                case "string": return flex.pick("ByteBufferTypes.sizeOfCompactString(" + value + ")", "ByteBufferTypes.sizeOfString(" + value + ")");
+                case "bytes": return flex.pick("ByteBufferTypes.sizeOfCompactBytes(" + value + ")", "ByteBufferTypes.sizeOfBytes(" + value + ")");
+                case "records": return flex.pick("ByteBufferTypes.sizeOfCompactRecords(" + value + ")", "ByteBufferTypes.sizeOfRecords(" + value + ")");
+                default: throw new IllegalArgumentException("Not a scalar type: " + type);
+            }
+        }
+
+        private void writeAccessors(CodeBuffer b, StructSpec struct, boolean taggedSection) {
+            for (FieldSpec field : struct.fields) {
+                String type = javaType(field);
+                String accessor = field.name;
+                b.line("public " + type + " get" + accessor + "() {");
+                b.line("return " + field.fieldName() + ";");
+                b.line("}");
+                b.line("");
+                b.line("public " + struct.name + " set" + accessor + "(" + type + " " + field.fieldName() + ") {");
+                b.line("this." + field.fieldName() + " = " + field.fieldName() + ";");
+                b.line("return this;");
+                b.line("}");
+                b.line("");
+            }
+            if (taggedSection) {
+                b.line("// Tagged fields this schema does not define, kept so they can be written back");
+                b.line("public List<RawTaggedField> getUnknownTaggedFields() {");
+                b.line("return unknownTaggedFields == null ? List.of() : unknownTaggedFields;");
+                b.line("}");
+                b.line("");
+            }
+        }
+
+        private void writeEquals(CodeBuffer b, StructSpec struct) {
+            b.line("@Override");
+            b.line("public boolean equals(Object o) {");
+            b.line("if (this == o) {");
+            b.line("return true;");
+            b.line("}");
+            b.line("if (!(o instanceof " + struct.name + ")) {");
+            b.line("return false;");
+            b.line("}");
+            if (struct.fields.isEmpty()) {
+                b.line("return true;");
+            } else {
+                b.line(struct.name + " other = (" + struct.name + ") o;");
+                List<String> comparisons = new ArrayList<>();
+                for (FieldSpec field : struct.fields) {
+                    String name = field.fieldName();
+                    if (field.type.equals("bytes")) {
+                        comparisons.add("Arrays.equals(" + name + ", other." + name + ")");
+                    } else if (isPrimitive(field)) {
+                        comparisons.add(name + " == other." + name);
+                    } else {
+                        comparisons.add("Objects.equals(" + name + ", other." + name + ")");
+                    }
+                }
+                for (int i = 0; i < comparisons.size(); i++) {
+                    String prefix = i == 0 ? "return " : "        && ";
+                    String suffix = i == comparisons.size() - 1 ? ";" : "";
+                    b.line(prefix + comparisons.get(i) + suffix);
+                }
+            }
+            b.line("}");
+            b.line("");
+            b.line("@Override");
+            b.line("public int hashCode() {");
+            List<String> values = new ArrayList<>();
+            for (FieldSpec field : struct.fields) {
+                values.add(field.type.equals("bytes") ? "Arrays.hashCode(" + field.fieldName() + ")" : field.fieldName());
+            }
+            b.line("return Objects.hash(" + String.join(", ", values) + ");");
+            b.line("}");
+        }
+
+        private void writeToString(CodeBuffer b, StructSpec struct) {
+            b.line("@Override");
+            b.line("public String toString() {");
+            StringBuilder expr = new StringBuilder("\"" + struct.name + "{");
+            for (int i = 0; i < struct.fields.size(); i++) {
+                FieldSpec field = struct.fields.get(i);
+                String value = field.type.equals("bytes") ? "Arrays.toString(" + field.fieldName() + ")" : field.fieldName();
+                expr.append(i == 0 ? "" : ", ").append(field.fieldName()).append("=\" + ").append(value).append(" + \"");
+            }
+            expr.append("}\"");
+            b.line("return " + expr + ";");
+            b.line("}");
+        }
+
+        private Flex fieldFlex(FieldSpec field, StructSpec struct) {
+            return Flex.of(spec.flexibleVersions, field.versions.intersect(struct.versions));
+        }
+
+        private List<FieldSpec> taggedFields(StructSpec struct) {
+            List<FieldSpec> tagged = new ArrayList<>();
+            for (FieldSpec field : struct.fields) {
+                if (field.isTagged()) {
+                    tagged.add(field);
+                }
+            }
+            tagged.sort(Comparator.comparingInt(field -> field.tag)); // Tags go on the wire in ascending order
+            return tagged;
+        }
+
+        // Condition, within the flexible versions of a struct, under which a tagged field is defined
+        private String taggedCondition(FieldSpec field, StructSpec struct) {
+            Versions flexible = spec.flexibleVersions.intersect(struct.versions);
+            return field.taggedVersions.intersect(field.versions).condition(flexible);
+        }
+
+        // A tagged field is only written when it is defined for the version and not at its default
+        private String taggedPresent(FieldSpec field, StructSpec struct) {
+            String condition = taggedCondition(field, struct);
+            String notDefault = isNotDefault(field, "this." + field.fieldName());
+            return condition == null ? notDefault : condition + " && " + notDefault;
+        }
+
+        private String isNotDefault(FieldSpec field, String value) {
+            String defaultValue = defaultValue(field);
+            if (defaultValue.equals("null")) {
+                return value + " != null";
+            }
+            if (isPrimitive(field)) {
+                return value + " != " + defaultValue;
+            }
+            if (field.isArray()) {
+                return "!" + value + ".isEmpty()";
+            }
+            if (field.type.equals("bytes")) {
+                return value + ".length != 0";
+            }
+            return "!" + defaultValue + ".equals(" + value + ")";
+        }
+
+        private static boolean isPrimitive(FieldSpec field) {
+            switch (field.type) {
+                case "bool":
+                case "int8":
+                case "int16":
+                case "uint16":
+                case "int32":
+                case "int64":
+                case "float64":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private String defaultValue(FieldSpec field) {
+            String value = field.defaultValue;
+            if (value != null && value.equals("null")) {
+                if (field.nullableVersions.isEmpty()) {
+                    throw new IllegalArgumentException("Field " + field.name + " defaults to null but is never nullable");
+                }
+                return "null";
+            }
+            if (field.isArray()) {
+                return "new ArrayList<>(0)";
+            }
+            if (field.isStruct()) {
+                return "new " + field.struct.name + "()";
+            }
+            switch (field.type) {
+                case "bool":
+                    return value == null ? "false" : Boolean.toString(Boolean.parseBoolean(value));
+                case "int8":
+                    return value == null ? "(byte) 0" : "(byte) " + value;
+                case "int16":
+                    return value == null ? "(short) 0" : "(short) " + value;
+                case "uint16":
+                case "int32":
+                    return value == null ? "0" : value;
+                case "int64":
+                    return value == null ? "0L" : value + "L";
+                case "float64":
+                    return value == null ? "0.0" : value;
+                case "string":
+                    return value == null ? "\"\"" : "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+                case "bytes":
+                    return "new byte[0]";
+                case "uuid":
+                    return "new UUID(0L, 0L)";
+                case "records":
+                    return "null";
+                default:
+                    throw new IllegalArgumentException("Unknown type " + field.type);
+            }
+        }
+
+        private String javaType(FieldSpec field) {
+            if (field.isArray()) {
+                return "List<" + boxedElementType(field) + ">";
+            }
+            if (field.isStruct()) {
+                return field.struct.name;
+            }
+            return scalarJavaType(field.type);
+        }
+
+        private String boxedElementType(FieldSpec field) {
+            if (field.isStruct()) {
+                return field.struct.name;
+            }
+            String type = scalarJavaType(field.elementType());
+            switch (type) {
+                case "boolean": return "Boolean";
+                case "byte": return "Byte";
+                case "short": return "Short";
+                case "int": return "Integer";
+                case "long": return "Long";
+                case "double": return "Double";
+                default: return type;
+            }
+        }
+
+        private static String scalarJavaType(String type) {
+            switch (type) {
+                case "bool": return "boolean";
+                case "int8": return "byte";
+                case "int16": return "short";
+                case "uint16":
+                case "int32": return "int";
+                case "int64": return "long";
+                case "float64": return "double";
+                case "string": return "String";
+                case "bytes": return "byte[]";
+                case "uuid": return "UUID";
+                case "records": return "ByteBuffer";
+                default: throw new IllegalArgumentException("Unknown type " + type);
+            }
+        }
+    }
+}
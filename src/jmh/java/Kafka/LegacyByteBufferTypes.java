@@ -0,0 +1,53 @@
+package Kafka;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// The varint methods of ByteBufferTypes as they were before they delegated to Varint, kept
+// unchanged as the benchmark baseline
+final class LegacyByteBufferTypes {
+    private LegacyByteBufferTypes() {
+    }
+
+    // Unsigned base-128 varint, at most 5 bytes
+    public static int decodeVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value; // Continuation bit not set
+            }
+        }
+        throw new IOException("Varint too long: exceeds 5 bytes");
+    }
+
+    // Unsigned base-128 varlong, at most 10 bytes
+    public static long decodeVarlong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varlong too long: exceeds 10 bytes");
+    }
+
+    public static void encodeVarint(ByteBuffer buffer, int value) {
+        while ((value & 0xFFFFFF80) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static void encodeVarlong(ByteBuffer buffer, long value) {
+        while ((value & 0xFFFFFFFFFFFFFF80L) != 0L) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,139 @@
+package Kafka;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Varint against the ByteBufferTypes methods it replaced (LegacyByteBufferTypes), over value mixes
+// shaped like record fields: "small" is offset deltas and short lengths (1-2 bytes), "mixed" adds
+// timestamp-delta sized values. The *Legacy baselines add the zigzag step so both sides do the same work.
+// Run with: mvn -Pbenchmark package && java -cp target/codecrafters-kafka.jar org.openjdk.jmh.Main Varint
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VarintBenchmark {
+    private static final int COUNT = 1024;
+
+    @Param({"small", "mixed"})
+    public String distribution;
+
+    private final int[] ints = new int[COUNT];
+    private final long[] longs = new long[COUNT];
+    private final int[] intsOut = new int[COUNT];
+    private ByteBuffer encodedInts;
+    private ByteBuffer encodedLongs;
+    private ByteBuffer output;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            if (distribution.equals("small")) {
+                ints[i] = random.nextInt(8192) - 64;
+                longs[i] = random.nextInt(8192);
+            } else {
+                ints[i] = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(128);
+                longs[i] = random.nextInt(4) == 0 ? random.nextLong() >> random.nextInt(64) : random.nextInt(128);
+            }
+        }
+        encodedInts = ByteBuffer.allocate(COUNT * 5);
+        encodedLongs = ByteBuffer.allocate(COUNT * 10);
+        for (int i = 0; i < COUNT; i++) {
+            Varint.writeVarint(encodedInts, ints[i]);
+            Varint.writeVarlong(encodedLongs, longs[i]);
+        }
+        encodedInts.flip();
+        encodedLongs.flip();
+        output = ByteBuffer.allocate(COUNT * 10);
+    }
+
+    @Benchmark
+    public void decodeVarintLegacy(Blackhole blackhole) throws IOException {
+        ByteBuffer buffer = encodedInts.duplicate();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(Varint.decodeZigZag(LegacyByteBufferTypes.decodeVarint(buffer)));
+        }
+    }
+
+    @Benchmark
+    public void decodeVarint(Blackhole blackhole) throws IOException {
+        ByteBuffer buffer = encodedInts.duplicate();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(Varint.readVarint(buffer));
+        }
+    }
+
+    @Benchmark
+    public int[] decodeVarintBulk() throws IOException {
+        return Varint.readVarints(encodedInts.duplicate(), intsOut, 0, COUNT);
+    }
+
+    @Benchmark
+    public void decodeVarlongLegacy(Blackhole blackhole) throws IOException {
+        ByteBuffer buffer = encodedLongs.duplicate();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(Varint.decodeZigZag(LegacyByteBufferTypes.decodeVarlong(buffer)));
+        }
+    }
+
+    @Benchmark
+    public void decodeVarlong(Blackhole blackhole) throws IOException {
+        ByteBuffer buffer = encodedLongs.duplicate();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(Varint.readVarlong(buffer));
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVarintLegacy() {
+        output.clear();
+        for (int i = 0; i < COUNT; i++) {
+            LegacyByteBufferTypes.encodeVarint(output, Varint.encodeZigZag(ints[i]));
+        }
+        return output;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVarint() {
+        output.clear();
+        for (int i = 0; i < COUNT; i++) {
+            Varint.writeVarint(output, ints[i]);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVarlongLegacy() {
+        output.clear();
+        for (int i = 0; i < COUNT; i++) {
+            LegacyByteBufferTypes.encodeVarlong(output, Varint.encodeZigZag(longs[i]));
+        }
+        return output;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVarlong() {
+        output.clear();
+        for (int i = 0; i < COUNT; i++) {
+            Varint.writeVarlong(output, longs[i]);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,163 @@
+import Kafka.Logger;
+import Kafka.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// Connection scaling and request latency of the server modes: "thread" is the cached thread pool,
+// "virtual" a virtual thread per connection and "reactor" the selector-based SocketServer. Each of the
+// THREADS benchmark threads holds connections / THREADS open sockets and sends ApiVersions round-robin
+// over them, so every idle connection costs the server what it costs in production (two platform
+// threads each in "thread" mode). SampleTime reports p99 next to the mean.
+// Run with: mvn -Pbenchmark package && java -cp target/codecrafters-kafka.jar org.openjdk.jmh.Main ServerMode
+// The largest connection count needs ulimit -n above 2 * connections.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1) // The server runs in the forked JVM and goes away with it
+@Threads(ServerModeBenchmark.THREADS)
+public class ServerModeBenchmark {
+    static final int THREADS = 8;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"thread", "virtual", "reactor"})
+        public String mode;
+
+        @Param({"16", "256", "2048"})
+        public int connections;
+
+        int port;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            try (ServerSocket probe = new ServerSocket(0)) {
+                port = probe.getLocalPort();
+            }
+            Properties properties = new Properties();
+            properties.setProperty(ServerConfig.SERVER_MODE, mode);
+            properties.setProperty(ServerConfig.LOG_LEVEL, "WARN");
+            ServerConfig config = new ServerConfig(properties);
+            Logger.configure(config);
+            KafkaServer server = new KafkaServer("localhost", port, config);
+            Thread serverThread = new Thread(() -> {
+                try {
+                    server.start();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, "benchmark-server");
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            // Wait until the server accepts connections
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (true) {
+                try {
+                    SocketChannel.open(new InetSocketAddress("localhost", port)).close();
+                    return;
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                    Thread.sleep(50);
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private SocketChannel[] channels;
+        private final ByteBuffer request = apiVersionsRequest();
+        private final ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+        private ByteBuffer response = ByteBuffer.allocate(1024);
+        private int next;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            channels = new SocketChannel[Math.max(1, server.connections / THREADS)];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = SocketChannel.open(new InetSocketAddress("localhost", server.port));
+                channels[i].socket().setTcpNoDelay(true);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            for (SocketChannel channel : channels) {
+                channel.close();
+            }
+        }
+
+        // Send one request on the next connection and read its whole response
+        int roundTrip() throws IOException {
+            SocketChannel channel = channels[next];
+            next = (next + 1) % channels.length;
+
+            request.rewind();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            sizeBuffer.clear();
+            readFully(channel, sizeBuffer);
+            int size = sizeBuffer.getInt(0);
+            if (response.capacity() < size) {
+                response = ByteBuffer.allocate(size);
+            }
+            response.clear().limit(size);
+            readFully(channel, response);
+            return size;
+        }
+
+        private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Server closed the connection");
+                }
+            }
+        }
+
+        // ApiVersions v4: request header v2 and a body of two compact strings
+        private static ByteBuffer apiVersionsRequest() {
+            byte[] clientId = "bench".getBytes();
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            buffer.putInt(0); // Size, patched below
+            buffer.putShort((short) 18).putShort((short) 4).putInt(1); // api_key, api_version, correlation_id
+            buffer.putShort((short) clientId.length).put(clientId);
+            buffer.put((byte) 0); // Header tagged fields
+            buffer.put((byte) (clientId.length + 1)).put(clientId); // client_software_name
+            buffer.put((byte) 2).put((byte) '1'); // client_software_version
+            buffer.put((byte) 0); // Body tagged fields
+            buffer.putInt(0, buffer.position() - 4);
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    @Benchmark
+    public int apiVersions(Client client) throws IOException {
+        return client.roundTrip();
+    }
+}
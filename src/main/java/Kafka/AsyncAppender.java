@@ -0,0 +1,149 @@
+package Kafka;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded lock-free ring buffer of log events drained by a single writer thread. Each slot carries
+// a sequence number telling producers and the writer whose turn it is, so appending is one CAS and
+// never blocks. When the ring is full the event is dropped and counted rather than stalling the caller
+public class AsyncAppender {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS").withZone(ZoneId.systemDefault());
+
+    private final LogEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // Next position producers claim
+    private long head = 0;                              // Next position the writer reads, writer thread only
+    private final AtomicLong dropped = new AtomicLong();
+    private final PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+    private final PrintStream err = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.err), 1 << 16), false);
+    private final Thread writer;
+    private volatile boolean sleeping = false;
+    private volatile boolean running = true;
+
+    // Constructor
+    public AsyncAppender(int bufferSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1; // Round up to a power of two
+        this.slots = new LogEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.writer = new Thread(this::drainLoop, "kafka-log-appender");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queue an event for the writer thread, dropping it if the ring is full
+    public void append(LogEvent event) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) (position & mask);
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[slot] = event;
+                    sequences.set(slot, position + 1); // Publish to the writer
+                    break;
+                }
+            } else if (sequence < position) {
+                dropped.incrementAndGet(); // Writer has not freed this slot yet
+                return;
+            }
+        }
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // Stop the writer after it has written everything already queued
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private LogEvent poll() {
+        int slot = (int) (head & mask);
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        LogEvent event = slots[slot];
+        slots[slot] = null;
+        sequences.set(slot, head + slots.length); // Hand the slot back to producers one lap later
+        head++;
+        return event;
+    }
+
+    private void drainLoop() {
+        while (true) {
+            LogEvent event = poll();
+            if (event != null) {
+                write(event);
+                continue;
+            }
+            reportDropped();
+            out.flush();
+            err.flush();
+            if (!running) {
+                return;
+            }
+            // Re-check after announcing we are asleep so a concurrent append is not missed
+            sleeping = true;
+            if (tail.get() == head && running) {
+                LockSupport.parkNanos(100_000_000L);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void reportDropped() {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            err.println(TIMESTAMP_FORMAT.format(Instant.now()) + " [WARN] [kafka-log-appender] AsyncAppender - "
+                    + count + " log messages dropped, the log buffer was full");
+        }
+    }
+
+    private void write(LogEvent event) {
+        PrintStream stream = event.level.ordinal() >= LogLevel.WARN.ordinal() ? err : out;
+        stream.println(TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(event.timestampMs)) + " [" + event.level + "] ["
+                + event.threadName + "] " + event.loggerName + " - " + event.message);
+        if (event.error != null) {
+            event.error.printStackTrace(stream);
+        }
+    }
+
+    public static class LogEvent {
+        private final long timestampMs;
+        private final LogLevel level;
+        private final String threadName;
+        private final String loggerName;
+        private final String message;
+        private final Throwable error;
+
+        // Constructor
+        public LogEvent(long timestampMs, LogLevel level, String threadName, String loggerName, String message, Throwable error) {
+            this.timestampMs = timestampMs;
+            this.level = level;
+            this.threadName = threadName;
+            this.loggerName = loggerName;
+            this.message = message;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package Kafka;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+// Kafka protocol types read from and written to a ByteBuffer (heap or direct). Relative methods
+// advance the buffer position; absolute get/put methods take an index and leave it untouched.
+// Running out of bytes surfaces as BufferUnderflowException/BufferOverflowException, malformed
+// lengths as IOException
+public class ByteBufferTypes {
+
+    // Relative decode methods
+    public static boolean decodeBoolean(ByteBuffer buffer) {
+        return buffer.get() != 0;
+    }
+
+    public static byte decodeInt8(ByteBuffer buffer) {
+        return buffer.get();
+    }
+
+    public static short decodeInt16(ByteBuffer buffer) {
+        return buffer.getShort();
+    }
+
+    public static int decodeInt32(ByteBuffer buffer) {
+        return buffer.getInt();
+    }
+
+    public static long decodeInt64(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+
+    public static long decodeUInt32(ByteBuffer buffer) {
+        return Integer.toUnsignedLong(buffer.getInt());
+    }
+
+    public static double decodeFloat64(ByteBuffer buffer) {
+        return buffer.getDouble();
+    }
+
+    public static UUID decodeUUID(ByteBuffer buffer) {
+        long mostSigBits = buffer.getLong();
+        long leastSigBits = buffer.getLong();
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    // Unsigned base-128 varint, at most 5 bytes, for compact lengths and tags. Record fields are
+    // zigzag encoded and go through Varint.readVarint instead
+    public static int decodeVarint(ByteBuffer buffer) throws IOException {
+        return Varint.readUnsignedVarint(buffer);
+    }
+
+    // Unsigned base-128 varlong, at most 10 bytes
+    public static long decodeVarlong(ByteBuffer buffer) throws IOException {
+        return Varint.readUnsignedVarlong(buffer);
+    }
+
+    public static String decodeString(ByteBuffer buffer) throws IOException {
+        return readString(buffer, buffer.getShort());
+    }
+
+    public static String decodeCompactString(ByteBuffer buffer) throws IOException {
+        return readString(buffer, decodeVarint(buffer) - 1); // Compact encoding adds 1 to length
+    }
+
+    public static byte[] decodeBytes(ByteBuffer buffer) throws IOException {
+        return readBytes(buffer, buffer.getInt());
+    }
+
+    public static byte[] decodeCompactBytes(ByteBuffer buffer) throws IOException {
+        return readBytes(buffer, decodeVarint(buffer) - 1);
+    }
+
+    // Record sets are copied out, since request buffers go back to the pool once decoded
+    public static ByteBuffer decodeRecords(ByteBuffer buffer) throws IOException {
+        byte[] bytes = decodeBytes(buffer);
+        return bytes == null ? null : ByteBuffer.wrap(bytes);
+    }
+
+    public static ByteBuffer decodeCompactRecords(ByteBuffer buffer) throws IOException {
+        byte[] bytes = decodeCompactBytes(buffer);
+        return bytes == null ? null : ByteBuffer.wrap(bytes);
+    }
+
+    public static <T> List<T> decodeArray(ByteBuffer buffer, BufferDecoder<T> decoder) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        return readElements(buffer, length, decoder);
+    }
+
+    // A null compact array decodes as an empty list
+    public static <T> List<T> decodeCompactArray(ByteBuffer buffer, BufferDecoder<T> decoder) throws IOException {
+        int length = decodeVarint(buffer) - 1; // Compact array length
+        if (length < 0) {
+            return new ArrayList<>();
+        }
+        return readElements(buffer, length, decoder);
+    }
+
+    // Skip every tagged field; none of the supported messages define any yet
+    public static void decodeTaggedFields(ByteBuffer buffer) throws IOException {
+        int numFields = decodeVarint(buffer);
+        for (int i = 0; i < numFields; i++) {
+            decodeVarint(buffer); // Tag
+            int size = decodeVarint(buffer);
+            skip(buffer, size);
+        }
+    }
+
+    public static void skip(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Cannot skip " + length + " bytes with " + buffer.remaining() + " remaining");
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    // Absolute decode methods
+    public static byte getInt8(ByteBuffer buffer, int index) {
+        return buffer.get(index);
+    }
+
+    public static short getInt16(ByteBuffer buffer, int index) {
+        return buffer.getShort(index);
+    }
+
+    public static int getInt32(ByteBuffer buffer, int index) {
+        return buffer.getInt(index);
+    }
+
+    public static long getInt64(ByteBuffer buffer, int index) {
+        return buffer.getLong(index);
+    }
+
+    public static long getUInt32(ByteBuffer buffer, int index) {
+        return Integer.toUnsignedLong(buffer.getInt(index));
+    }
+
+    public static UUID getUUID(ByteBuffer buffer, int index) {
+        return new UUID(buffer.getLong(index), buffer.getLong(index + 8));
+    }
+
+    // Varint starting at index; its encoded length is sizeOfVarint(value)
+    public static int getVarint(ByteBuffer buffer, int index) throws IOException {
+        return Varint.getUnsignedVarint(buffer, index);
+    }
+
+    // Relative encode methods
+    public static void encodeBoolean(ByteBuffer buffer, boolean value) {
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    public static void encodeInt8(ByteBuffer buffer, byte value) {
+        buffer.put(value);
+    }
+
+    public static void encodeInt16(ByteBuffer buffer, short value) {
+        buffer.putShort(value);
+    }
+
+    public static void encodeInt32(ByteBuffer buffer, int value) {
+        buffer.putInt(value);
+    }
+
+    public static void encodeInt64(ByteBuffer buffer, long value) {
+        buffer.putLong(value);
+    }
+
+    public static void encodeUInt32(ByteBuffer buffer, long value) {
+        buffer.putInt(checkUInt32(value));
+    }
+
+    public static void encodeFloat64(ByteBuffer buffer, double value) {
+        buffer.putDouble(value);
+    }
+
+    public static void encodeUUID(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    public static void encodeVarint(ByteBuffer buffer, int value) {
+        Varint.writeUnsignedVarint(buffer, value);
+    }
+
+    public static void encodeVarlong(ByteBuffer buffer, long value) {
+        Varint.writeUnsignedVarlong(buffer, value);
+    }
+
+    public static void encodeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static void encodeCompactString(ByteBuffer buffer, String value) {
+        encodeCompactBytes(buffer, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void encodeBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    public static void encodeCompactBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            encodeVarint(buffer, 0); // Null, write 0
+        } else {
+            encodeVarint(buffer, value.length + 1); // Length with compact encoding
+            buffer.put(value);
+        }
+    }
+
+    public static void encodeRecords(ByteBuffer buffer, ByteBuffer records) {
+        if (records == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(records.remaining());
+            buffer.put(records.duplicate());
+        }
+    }
+
+    public static void encodeCompactRecords(ByteBuffer buffer, ByteBuffer records) {
+        if (records == null) {
+            encodeVarint(buffer, 0);
+        } else {
+            encodeVarint(buffer, records.remaining() + 1);
+            buffer.put(records.duplicate());
+        }
+    }
+
+    public static <T> void encodeArray(ByteBuffer buffer, List<T> array, BufferEncoder<T> encoder) throws IOException {
+        if (array == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(array.size());
+        for (T item : array) {
+            encoder.encode(buffer, item);
+        }
+    }
+
+    public static <T> void encodeCompactArray(ByteBuffer buffer, List<T> array, BufferEncoder<T> encoder) throws IOException {
+        if (array == null) {
+            encodeVarint(buffer, 0);
+            return;
+        }
+        encodeVarint(buffer, array.size() + 1);
+        for (T item : array) {
+            encoder.encode(buffer, item);
+        }
+    }
+
+    // Empty tagged field section
+    public static void encodeTaggedFields(ByteBuffer buffer) {
+        buffer.put((byte) 0);
+    }
+
+    // Absolute encode methods
+    public static void putInt8(ByteBuffer buffer, int index, byte value) {
+        buffer.put(index, value);
+    }
+
+    public static void putInt16(ByteBuffer buffer, int index, short value) {
+        buffer.putShort(index, value);
+    }
+
+    public static void putInt32(ByteBuffer buffer, int index, int value) {
+        buffer.putInt(index, value);
+    }
+
+    public static void putInt64(ByteBuffer buffer, int index, long value) {
+        buffer.putLong(index, value);
+    }
+
+    public static void putUInt32(ByteBuffer buffer, int index, long value) {
+        buffer.putInt(index, checkUInt32(value));
+    }
+
+    public static void putUUID(ByteBuffer buffer, int index, UUID uuid) {
+        buffer.putLong(index, uuid.getMostSignificantBits());
+        buffer.putLong(index + 8, uuid.getLeastSignificantBits());
+    }
+
+    // Write a varint at index, returning the number of bytes written
+    public static int putVarint(ByteBuffer buffer, int index, int value) {
+        return Varint.putUnsignedVarint(buffer, index, value);
+    }
+
+    // Sizes
+    public static int sizeOfVarint(int value) {
+        return Varint.sizeOfUnsignedVarint(value);
+    }
+
+    public static int sizeOfVarlong(long value) {
+        return Varint.sizeOfUnsignedVarlong(value);
+    }
+
+    public static int sizeOfCompactString(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = utf8Length(value);
+        return sizeOfVarint(length + 1) + length;
+    }
+
+    public static int sizeOfString(String value) {
+        return 2 + (value == null ? 0 : utf8Length(value));
+    }
+
+    public static int sizeOfCompactBytes(byte[] value) {
+        return value == null ? 1 : sizeOfVarint(value.length + 1) + value.length;
+    }
+
+    public static int sizeOfBytes(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    public static int sizeOfRecords(ByteBuffer records) {
+        return 4 + (records == null ? 0 : records.remaining());
+    }
+
+    public static int sizeOfCompactRecords(ByteBuffer records) {
+        return records == null ? 1 : sizeOfVarint(records.remaining() + 1) + records.remaining();
+    }
+
+    public static <T> int sizeOfArray(List<T> array, ToIntFunction<T> sizeOf) {
+        return array == null ? 4 : 4 + sizeOfElements(array, sizeOf);
+    }
+
+    public static <T> int sizeOfCompactArray(List<T> array, ToIntFunction<T> sizeOf) {
+        return array == null ? 1 : sizeOfVarint(array.size() + 1) + sizeOfElements(array, sizeOf);
+    }
+
+    // Empty tagged field section
+    public static int sizeOfTaggedFields() {
+        return 1;
+    }
+
+    // Encoded UTF-8 length without allocating the encoded bytes
+    public static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static <T> int sizeOfElements(List<T> array, ToIntFunction<T> sizeOf) {
+        int size = 0;
+        for (T item : array) {
+            size += sizeOf.applyAsInt(item);
+        }
+        return size;
+    }
+
+    private static int checkUInt32(long value) {
+        if (value < 0 || value > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Value out of range for unsigned 32-bit integer: " + value);
+        }
+        return (int) value;
+    }
+
+    private static String readString(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0) {
+            return null; // Nullable string
+        }
+        checkLength(buffer, length);
+        String value;
+        if (buffer.hasArray()) {
+            // Decode straight out of the backing array, no intermediate copy
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0) {
+            return null;
+        }
+        checkLength(buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static <T> List<T> readElements(ByteBuffer buffer, int length, BufferDecoder<T> decoder) throws IOException {
+        // Every element takes at least one byte, so a length beyond what is left is malformed
+        checkLength(buffer, length);
+        List<T> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(decoder.decode(buffer));
+        }
+        return list;
+    }
+
+    // Reject a length prefix that runs past the end of the buffer
+    public static void checkLength(ByteBuffer buffer, int length) throws IOException {
+        if (length > buffer.remaining()) {
+            throw new IOException("Length " + length + " exceeds the " + buffer.remaining() + " bytes remaining");
+        }
+    }
+
+    // Functional Interfaces
+    @FunctionalInterface
+    public interface BufferDecoder<T> {
+        T decode(ByteBuffer buffer) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BufferEncoder<T> {
+        void encode(ByteBuffer buffer, T value) throws IOException;
+    }
+}
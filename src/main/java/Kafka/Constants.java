@@ -1,13 +1,13 @@
 package Kafka;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class Constants {
 
     public enum ApiKey {
+        PRODUCE((short) 0),
         FETCH((short) 1),
+        LIST_OFFSETS((short) 2),
         API_VERSIONS((short) 18),
         DESCRIBE_TOPIC_PARTITIONS((short) 75);
 
@@ -21,8 +21,13 @@ public class Constants {
             return value;
         }
 
-        public static ApiKey decode(DataInputStream inputStream) throws IOException {
-            short shortValue = inputStream.readShort(); // Decode as 16-bit integer
+        // Cheap handshake and metadata calls that get their own priority lane
+        public boolean isControlPlane() {
+            return this == API_VERSIONS || this == DESCRIBE_TOPIC_PARTITIONS;
+        }
+
+        public static ApiKey decode(ByteBuffer buffer) {
+            short shortValue = buffer.getShort(); // Decode as 16-bit integer
             for (ApiKey apiKey : ApiKey.values()) {
                 if (apiKey.getValue() == shortValue) {
                     return apiKey;
@@ -31,16 +36,23 @@ public class Constants {
             throw new IllegalArgumentException("Unknown ApiKey: " + shortValue);
         }
 
-        public void encode(DataOutputStream outputStream) throws IOException {
-            outputStream.writeShort(value); // Encode as 16-bit integer
+        public void encode(ByteBuffer buffer) {
+            buffer.putShort(value); // Encode as 16-bit integer
         }
     }
 
 
     public enum ErrorCode {
         NONE(0),
+        OFFSET_OUT_OF_RANGE(1),
+        CORRUPT_MESSAGE(2),
         UNKNOWN_TOPIC_OR_PARTITION(3),
+        REQUEST_TIMED_OUT(7),
+        MESSAGE_TOO_LARGE(10),
+        INVALID_REQUIRED_ACKS(21),
         UNSUPPORTED_VERSION(35),
+        KAFKA_STORAGE_ERROR(56),
+        UNSUPPORTED_COMPRESSION_TYPE(76),
         UNKNOWN_TOPIC_ID(100);
 
         private final int value;
@@ -53,8 +65,8 @@ public class Constants {
             return value;
         }
 
-        public static ErrorCode decode(DataInputStream inputStream) throws IOException {
-            int intValue = inputStream.readShort(); // Decode as a 16-bit integer
+        public static ErrorCode decode(ByteBuffer buffer) {
+            int intValue = buffer.getShort(); // Decode as a 16-bit integer
             for (ErrorCode errorCode : ErrorCode.values()) {
                 if (errorCode.getValue() == intValue) {
                     return errorCode;
@@ -63,8 +75,8 @@ public class Constants {
             throw new IllegalArgumentException("Unknown ErrorCode: " + intValue);
         }
 
-        public void encode(DataOutputStream outputStream) throws IOException {
-            outputStream.writeShort(value); // Encode as a 16-bit integer
+        public void encode(ByteBuffer buffer) {
+            buffer.putShort((short) value); // Encode as a 16-bit integer
         }
     }
 }
@@ -0,0 +1,61 @@
+package Kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latencies counted in power-of-two buckets of microseconds: bucket i holds values below 2^i us.
+// Recording is a few atomic adds, and percentiles are reported as the upper bound of their bucket
+public class LatencyHistogram {
+    private static final int BUCKETS = 40; // Up to about 6 days
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    // Constructor
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    // Upper bound in microseconds of the bucket holding the given fraction of values, e.g. 0.99
+    public long percentileMicros(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        long total = count.get();
+        if (total == 0) {
+            return name + ": no samples";
+        }
+        return name + ": count=" + total + ", mean=" + totalNanos.get() / total / 1000 + "us"
+                + ", p50<" + percentileMicros(0.5) + "us, p99<" + percentileMicros(0.99) + "us"
+                + ", p999<" + percentileMicros(0.999) + "us, max=" + maxNanos.get() / 1000 + "us";
+    }
+}
@@ -0,0 +1,18 @@
+package Kafka;
+
+public enum LogLevel {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF;
+
+    public static LogLevel fromConfig(String value) {
+        try {
+            return LogLevel.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown log level: " + value);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package Kafka;
+
+import java.util.function.Supplier;
+
+// Level-gated logger. The level is fixed once at startup, so a disabled call is a single int
+// compare, and Supplier overloads skip building the message entirely. Enabled messages are handed
+// to the async appender; the calling thread never touches the console
+public final class Logger {
+    private static int threshold = LogLevel.INFO.ordinal();
+    private static AsyncAppender appender = new AsyncAppender(8192);
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    public static Logger getLogger(Class<?> clazz) {
+        return new Logger(clazz.getSimpleName());
+    }
+
+    // Called once from Main before the server starts any threads
+    public static void configure(ServerConfig config) {
+        threshold = config.getLogLevel().ordinal();
+        AsyncAppender previous = appender;
+        appender = new AsyncAppender(config.getLogBufferSize());
+        previous.close();
+    }
+
+    // Drain pending messages, e.g. before the JVM exits
+    public static void shutdown() {
+        appender.close();
+    }
+
+    public static boolean isEnabled(LogLevel level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(LogLevel.TRACE);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public void trace(Supplier<String> message) {
+        if (isEnabled(LogLevel.TRACE)) {
+            append(LogLevel.TRACE, message.get(), null);
+        }
+    }
+
+    public void debug(String message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            append(LogLevel.DEBUG, message, null);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            append(LogLevel.DEBUG, message.get(), null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(LogLevel.INFO)) {
+            append(LogLevel.INFO, message, null);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(LogLevel.INFO)) {
+            append(LogLevel.INFO, message.get(), null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(LogLevel.WARN)) {
+            append(LogLevel.WARN, message, null);
+        }
+    }
+
+    public void error(String message) {
+        if (isEnabled(LogLevel.ERROR)) {
+            append(LogLevel.ERROR, message, null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (isEnabled(LogLevel.ERROR)) {
+            append(LogLevel.ERROR, message, error);
+        }
+    }
+
+    private void append(LogLevel level, String message, Throwable error) {
+        appender.append(new AsyncAppender.LogEvent(System.currentTimeMillis(), level,
+                Thread.currentThread().getName(), name, message, error));
+    }
+}
@@ -0,0 +1,74 @@
+package Kafka;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// A tagged field the schema does not define, kept as raw bytes so it survives a decode/encode round trip
+public class RawTaggedField {
+    private final int tag;
+    private final byte[] data;
+
+    // Constructor
+    public RawTaggedField(int tag, byte[] data) {
+        this.tag = tag;
+        this.data = data;
+    }
+
+    // Getters
+    public int getTag() {
+        return tag;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    // Read the value of an unknown tag, creating the list on the first one so messages without
+    // unknown tags never allocate it
+    public static List<RawTaggedField> read(List<RawTaggedField> fields, int tag, int size, ByteBuffer buffer) throws IOException {
+        if (size < 0) {
+            throw new IOException("Negative size " + size + " for tagged field " + tag);
+        }
+        ByteBufferTypes.checkLength(buffer, size);
+        byte[] data = new byte[size];
+        buffer.get(data);
+        if (fields == null) {
+            fields = new ArrayList<>();
+        }
+        fields.add(new RawTaggedField(tag, data));
+        return fields;
+    }
+
+    public static int count(List<RawTaggedField> fields) {
+        return fields == null ? 0 : fields.size();
+    }
+
+    public static void writeAll(ByteBuffer buffer, List<RawTaggedField> fields) {
+        if (fields == null) {
+            return;
+        }
+        for (RawTaggedField field : fields) {
+            ByteBufferTypes.encodeVarint(buffer, field.tag);
+            ByteBufferTypes.encodeVarint(buffer, field.data.length);
+            buffer.put(field.data);
+        }
+    }
+
+    public static int sizeOf(List<RawTaggedField> fields) {
+        if (fields == null) {
+            return 0;
+        }
+        int size = 0;
+        for (RawTaggedField field : fields) {
+            size += ByteBufferTypes.sizeOfVarint(field.tag) + ByteBufferTypes.sizeOfVarint(field.data.length) + field.data.length;
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "RawTaggedField{tag=" + tag + ", size=" + data.length + "}";
+    }
+}
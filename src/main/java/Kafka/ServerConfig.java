@@ -0,0 +1,341 @@
+package Kafka;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+public class ServerConfig {
+
+    // Keys
+    public static final String SERVER_MODE = "server.mode";
+    public static final String NUM_NETWORK_THREADS = "num.network.threads";
+    public static final String NUM_IO_THREADS = "num.io.threads";
+    public static final String QUEUED_MAX_REQUESTS = "queued.max.requests";
+    public static final String QUEUED_MAX_CONTROL_PLANE_REQUESTS = "queued.max.control.plane.requests";
+    public static final String NUM_CONTROL_PLANE_IO_THREADS = "num.control.plane.io.threads";
+    public static final String SOCKET_REQUEST_MAX_BYTES = "socket.request.max.bytes";
+    public static final String MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION = "max.in.flight.requests.per.connection";
+    public static final String QUEUED_MAX_REQUEST_BYTES = "queued.max.request.bytes";
+    public static final String MEMORY_POOL_DIRECT = "memory.pool.direct";
+    public static final String MEMORY_POOL_WAIT_MS = "memory.pool.wait.ms";
+    public static final String QUOTA_WINDOW_NUM = "quota.window.num";
+    public static final String QUOTA_WINDOW_SIZE_SECONDS = "quota.window.size.seconds";
+    public static final String QUOTA_BYTE_RATE_DEFAULT = "quota.byte.rate.default";
+    public static final String QUOTA_REQUEST_RATE_DEFAULT = "quota.request.rate.default";
+    public static final String LOG_LEVEL = "log.level";
+    public static final String LOG_BUFFER_SIZE = "log.buffer.size";
+    public static final String LOG_DIRS = "log.dirs";
+    public static final String NUM_RECOVERY_THREADS_PER_DATA_DIR = "num.recovery.threads.per.data.dir";
+    public static final String LOG_SEGMENT_BYTES = "log.segment.bytes";
+    public static final String LOG_ROLL_MS = "log.roll.ms";
+    public static final String LOG_FLUSH_INTERVAL_MESSAGES = "log.flush.interval.messages";
+    public static final String LOG_FLUSH_INTERVAL_MS = "log.flush.interval.ms";
+    public static final String LOG_FLUSH_SCHEDULER_INTERVAL_MS = "log.flush.scheduler.interval.ms";
+    public static final String LOG_FLUSH_ON_ACKS_ALL = "log.flush.on.acks.all";
+    public static final String LOG_RETENTION_MS = "log.retention.ms";
+    public static final String LOG_RETENTION_BYTES = "log.retention.bytes";
+    public static final String LOG_RETENTION_CHECK_INTERVAL_MS = "log.retention.check.interval.ms";
+    public static final String LOG_SEGMENT_DELETE_DELAY_MS = "log.segment.delete.delay.ms";
+    public static final String LOG_CLEANUP_POLICY = "log.cleanup.policy";
+    public static final String COMPRESSION_TYPE = "compression.type";
+    public static final String LOG_DECOMPRESSED_MAX_BYTES = "log.decompressed.max.bytes";
+    public static final String LOG_CLEANER_ENABLE = "log.cleaner.enable";
+    public static final String LOG_CLEANER_BACKOFF_MS = "log.cleaner.backoff.ms";
+    public static final String LOG_CLEANER_DEDUPE_BUFFER_SIZE = "log.cleaner.dedupe.buffer.size";
+    public static final String LOG_CLEANER_IO_BUFFER_SIZE = "log.cleaner.io.buffer.size";
+    public static final String LOG_CLEANER_IO_BUFFER_LOAD_FACTOR = "log.cleaner.io.buffer.load.factor";
+    public static final String LOG_CLEANER_IO_MAX_BYTES_PER_SECOND = "log.cleaner.io.max.bytes.per.second";
+    public static final String LOG_CLEANER_MIN_CLEANABLE_RATIO = "log.cleaner.min.cleanable.ratio";
+    public static final String LOG_CLEANER_DELETE_RETENTION_MS = "log.cleaner.delete.retention.ms";
+    public static final String LOG_INDEX_INTERVAL_BYTES = "log.index.interval.bytes";
+    public static final String LOG_INDEX_SIZE_MAX_BYTES = "log.index.size.max.bytes";
+    public static final String LOG_MMAP_ENABLE = "log.mmap.enable";
+    public static final String LOG_MMAP_CHUNK_BYTES = "log.mmap.chunk.bytes";
+    public static final String LOG_MMAP_MAX_BYTES = "log.mmap.max.bytes";
+    public static final String LOG_READ_CACHE_MAX_BYTES = "log.read.cache.max.bytes";
+    public static final String RESPONSE_CACHE_MAX_ENTRIES = "response.cache.max.entries";
+
+    private final Properties properties;
+
+    // Constructor
+    public ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public ServerConfig() {
+        this(new Properties());
+    }
+
+    // Load the properties file passed as the first argument (if any), then apply -D overrides
+    public static ServerConfig load(String[] args) throws IOException {
+        Properties properties = new Properties();
+        if (args.length > 0 && Files.isRegularFile(Paths.get(args[0]))) {
+            try (InputStream inputStream = Files.newInputStream(Paths.get(args[0]))) {
+                properties.load(inputStream);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            properties.setProperty(name, System.getProperty(name));
+        }
+        return new ServerConfig(properties);
+    }
+
+    // Generic getters
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    // Typed getters
+    public String getServerMode() {
+        return getString(SERVER_MODE, "thread");
+    }
+
+    public int getNumNetworkThreads() {
+        return getInt(NUM_NETWORK_THREADS, 3);
+    }
+
+    public int getNumIoThreads() {
+        return getInt(NUM_IO_THREADS, 8);
+    }
+
+    public int getQueuedMaxRequests() {
+        return getInt(QUEUED_MAX_REQUESTS, 500);
+    }
+
+    public int getQueuedMaxControlPlaneRequests() {
+        return getInt(QUEUED_MAX_CONTROL_PLANE_REQUESTS, 500);
+    }
+
+    // Handler threads for one API; num.io.threads.<api> (e.g. num.io.threads.fetch) overrides the default
+    public int getNumIoThreads(Constants.ApiKey apiKey) {
+        int defaultThreads = apiKey.isControlPlane() ? getInt(NUM_CONTROL_PLANE_IO_THREADS, 2) : getNumIoThreads();
+        return Math.max(1, getInt(NUM_IO_THREADS + "." + apiKey.name().toLowerCase(), defaultThreads));
+    }
+
+    public int getSocketRequestMaxBytes() {
+        return getInt(SOCKET_REQUEST_MAX_BYTES, 100 * 1024 * 1024);
+    }
+
+    public int getMaxInFlightRequestsPerConnection() {
+        return Math.max(1, getInt(MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5));
+    }
+
+    // Budget for request buffers across all connections
+    public long getQueuedMaxRequestBytes() {
+        return getLong(QUEUED_MAX_REQUEST_BYTES, 256L * 1024 * 1024);
+    }
+
+    public boolean getMemoryPoolDirect() {
+        return getBoolean(MEMORY_POOL_DIRECT, false);
+    }
+
+    // How long a blocking connection waits for request memory before the request is rejected
+    public long getMemoryPoolWaitMs() {
+        return getLong(MEMORY_POOL_WAIT_MS, 30000);
+    }
+
+    public int getQuotaWindowNum() {
+        return getInt(QUOTA_WINDOW_NUM, 11);
+    }
+
+    public int getQuotaWindowSizeSeconds() {
+        return getInt(QUOTA_WINDOW_SIZE_SECONDS, 1);
+    }
+
+    // Bytes per second for a client id; quota.byte.rate.<clientId> overrides the default
+    public long getQuotaByteRate(String clientId) {
+        return getLong("quota.byte.rate." + clientId, getLong(QUOTA_BYTE_RATE_DEFAULT, Long.MAX_VALUE));
+    }
+
+    // Requests per second for a client id; quota.request.rate.<clientId> overrides the default
+    public long getQuotaRequestRate(String clientId) {
+        return getLong("quota.request.rate." + clientId, getLong(QUOTA_REQUEST_RATE_DEFAULT, Long.MAX_VALUE));
+    }
+
+    public LogLevel getLogLevel() {
+        return LogLevel.fromConfig(getString(LOG_LEVEL, "INFO"));
+    }
+
+    // Log events buffered for the appender thread before new ones are dropped
+    public int getLogBufferSize() {
+        return getInt(LOG_BUFFER_SIZE, 8192);
+    }
+
+    // Comma-separated directories holding the partition logs
+    public String getLogDirs() {
+        return getString(LOG_DIRS, "/tmp/kraft-combined-logs");
+    }
+
+    // Threads per log directory that open its partition logs at startup
+    public int getNumRecoveryThreadsPerDataDir() {
+        return getInt(NUM_RECOVERY_THREADS_PER_DATA_DIR, 1);
+    }
+
+    // Size at which the active segment is closed to appends and a new one started
+    public int getLogSegmentBytes() {
+        return getInt(LOG_SEGMENT_BYTES, 1024 * 1024 * 1024);
+    }
+
+    // Age at which a non-empty active segment is rolled even if it is not full
+    public long getLogRollMs() {
+        return getLong(LOG_ROLL_MS, 7 * 24 * 60 * 60 * 1000L);
+    }
+
+    // Unflushed messages in a partition that trigger a flush
+    public long getLogFlushIntervalMessages() {
+        return getLong(LOG_FLUSH_INTERVAL_MESSAGES, Long.MAX_VALUE);
+    }
+
+    // Longest a partition's appends stay unflushed
+    public long getLogFlushIntervalMs() {
+        return getLong(LOG_FLUSH_INTERVAL_MS, 1000);
+    }
+
+    // How often the flush scheduler checks the partitions when nothing wakes it earlier
+    public long getLogFlushSchedulerIntervalMs() {
+        return getLong(LOG_FLUSH_SCHEDULER_INTERVAL_MS, 100);
+    }
+
+    // Hold acks=-1 produce responses until the records have been flushed
+    public boolean getLogFlushOnAcksAll() {
+        return getBoolean(LOG_FLUSH_ON_ACKS_ALL, false);
+    }
+
+    // Age past which a segment is deleted, judged by its newest record; -1 keeps data forever.
+    // Topics override this with retention.ms
+    public long getLogRetentionMs() {
+        return getLong(LOG_RETENTION_MS, 7 * 24 * 60 * 60 * 1000L);
+    }
+
+    // Size past which a partition's oldest segments are deleted; -1 for no limit. Topics override
+    // this with retention.bytes
+    public long getLogRetentionBytes() {
+        return getLong(LOG_RETENTION_BYTES, -1);
+    }
+
+    public long getLogRetentionCheckIntervalMs() {
+        return getLong(LOG_RETENTION_CHECK_INTERVAL_MS, 5 * 60 * 1000L);
+    }
+
+    // How long a deleted segment's files stay open for fetches that were already reading them
+    public long getLogSegmentDeleteDelayMs() {
+        return getLong(LOG_SEGMENT_DELETE_DELAY_MS, 60 * 1000L);
+    }
+
+    // "delete", "compact" or both, comma separated. Topics override this with cleanup.policy
+    public String getLogCleanupPolicy() {
+        return getString(LOG_CLEANUP_POLICY, "delete");
+    }
+
+    // Codec appended batches are stored with: "producer" keeps whatever the producer used,
+    // "uncompressed" or a codec name such as "gzip" has the broker recompress. Topics override this
+    // with compression.type
+    public String getCompressionType() {
+        return getString(COMPRESSION_TYPE, "producer");
+    }
+
+    // Most a produce request's compressed batches may inflate to while they are validated; past it
+    // the request fails with CORRUPT_MESSAGE
+    public long getLogDecompressedMaxBytes() {
+        return getLong(LOG_DECOMPRESSED_MAX_BYTES, 64L * 1024 * 1024);
+    }
+
+    // Compact the logs of topics whose cleanup.policy includes "compact", and the metadata log
+    public boolean getLogCleanerEnable() {
+        return getBoolean(LOG_CLEANER_ENABLE, true);
+    }
+
+    // Pause between two rounds of the cleaner over the compacted logs
+    public long getLogCleanerBackoffMs() {
+        return getLong(LOG_CLEANER_BACKOFF_MS, 15000);
+    }
+
+    // Memory for the map of keys to their latest offsets; more keys per round means fewer rounds
+    public long getLogCleanerDedupeBufferSize() {
+        return getLong(LOG_CLEANER_DEDUPE_BUFFER_SIZE, 128L * 1024 * 1024);
+    }
+
+    // Cleaned batches gathered in memory before each write to the new segment
+    public int getLogCleanerIoBufferSize() {
+        return getInt(LOG_CLEANER_IO_BUFFER_SIZE, 512 * 1024);
+    }
+
+    // How full the key map may get before a round stops taking in more of the log
+    public double getLogCleanerIoBufferLoadFactor() {
+        return getDouble(LOG_CLEANER_IO_BUFFER_LOAD_FACTOR, 0.9);
+    }
+
+    // Cap on the cleaner's reads and writes together, so it leaves disk bandwidth for fetches
+    public double getLogCleanerIoMaxBytesPerSecond() {
+        return getDouble(LOG_CLEANER_IO_MAX_BYTES_PER_SECOND, Double.MAX_VALUE);
+    }
+
+    // Share of a log that must be uncleaned before it is compacted again. Topics override this
+    // with min.cleanable.dirty.ratio
+    public double getLogCleanerMinCleanableRatio() {
+        return getDouble(LOG_CLEANER_MIN_CLEANABLE_RATIO, 0.5);
+    }
+
+    // How long a tombstone is kept, so consumers see the delete before the key disappears. Topics
+    // override this with delete.retention.ms
+    public long getLogCleanerDeleteRetentionMs() {
+        return getLong(LOG_CLEANER_DELETE_RETENTION_MS, 24 * 60 * 60 * 1000L);
+    }
+
+    // Bytes of batches between two offset index entries
+    public int getLogIndexIntervalBytes() {
+        return getInt(LOG_INDEX_INTERVAL_BYTES, 4096);
+    }
+
+    public int getLogIndexSizeMaxBytes() {
+        return getInt(LOG_INDEX_SIZE_MAX_BYTES, 10 * 1024 * 1024);
+    }
+
+    // Read segment headers and batches through shared memory mappings instead of read calls
+    public boolean getLogMmapEnable() {
+        return getBoolean(LOG_MMAP_ENABLE, false);
+    }
+
+    // Segments are mapped in chunks of this size
+    public int getLogMmapChunkBytes() {
+        return getInt(LOG_MMAP_CHUNK_BYTES, 16 * 1024 * 1024);
+    }
+
+    // Total bytes kept mapped across all segments before the least recently used chunks are dropped
+    public long getLogMmapMaxBytes() {
+        return getLong(LOG_MMAP_MAX_BYTES, 512L * 1024 * 1024);
+    }
+
+    // Bytes of fetched batches kept in memory for consumers reading the same data; 0 disables the cache
+    public long getLogReadCacheMaxBytes() {
+        return getLong(LOG_READ_CACHE_MAX_BYTES, 0);
+    }
+
+    // Encoded DescribeTopicPartitions responses kept per distinct request; 0 disables the cache
+    public int getResponseCacheMaxEntries() {
+        return getInt(RESPONSE_CACHE_MAX_ENTRIES, 1024);
+    }
+}
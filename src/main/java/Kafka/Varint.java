@@ -0,0 +1,217 @@
+package Kafka;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Base-128 varints as used by the Kafka protocol. Unsigned varints carry compact lengths and tags;
+// signed ones are zigzag encoded (record fields) so small negative values such as -1 stay one byte.
+// Most values on the wire fit in one or two bytes, so those paths are unrolled ahead of the loop
+public final class Varint {
+
+    private Varint() {
+    }
+
+    // Zigzag mapping: 0, -1, 1, -2, ... to 0, 1, 2, 3, ...
+    public static int encodeZigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int decodeZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Relative decode methods
+    public static int readUnsignedVarint(ByteBuffer buffer) throws IOException {
+        byte b = buffer.get();
+        if (b >= 0) {
+            return b;
+        }
+        int value = b & 0x7F;
+        b = buffer.get();
+        if (b >= 0) {
+            return value | (b << 7);
+        }
+        value |= (b & 0x7F) << 7;
+        for (int shift = 14; shift < 35; shift += 7) {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long: exceeds 5 bytes");
+    }
+
+    public static int readVarint(ByteBuffer buffer) throws IOException {
+        return decodeZigZag(readUnsignedVarint(buffer));
+    }
+
+    // A byte at a time from a stream, such as a decompressing one
+    public static int readUnsignedVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Stream ended inside a varint");
+            }
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long: exceeds 5 bytes");
+    }
+
+    public static int readVarint(InputStream in) throws IOException {
+        return decodeZigZag(readUnsignedVarint(in));
+    }
+
+    public static long readUnsignedVarlong(ByteBuffer buffer) throws IOException {
+        byte b = buffer.get();
+        if (b >= 0) {
+            return b;
+        }
+        long value = b & 0x7F;
+        b = buffer.get();
+        if (b >= 0) {
+            return value | ((long) b << 7);
+        }
+        value |= (long) (b & 0x7F) << 7;
+        for (int shift = 14; shift < 70; shift += 7) {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varlong too long: exceeds 10 bytes");
+    }
+
+    public static long readVarlong(ByteBuffer buffer) throws IOException {
+        return decodeZigZag(readUnsignedVarlong(buffer));
+    }
+
+    // Bulk decode of consecutive zigzag varints, e.g. a run of record deltas; returns dst
+    public static int[] readVarints(ByteBuffer buffer, int[] dst, int offset, int count) throws IOException {
+        for (int i = offset; i < offset + count; i++) {
+            dst[i] = decodeZigZag(readUnsignedVarint(buffer));
+        }
+        return dst;
+    }
+
+    public static long[] readVarlongs(ByteBuffer buffer, long[] dst, int offset, int count) throws IOException {
+        for (int i = offset; i < offset + count; i++) {
+            dst[i] = decodeZigZag(readUnsignedVarlong(buffer));
+        }
+        return dst;
+    }
+
+    // Skip one varint or varlong without decoding it
+    public static void skip(ByteBuffer buffer) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            if (buffer.get() >= 0) {
+                return;
+            }
+        }
+        throw new IOException("Varlong too long: exceeds 10 bytes");
+    }
+
+    // Absolute decode, leaving the buffer position unchanged
+    public static int getUnsignedVarint(ByteBuffer buffer, int index) throws IOException {
+        byte b = buffer.get(index);
+        if (b >= 0) {
+            return b;
+        }
+        int value = b & 0x7F;
+        for (int shift = 7; shift < 35; shift += 7) {
+            b = buffer.get(++index);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long: exceeds 5 bytes");
+    }
+
+    public static int getVarint(ByteBuffer buffer, int index) throws IOException {
+        return decodeZigZag(getUnsignedVarint(buffer, index));
+    }
+
+    // Relative encode methods
+    public static void writeUnsignedVarint(ByteBuffer buffer, int value) {
+        if ((value & 0xFFFFFF80) == 0) {
+            buffer.put((byte) value);
+        } else if ((value & 0xFFFFC000) == 0) {
+            buffer.putShort((short) (((value & 0x7F) | 0x80) << 8 | (value >>> 7)));
+        } else {
+            do {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            } while ((value & 0xFFFFFF80) != 0);
+            buffer.put((byte) value);
+        }
+    }
+
+    public static void writeVarint(ByteBuffer buffer, int value) {
+        writeUnsignedVarint(buffer, encodeZigZag(value));
+    }
+
+    public static void writeUnsignedVarlong(ByteBuffer buffer, long value) {
+        if ((value & 0xFFFFFFFFFFFFFF80L) == 0) {
+            buffer.put((byte) value);
+        } else if ((value & 0xFFFFFFFFFFFFC000L) == 0) {
+            int v = (int) value;
+            buffer.putShort((short) (((v & 0x7F) | 0x80) << 8 | (v >>> 7)));
+        } else {
+            do {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            } while ((value & 0xFFFFFFFFFFFFFF80L) != 0);
+            buffer.put((byte) value);
+        }
+    }
+
+    public static void writeVarlong(ByteBuffer buffer, long value) {
+        writeUnsignedVarlong(buffer, encodeZigZag(value));
+    }
+
+    // Absolute encode, returning the number of bytes written
+    public static int putUnsignedVarint(ByteBuffer buffer, int index, int value) {
+        int start = index;
+        while ((value & 0xFFFFFF80) != 0) {
+            buffer.put(index++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(index++, (byte) value);
+        return index - start;
+    }
+
+    // Sizes
+    public static int sizeOfUnsignedVarint(int value) {
+        int bits = 32 - Integer.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    public static int sizeOfVarint(int value) {
+        return sizeOfUnsignedVarint(encodeZigZag(value));
+    }
+
+    public static int sizeOfUnsignedVarlong(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    public static int sizeOfVarlong(long value) {
+        return sizeOfUnsignedVarlong(encodeZigZag(value));
+    }
+}
@@ -1,20 +1,88 @@
 
+import Kafka.Constants;
+import Kafka.Logger;
+import Kafka.ServerConfig;
 import messages.AbstractRequest;
 import messages.MessageHandler;
+import network.KafkaApis;
+import network.KafkaRequestHandlerPool;
+import network.MemoryPool;
+import network.RequestChannel;
+import network.Send;
+import network.SocketServer;
 import java.io.*;
 import java.net.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class KafkaServer {
+    private static final Logger log = Logger.getLogger(KafkaServer.class);
+
+    // How client connections are served
+    public enum Mode {
+        THREAD_PER_CONNECTION, // Blocking socket per connection on a cached thread pool
+        VIRTUAL_THREAD,        // Blocking socket per connection on its own virtual thread
+        REACTOR;               // Selector-based acceptor and processors feeding the request handler pools
+
+        public static Mode fromConfig(String value) {
+            return switch (value.toLowerCase()) {
+                case "thread" -> THREAD_PER_CONNECTION;
+                case "virtual" -> VIRTUAL_THREAD;
+                case "reactor" -> REACTOR;
+                default -> throw new IllegalArgumentException("Unknown server mode: " + value);
+            };
+        }
+    }
 
     private final String host;
     private final int port;
+    private final ServerConfig config;
+    private final Mode mode;
+    private final int maxInFlightRequests;
+    private final MemoryPool memoryPool;
+    private final KafkaApis apis;
+    private final RequestChannel requestChannel;
+    private final List<KafkaRequestHandlerPool> handlerPools = new ArrayList<>();
     private final ExecutorService executorService;
+    private final AtomicInteger nextConnectionId = new AtomicInteger();
 
-    public KafkaServer(String host, int port) {
+    // Marks the end of a connection's response queue
+    private static final Future<RequestChannel.Response> END_OF_STREAM = CompletableFuture.completedFuture(null);
+
+    public KafkaServer(String host, int port, ServerConfig config) {
         this.host = host;
         this.port = port;
-        this.executorService = Executors.newCachedThreadPool(); // Thread pool for handling client connections
+        this.config = config;
+        this.mode = Mode.fromConfig(config.getServerMode());
+        this.maxInFlightRequests = config.getMaxInFlightRequestsPerConnection();
+        this.memoryPool = new MemoryPool(config.getQueuedMaxRequestBytes(), config.getSocketRequestMaxBytes(),
+                config.getMemoryPoolDirect(), config.getMemoryPoolWaitMs()); // Request buffers shared by all connections
+        this.apis = new KafkaApis(config);
+
+        // Every mode hands requests to one queue and handler pool per API
+        this.requestChannel = new RequestChannel(config.getQueuedMaxRequests(), config.getQueuedMaxControlPlaneRequests());
+        for (Constants.ApiKey apiKey : Constants.ApiKey.values()) {
+            handlerPools.add(new KafkaRequestHandlerPool(apiKey, config.getNumIoThreads(apiKey), requestChannel, apis));
+        }
+        this.executorService = switch (mode) {
+            case THREAD_PER_CONNECTION -> Executors.newCachedThreadPool(); // Thread pool for handling client connections
+            case VIRTUAL_THREAD -> Executors.newVirtualThreadPerTaskExecutor(); // One virtual thread per connection
+            case REACTOR -> null;
+        };
+    }
+
+    public KafkaServer(String host, int port) {
+        this(host, port, new ServerConfig());
+    }
+
+    public KafkaServer(ServerConfig config) {
+        this("localhost", 9092, config); // Default host and port
     }
 
     public KafkaServer() {
@@ -23,53 +91,163 @@ public class KafkaServer {
 
     // Start the server
     public void start() throws IOException {
-        try (ServerSocket serverSocket = new ServerSocket()) {
-            serverSocket.setReuseAddress(true); // Enable address reuse
+        for (KafkaRequestHandlerPool handlerPool : handlerPools) {
+            handlerPool.start();
+        }
+        if (mode == Mode.REACTOR) {
+            startReactor();
+            return;
+        }
+
+        // Blocking channels rather than plain sockets, so Fetch responses can be sent with transferTo
+        try (ServerSocketChannel serverSocket = ServerSocketChannel.open()) {
+            serverSocket.socket().setReuseAddress(true); // Enable address reuse
             serverSocket.bind(new InetSocketAddress(host, port));
 
-            System.out.println("KafkaServer started on " + host + ":" + port);
+            log.info("KafkaServer started on " + host + ":" + port + " (" + mode + " mode)");
 
             while (true) {
-                Socket clientSocket = serverSocket.accept();
+                SocketChannel clientSocket = serverSocket.accept();
                 executorService.submit(() -> handleClient(clientSocket)); // Handle each client in a separate thread
             }
         } catch (IOException e) {
-            System.err.println("Error starting KafkaServer: " + e.getMessage());
+            log.error("Error starting KafkaServer: " + e.getMessage());
             throw e;
         } finally {
             executorService.shutdown();
+            shutdownHandlerPools();
         }
     }
 
-    // Handle client connection
-    private void handleClient(Socket clientSocket) {
-        try (InputStream inputStream = clientSocket.getInputStream();
-             OutputStream outputStream = clientSocket.getOutputStream()) {
+    // Serve connections from the network processors and the request handler pools
+    private void startReactor() throws IOException {
+        SocketServer socketServer = new SocketServer(host, port, config.getNumNetworkThreads(),
+                config.getSocketRequestMaxBytes(), maxInFlightRequests, memoryPool, requestChannel);
+
+        socketServer.startup();
+        log.info("KafkaServer started on " + host + ":" + port + " (" + mode + " mode)");
+
+        try {
+            socketServer.awaitShutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socketServer.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            shutdownHandlerPools();
+        }
+    }
+
+    private void shutdownHandlerPools() {
+        try {
+            for (KafkaRequestHandlerPool handlerPool : handlerPools) {
+                handlerPool.shutdown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Handle client connection. Requests are read ahead and handed to their API's handler pool, up to
+    // max.in.flight.requests.per.connection at a time, while a writer task sends the responses
+    // back in the order the requests arrived. A throttled client is not read from until its
+    // throttle time has passed
+    private void handleClient(SocketChannel clientSocket) {
+        BlockingQueue<Future<RequestChannel.Response>> inFlight = new ArrayBlockingQueue<>(maxInFlightRequests);
+        AtomicLong throttledUntilMs = new AtomicLong();
+        int connectionId = nextConnectionId.getAndIncrement();
+        long sequence = 0;
+
+        try {
+            Future<?> writer = executorService.submit(() -> {
+                writeResponses(clientSocket, inFlight, throttledUntilMs);
+                return null;
+            });
 
             while (true) {
                 try {
-                    // Read and process the request
-                    AbstractRequest requestBytes = MessageHandler.readRequest(new DataInputStream(inputStream));
-                    byte[] responseBytes = MessageHandler.makeResponse(requestBytes).encode();
-
-                    // Write the response back to the client
-                    outputStream.write(responseBytes);
-                    outputStream.flush();
-                } catch (EOFException e) {
+                    long throttleRemainingMs = throttledUntilMs.get() - System.currentTimeMillis();
+                    if (throttleRemainingMs > 0) {
+                        Thread.sleep(throttleRemainingMs);
+                    }
+
+                    // Read the request and queue it for the handler pool; the future completes with its response
+                    AbstractRequest request = MessageHandler.readRequest(clientSocket, memoryPool);
+                    CompletableFuture<RequestChannel.Response> response = new CompletableFuture<>();
+                    inFlight.put(response);
+                    try {
+                        requestChannel.sendRequest(new RequestChannel.Request(response::complete, connectionId, sequence++, request));
+                    } catch (InterruptedException e) {
+                        response.completeExceptionally(e); // Never queued, don't leave the writer waiting on it
+                        throw e;
+                    }
+                } catch (EOFException | ClosedChannelException e) {
                     // Client disconnected
                     break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 } catch (Exception e) {
-                    System.err.println("Error handling client: " + e.getMessage());
+                    log.error("Error handling client: " + e.getMessage());
                     break;
                 }
             }
-        } catch (IOException e) {
-            System.err.println("I/O error with client: " + e.getMessage());
+
+            // Let the writer drain responses that are still in flight
+            inFlight.put(END_OF_STREAM);
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Error writing responses: " + e.getMessage());
         } finally {
             try {
                 clientSocket.close();
             } catch (IOException e) {
-                System.err.println("Error closing client socket: " + e.getMessage());
+                log.error("Error closing client socket: " + e.getMessage());
+            }
+        }
+    }
+
+    // Write responses in request order. After a failure the socket is closed and the remaining
+    // futures are discarded, so the reader never blocks on a full queue
+    private void writeResponses(SocketChannel clientSocket, BlockingQueue<Future<RequestChannel.Response>> inFlight,
+                                AtomicLong throttledUntilMs) throws InterruptedException {
+        boolean failed = false;
+        while (true) {
+            Future<RequestChannel.Response> response = inFlight.take();
+            if (response == END_OF_STREAM) {
+                return;
+            }
+            if (failed) {
+                response.cancel(false);
+                continue;
+            }
+            try {
+                // Write the response back to the client
+                RequestChannel.Response handled = response.get();
+                if (handled.isCloseConnection()) {
+                    throw new IOException("Request handler failed, closing connection");
+                }
+                Send send = handled.getSend();
+                while (!send.completed()) {
+                    send.writeTo(clientSocket);
+                }
+                if (handled.getThrottleTimeMs() > 0) {
+                    throttledUntilMs.set(System.currentTimeMillis() + handled.getThrottleTimeMs());
+                }
+            } catch (ExecutionException | IOException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.error("Error handling client: " + cause.getMessage());
+                failed = true;
+                try {
+                    clientSocket.close();
+                } catch (IOException closeError) {
+                    log.error("Error closing client socket: " + closeError.getMessage());
+                }
             }
         }
     }
@@ -1,14 +1,28 @@
+import Kafka.Logger;
+import Kafka.ServerConfig;
+import log.LogManager;
+
 import java.io.*;
 
 public class Main {
+    private static final Logger log = Logger.getLogger(Main.class);
 
     public static void main(String[] args) {
-        KafkaServer server = new KafkaServer(); // Default host and port
         try {
+            ServerConfig config = ServerConfig.load(args);
+            Logger.configure(config); // Fix the log level before any request is handled
+            LogManager.startup(config); // Open the partition logs before accepting connections
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> { // A kill skips the finally block below
+                LogManager.shutdown();
+                Logger.shutdown();
+            }, "kafka-shutdown-hook"));
+            KafkaServer server = new KafkaServer(config); // Default host and port
             server.start(); // Start the server
         } catch (IOException e) {
-            System.err.println("Failed to start the server: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Failed to start the server: " + e.getMessage(), e);
+        } finally {
+            LogManager.shutdown();
+            Logger.shutdown();
         }
     }
 
@@ -0,0 +1,23 @@
+package compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// A compression codec for record batches, identified by the id a batch carries in the low three
+// bits of its attributes. GZIP is built in; others such as LZ4 or Zstd are plugged in by listing
+// an implementation in META-INF/services/compression.CompressionCodec on the classpath
+public interface CompressionCodec {
+
+    // Kafka's id for the codec: 1 GZIP, 2 Snappy, 3 LZ4, 4 Zstd
+    int id();
+
+    // Name used in compression.type
+    String name();
+
+    // A stream that compresses what is written to it into out
+    OutputStream wrapForOutput(OutputStream out) throws IOException;
+
+    // A stream that decompresses what it reads from in
+    InputStream wrapForInput(InputStream in) throws IOException;
+}
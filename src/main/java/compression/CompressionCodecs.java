@@ -0,0 +1,121 @@
+package compression;
+
+import Kafka.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The codecs this broker can read and write, by id and by name: GZIP, plus any found through
+// ServiceLoader when the class is first used. Id 0 means the records are not compressed
+public final class CompressionCodecs {
+    private static final Logger log = Logger.getLogger(CompressionCodecs.class);
+
+    public static final int NONE = 0;
+    public static final String NONE_NAME = "none";
+
+    private static final Map<Integer, CompressionCodec> byId = new ConcurrentHashMap<>();
+    private static final Map<String, CompressionCodec> byName = new ConcurrentHashMap<>();
+
+    static {
+        register(new GzipCodec());
+        try {
+            for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+                register(codec);
+            }
+        } catch (ServiceConfigurationError e) {
+            log.error("Failed to load compression codecs", e);
+        }
+    }
+
+    private CompressionCodecs() {
+    }
+
+    private static void register(CompressionCodec codec) {
+        if (codec.id() <= NONE || codec.id() > 7) {
+            log.warn("Ignoring compression codec " + codec.name() + " with id " + codec.id());
+            return;
+        }
+        byId.put(codec.id(), codec);
+        byName.put(codec.name().toLowerCase(), codec);
+        log.debug(() -> "Registered compression codec " + codec.name() + " (" + codec.id() + ")");
+    }
+
+    // The codec for an id, or null if none is installed
+    public static CompressionCodec forId(int id) {
+        return byId.get(id);
+    }
+
+    // The codec for a compression.type name, or null if none is installed
+    public static CompressionCodec forName(String name) {
+        return byName.get(name.toLowerCase());
+    }
+
+    // True for id 0 and for every installed codec
+    public static boolean isSupported(int id) {
+        return id == NONE || byId.containsKey(id);
+    }
+
+    // Name of the codec with an id, for messages
+    public static String name(int id) {
+        CompressionCodec codec = byId.get(id);
+        return id == NONE ? NONE_NAME : codec != null ? codec.name() : "unknown codec " + id;
+    }
+
+    public static ByteBuffer compress(int id, ByteBuffer source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, source.remaining() / 2));
+        try (OutputStream out = codec(id).wrapForOutput(bytes)) {
+            if (source.hasArray()) {
+                out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            } else {
+                byte[] copy = new byte[source.remaining()];
+                source.duplicate().get(copy);
+                out.write(copy);
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    // A stream inflating source as it is read, so the caller decides how much output to accept
+    public static InputStream decompress(int id, ByteBuffer source) throws IOException {
+        return codec(id).wrapForInput(new ByteBufferInputStream(source.duplicate()));
+    }
+
+    private static CompressionCodec codec(int id) throws IOException {
+        CompressionCodec codec = byId.get(id);
+        if (codec == null) {
+            throw new IOException("Unsupported compression codec " + id);
+        }
+        return codec;
+    }
+
+    // Reads a buffer without copying it first
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
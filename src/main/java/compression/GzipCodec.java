@@ -0,0 +1,33 @@
+package compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// GZIP through java.util.zip, the codec every Kafka client supports
+public class GzipCodec implements CompressionCodec {
+    public static final int ID = 1;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "gzip";
+    }
+
+    @Override
+    public OutputStream wrapForOutput(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override
+    public InputStream wrapForInput(InputStream in) throws IOException {
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+}
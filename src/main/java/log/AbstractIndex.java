@@ -0,0 +1,132 @@
+package log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Memory-mapped file of fixed-size entries in ascending order. The file is mapped at its maximum
+// size while open and trimmed to its entries on close; subclasses define the entry layout
+public abstract class AbstractIndex implements Closeable {
+    protected volatile Path path; // Changes when the segment's files are renamed
+    protected final long baseOffset;
+    protected final MappedByteBuffer mmap;
+    private final int entrySize;
+    private final int maxEntries;
+    private final boolean newlyCreated;
+    protected volatile int entries; // Written only by the appending thread; readers see whole entries
+
+    // Constructor
+    protected AbstractIndex(Path path, long baseOffset, int maxIndexSize, int entrySize) throws IOException {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.entrySize = entrySize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            this.newlyCreated = length == 0;
+            int existingEntries = (int) (length / entrySize);
+            this.maxEntries = Math.max(maxIndexSize / entrySize, existingEntries);
+            this.mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) maxEntries * entrySize);
+            this.entries = length % entrySize == 0 ? existingEntries : -1; // -1 fails the sanity check
+        }
+    }
+
+    // True if the entries are in order and consistent with a log of the given size. A file that
+    // was preallocated or cut short by a crash fails this and is rebuilt from the log
+    public boolean isValid(int logSize) {
+        int n = entries;
+        if (n < 0) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!isValidEntry(i, logSize)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Entry i against the one before it, if any
+    protected abstract boolean isValidEntry(int entry, int logSize);
+
+    // True if the file did not exist or was empty when opened
+    public boolean isNewlyCreated() {
+        return newlyCreated;
+    }
+
+    public boolean isFull() {
+        return entries >= maxEntries;
+    }
+
+    public int entries() {
+        return Math.max(entries, 0);
+    }
+
+    // Drop every entry, before rebuilding the index from the log
+    public void reset() {
+        entries = 0;
+    }
+
+    // Slot for the next entry; the caller writes it and then calls commitEntry()
+    protected int nextEntryIndex() {
+        int n = entries;
+        if (n >= maxEntries) {
+            throw new IllegalStateException("Index " + path + " is full");
+        }
+        return n * entrySize;
+    }
+
+    protected void commitEntry() {
+        entries = entries + 1;
+    }
+
+    protected int entryIndex(int entry) {
+        return entry * entrySize;
+    }
+
+    // Largest entry whose key is at or below the target, or -1
+    protected int largestLowerBound(long target, EntryKey key) {
+        int low = 0;
+        int high = entries - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (key.of(mid) <= target) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    protected interface EntryKey {
+        long of(int entry);
+    }
+
+    // Force the entries written so far to disk
+    public void flush() {
+        mmap.force();
+    }
+
+    // Rename the file, replacing any at the new name; the mapping stays valid
+    public void renameTo(Path newPath) throws IOException {
+        Files.move(path, newPath, StandardCopyOption.REPLACE_EXISTING);
+        path = newPath;
+    }
+
+    // Flush the entries and trim the file so that it reopens with exactly these entries
+    @Override
+    public void close() throws IOException {
+        mmap.force();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate((long) entries() * entrySize);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package log;
+
+import Kafka.Logger;
+import metadata.FileRecords;
+import metadata.MemoryRecords;
+import metadata.Records;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fetched batch bytes kept in memory, shared by every partition, so consumers reading the same hot
+// region are served without touching the file. Entries are keyed by where the read starts in its
+// segment; the least recently used are dropped once more than maxBytes are held. Segment bytes
+// never change once written, so entries only go when their segment is closed, truncated or deleted
+public class BatchCache {
+    private static final Logger log = Logger.getLogger(BatchCache.class);
+
+    private final long maxBytes;
+    private final Map<Key, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long cachedBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Constructor
+    public BatchCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // The bytes of a segment read, from memory if an entry at the same position covers them.
+    // Otherwise they are read outside the lock and cached, unless they alone exceed the budget
+    public Records get(String topic, int partition, long segmentBaseOffset, FileRecords source) throws IOException {
+        int length = source.sizeInBytes();
+        Key key = new Key(topic, partition, segmentBaseOffset, source.getPosition());
+        lock.lock();
+        try {
+            ByteBuffer cached = entries.get(key);
+            if (cached != null && cached.remaining() >= length) {
+                hits.incrementAndGet();
+                return new MemoryRecords(cached.slice(0, length));
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.incrementAndGet();
+        if (length > maxBytes) {
+            return source;
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocateDirect(length);
+        source.readInto(bytes);
+        bytes.flip();
+        ByteBuffer loaded = bytes.asReadOnlyBuffer();
+        lock.lock();
+        try {
+            ByteBuffer previous = entries.get(key);
+            if (previous == null || previous.remaining() < length) {
+                entries.put(key, loaded);
+                cachedBytes += length - (previous == null ? 0 : previous.remaining());
+                evict(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new MemoryRecords(loaded);
+    }
+
+    // Forget the entries of a segment that is being closed, truncated or deleted
+    public void invalidateSegment(String topic, int partition, long segmentBaseOffset) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<Key, ByteBuffer>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Key, ByteBuffer> entry = iterator.next();
+                if (entry.getKey().isSegment(topic, partition, segmentBaseOffset)) {
+                    cachedBytes -= entry.getValue().remaining();
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getters
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public long cachedBytes() {
+        lock.lock();
+        try {
+            return cachedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drop least recently used entries, other than the one just added, until under the budget
+    private void evict(Key keep) {
+        Iterator<Map.Entry<Key, ByteBuffer>> iterator = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, ByteBuffer> entry = iterator.next();
+            if (!entry.getKey().equals(keep)) {
+                cachedBytes -= entry.getValue().remaining();
+                iterator.remove();
+                evictions.incrementAndGet();
+                log.trace(() -> "Evicted " + entry.getKey() + ", " + cachedBytes + " bytes still cached");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchCache(" + cachedBytes() + " of " + maxBytes + " bytes, " + hits() + " hits, " + misses()
+                + " misses, " + evictions() + " evictions)";
+    }
+
+    private static final class Key {
+        private final String topic;
+        private final int partition;
+        private final long segmentBaseOffset;
+        private final long position;
+
+        private Key(String topic, int partition, long segmentBaseOffset, long position) {
+            this.topic = topic;
+            this.partition = partition;
+            this.segmentBaseOffset = segmentBaseOffset;
+            this.position = position;
+        }
+
+        private boolean isSegment(String topic, int partition, long segmentBaseOffset) {
+            return this.partition == partition && this.segmentBaseOffset == segmentBaseOffset && this.topic.equals(topic);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return isSegment(other.topic, other.partition, other.segmentBaseOffset) && position == other.position;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(topic, partition, segmentBaseOffset, position);
+        }
+
+        @Override
+        public String toString() {
+            return topic + "-" + partition + " segment " + segmentBaseOffset + " at " + position;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package log;
+
+import Kafka.LatencyHistogram;
+import Kafka.Logger;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Flushes partition logs in the background, so no produce request pays for an fsync of its own.
+// Each round checks every log and forces the files of those that are due: too many unflushed
+// messages, unflushed for too long, or a producer waiting on acks=-1. Appends that land while a
+// flush runs are covered by the next round, so concurrent producers share each force
+public class FlushScheduler {
+    private static final Logger log = Logger.getLogger(FlushScheduler.class);
+    private static final long REPORT_INTERVAL_MS = 60_000;
+
+    private final long intervalMs;
+    private final Supplier<Collection<Log>> logs;
+    private final LatencyHistogram flushLatency = new LatencyHistogram("Log flush latency");
+    private final Thread thread;
+    private volatile boolean requested;
+    private volatile boolean running = true;
+    private long lastReportMs = System.currentTimeMillis(); // Scheduler thread only
+    private long flushesAtLastReport;
+
+    // Constructor
+    public FlushScheduler(long intervalMs, Supplier<Collection<Log>> logs) {
+        this.intervalMs = intervalMs;
+        this.logs = logs;
+        this.thread = new Thread(this::run, "kafka-log-flusher");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Start a round now instead of at the next interval
+    public void requestFlush() {
+        if (!requested) {
+            requested = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public LatencyHistogram flushLatency() {
+        return flushLatency;
+    }
+
+    // Stop the scheduler and flush whatever is left, so a clean shutdown loses nothing
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Log partitionLog : logs.get()) {
+            flush(partitionLog);
+        }
+        log.info(flushLatency.toString());
+    }
+
+    private void run() {
+        while (running) {
+            if (!requested) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMs));
+            }
+            requested = false; // Requests from here on get another round
+            long nowMs = System.currentTimeMillis();
+            for (Log partitionLog : logs.get()) {
+                if (partitionLog.isFlushDue(nowMs)) {
+                    flush(partitionLog);
+                }
+            }
+            maybeReport(nowMs);
+        }
+    }
+
+    private void flush(Log partitionLog) {
+        long start = System.nanoTime();
+        try {
+            if (partitionLog.flush()) {
+                flushLatency.record(System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            log.error("Failed to flush " + partitionLog, e);
+        }
+    }
+
+    // Log the latency histogram now and then, if anything was flushed since the last report
+    private void maybeReport(long nowMs) {
+        if (nowMs - lastReportMs < REPORT_INTERVAL_MS) {
+            return;
+        }
+        lastReportMs = nowMs;
+        if (flushLatency.count() > flushesAtLastReport) {
+            flushesAtLastReport = flushLatency.count();
+            log.info(flushLatency.toString());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package log;
+
+import Kafka.Constants;
+
+import java.io.IOException;
+
+// Records refused by a log before anything was written, with the error the producer is sent
+public class InvalidRecordsException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final Constants.ErrorCode errorCode;
+
+    // Constructor
+    public InvalidRecordsException(Constants.ErrorCode errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public Constants.ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
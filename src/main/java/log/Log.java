@@ -0,0 +1,702 @@
+package log;
+
+import Kafka.Constants;
+import Kafka.Logger;
+import compression.CompressionCodec;
+import compression.CompressionCodecs;
+import metadata.FileRecords;
+import metadata.Record;
+import metadata.RecordBatch;
+import metadata.Records;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The log of one partition: a directory of segments ordered by base offset. A read finds its
+// segment with a floor lookup and its position through that segment's offset index.
+// Producers to one partition only serialize on reserving offsets and file space; the writes
+// themselves run in parallel, and are published to readers in offset order as they complete.
+// Published records reach the disk when the flush scheduler next flushes the log
+public class Log implements Closeable {
+    private static final Logger log = Logger.getLogger(Log.class);
+    private static final int CONTROL_FLAG_MASK = 0x20; // Transaction markers, never compressed
+
+    private final Path dir;
+    private final String topic;
+    private final int partition;
+    private final LogConfig config;
+    private final MmapCache mmapCache; // Null when segments are read through the channel
+    private final BatchCache batchCache; // Null when log.read.cache.max.bytes is 0
+    private final FlushScheduler flushScheduler; // Null to flush only when asked
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock segmentsLock = new ReentrantLock(); // Held to remove or replace segments
+
+    private final ReentrantLock appendLock = new ReentrantLock(); // Guards the reservation state below
+    private long nextOffsetToAssign;
+    private int activeReservedSize; // Bytes of the active segment written or promised to an append
+
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private final Queue<PendingAppend> pendingAppends = new ConcurrentLinkedQueue<>(); // In reservation order
+    private boolean publishStopped; // Guarded by publishLock; set after a failed write
+    private volatile IOException failure; // The write that took the log offline, if any
+    private volatile long logEndOffset;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicReference<CompletableFuture<Void>> flushWaiters = new AtomicReference<>(); // Released by the next flush
+    private volatile long flushedOffset; // Everything below is on disk
+    private volatile long lastFlushMs = System.currentTimeMillis();
+
+    // Constructor
+    private Log(Path dir, String topic, int partition, LogConfig config, MmapCache mmapCache, BatchCache batchCache,
+                FlushScheduler flushScheduler) {
+        this.dir = dir;
+        this.topic = topic;
+        this.partition = partition;
+        this.config = config;
+        this.mmapCache = mmapCache;
+        this.batchCache = batchCache;
+        this.flushScheduler = flushScheduler;
+    }
+
+    // Open every segment in a partition directory named <topic>-<partition>. Records below the
+    // recovery point were on disk when the broker last stopped and are trusted; the segments
+    // holding anything from it on are checked batch by batch
+    public static Log load(Path dir, LogConfig config, MmapCache mmapCache, BatchCache batchCache,
+                           FlushScheduler flushScheduler, long recoveryPoint) throws IOException {
+        String name = dir.getFileName().toString();
+        int dash = name.lastIndexOf('-');
+        Log partitionLog = new Log(dir, name.substring(0, dash), Integer.parseInt(name.substring(dash + 1)),
+                config, mmapCache, batchCache, flushScheduler);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                "*{" + LogSegment.DELETED_SUFFIX + "," + LogSegment.CLEANED_SUFFIX + "}")) {
+            for (Path file : files) {
+                Files.delete(file); // Left by a deletion or a cleaning the broker did not live to finish
+            }
+        }
+        completeSwaps(dir, config);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + LogSegment.LOG_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - LogSegment.LOG_SUFFIX.length()));
+                partitionLog.segments.put(baseOffset, LogSegment.open(dir, baseOffset, config, mmapCache));
+            }
+        }
+        if (partitionLog.segments.isEmpty()) {
+            partitionLog.segments.put(0L, LogSegment.open(dir, 0, config, mmapCache));
+        }
+        partitionLog.recover(recoveryPoint);
+        LogSegment active = partitionLog.segments.lastEntry().getValue();
+        partitionLog.nextOffsetToAssign = active.nextOffset();
+        partitionLog.activeReservedSize = active.size();
+        partitionLog.logEndOffset = active.nextOffset();
+        partitionLog.flushedOffset = active.nextOffset();
+        log.debug(() -> "Loaded " + partitionLog);
+        return partitionLog;
+    }
+
+    // Check every segment with records at or past the recovery point, cutting the log at the
+    // first torn or corrupt batch. Segments after a cut would leave a gap in the offsets, so they
+    // are deleted. What is left is flushed, as it may only have reached the page cache
+    private void recover(long recoveryPoint) throws IOException {
+        int recovered = 0;
+        boolean truncated = false;
+        for (LogSegment segment : new ArrayList<>(segments.values())) {
+            if (truncated) {
+                log.warn("Deleting segment " + segment.baseOffset() + " of " + topic + "-" + partition
+                        + " after a truncated one");
+                segments.remove(segment.baseOffset());
+                segment.close();
+                LogSegment.deleteFiles(dir, segment.baseOffset(), "");
+            } else if (segment.nextOffset() > recoveryPoint) {
+                truncated = segment.recover() > 0;
+                segment.flush();
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            log.info("Recovered " + recovered + " segments of " + topic + "-" + partition + " from offset "
+                    + recoveryPoint);
+        }
+    }
+
+    // Finish replacing segments with cleaned ones where the broker stopped halfway. A .swap
+    // segment was complete before any original was touched, so the originals it covers are
+    // deleted and it takes their place
+    private static void completeSwaps(Path dir, LogConfig config) throws IOException {
+        String swapLogSuffix = LogSegment.LOG_SUFFIX + LogSegment.SWAP_SUFFIX;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + swapLogSuffix)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - swapLogSuffix.length()));
+                LogSegment swap = LogSegment.open(dir, baseOffset, config, null, LogSegment.SWAP_SUFFIX);
+                try (DirectoryStream<Path> originals = Files.newDirectoryStream(dir, "*" + LogSegment.LOG_SUFFIX)) {
+                    for (Path original : originals) {
+                        String originalName = original.getFileName().toString();
+                        long originalBase = Long.parseLong(
+                                originalName.substring(0, originalName.length() - LogSegment.LOG_SUFFIX.length()));
+                        if (originalBase >= baseOffset && originalBase < swap.nextOffset()) {
+                            LogSegment.deleteFiles(dir, originalBase, "");
+                        }
+                    }
+                }
+                swap.changeFileSuffix("");
+                swap.close();
+                log.info("Completed swapping in cleaned segment " + baseOffset + " of " + dir.getFileName());
+            }
+        }
+    }
+
+    // Remove the oldest segments that are past the retention time, judged by their newest
+    // record's timestamp from the batch headers, or that put the log over the retention size.
+    // The log start offset moves up to the first segment left. Only segments whose appends are
+    // all published are candidates, and the active segment is rolled first if it too has
+    // expired. The removed segments are marked for deletion and returned; the caller deletes
+    // them once fetches still reading them are done. -1 disables either limit
+    public List<LogSegment> deleteOldSegments(long retentionMs, long retentionBytes, long nowMs) throws IOException {
+        segmentsLock.lock();
+        try {
+            return deleteOldSegmentsLocked(retentionMs, retentionBytes, nowMs);
+        } finally {
+            segmentsLock.unlock();
+        }
+    }
+
+    private List<LogSegment> deleteOldSegmentsLocked(long retentionMs, long retentionBytes, long nowMs) throws IOException {
+        if (retentionMs >= 0) {
+            LogSegment active = segments.lastEntry().getValue();
+            if (active.size() > 0 && active.largestTimestamp() < nowMs - retentionMs) {
+                rollIfActive(active);
+            }
+        }
+
+        long excessBytes = -1;
+        if (retentionBytes >= 0) {
+            excessBytes = -retentionBytes;
+            for (LogSegment segment : segments.values()) {
+                excessBytes += segment.size();
+            }
+        }
+        List<LogSegment> deleted = new ArrayList<>();
+        for (Map.Entry<Long, LogSegment> entry : segments.entrySet()) {
+            Map.Entry<Long, LogSegment> next = segments.higherEntry(entry.getKey());
+            if (next == null || next.getKey() > logEndOffset) {
+                break; // The active segment, or one with appends still being written
+            }
+            LogSegment segment = entry.getValue();
+            boolean expired = retentionMs >= 0 && segment.largestTimestamp() < nowMs - retentionMs;
+            boolean oversized = excessBytes - segment.size() >= 0;
+            if (!expired && !oversized) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            excessBytes -= segment.size();
+            if (batchCache != null) {
+                batchCache.invalidateSegment(topic, partition, segment.baseOffset());
+            }
+            segment.markForDeletion();
+            deleted.add(segment);
+        }
+        if (!deleted.isEmpty()) {
+            log.info("Deleted " + deleted.size() + " segments of " + topic + "-" + partition + ", log start offset is now "
+                    + logStartOffset());
+        }
+        return deleted;
+    }
+
+    // An empty segment for the cleaner to write the cleaned copy of the segments from baseOffset
+    // into. It is read like any other once replaceSegments() puts it in the log
+    LogSegment createCleanedSegment(long baseOffset) throws IOException {
+        LogSegment.deleteFiles(dir, baseOffset, LogSegment.CLEANED_SUFFIX);
+        return LogSegment.open(dir, baseOffset, config, mmapCache, LogSegment.CLEANED_SUFFIX);
+    }
+
+    // Put a cleaned segment in place of the segments it was written from, unless retention removed
+    // any of them meanwhile. The cleaned files are renamed to .swap before the originals are
+    // marked for deletion and to their final names after, so a crash at any point leaves either
+    // the originals or a complete swap segment for load() to finish with. Once the swap file
+    // exists the log uses the cleaned segment even if a later rename fails. Returns whether the
+    // originals were replaced; if so the caller deletes them once fetches are done with them
+    boolean replaceSegments(LogSegment cleaned, List<LogSegment> originals) throws IOException {
+        segmentsLock.lock();
+        try {
+            for (LogSegment original : originals) {
+                if (segments.get(original.baseOffset()) != original) {
+                    return false;
+                }
+            }
+            cleaned.changeFileSuffix(LogSegment.SWAP_SUFFIX);
+            segments.put(cleaned.baseOffset(), cleaned);
+            for (LogSegment original : originals) {
+                if (original.baseOffset() != cleaned.baseOffset()) {
+                    segments.remove(original.baseOffset());
+                }
+                if (batchCache != null) {
+                    batchCache.invalidateSegment(topic, partition, original.baseOffset());
+                }
+            }
+            for (LogSegment original : originals) {
+                original.markForDeletion();
+            }
+            cleaned.changeFileSuffix("");
+            return true;
+        } finally {
+            segmentsLock.unlock();
+        }
+    }
+
+    // Roll the active segment so it can be deleted, unless an append has already moved on from it
+    private void rollIfActive(LogSegment segment) throws IOException {
+        appendLock.lock();
+        try {
+            if (segments.lastEntry().getValue() == segment && activeReservedSize > 0 && failure == null) {
+                roll();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // True for directory names of the form <topic>-<partition>
+    static boolean isPartitionDirectory(Path dir) {
+        String name = dir.getFileName().toString();
+        int dash = name.lastIndexOf('-');
+        if (dash <= 0 || dash == name.length() - 1 || !Files.isDirectory(dir)) {
+            return false;
+        }
+        for (int i = dash + 1; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Getters
+    public String topic() {
+        return topic;
+    }
+
+    public int partition() {
+        return partition;
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    public LogConfig config() {
+        return config;
+    }
+
+    public Collection<LogSegment> segments() {
+        return segments.values();
+    }
+
+    public long logStartOffset() {
+        return segments.firstKey();
+    }
+
+    // Base offset of the segment holding the log end. Every segment before it is fully published
+    // and takes no more appends, so it may be cleaned
+    public long firstUncleanableOffset() {
+        return segments.floorKey(logEndOffset);
+    }
+
+    // Offset after the last published record; appends still being written are not counted
+    public long logEndOffset() {
+        return logEndOffset;
+    }
+
+    // Append a producer's record batches, giving them the next offsets. Returns once they are
+    // visible to readers; InvalidRecordsException means nothing was written
+    public LogAppendInfo append(ByteBuffer producerRecords) throws IOException {
+        List<RecordBatch> batches = validate(producerRecords, config.getDecompressedMaxBytes());
+        int offsetCount = 0;
+        for (RecordBatch batch : batches) {
+            offsetCount += batch.getLastOffsetDelta() + 1; // validate() checked the sum fits
+        }
+        ByteBuffer records = convertCompression(producerRecords, batches, targetCompression());
+        int size = records.remaining();
+        if (size > config.getSegmentBytes()) {
+            throw new InvalidRecordsException(Constants.ErrorCode.MESSAGE_TOO_LARGE,
+                    size + " bytes of records do not fit in a segment of " + config.getSegmentBytes());
+        }
+
+        PendingAppend append;
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                throw new IOException("Log " + topic + "-" + partition + " is offline after a failed write", failure);
+            }
+            LogSegment active = segments.lastEntry().getValue();
+            if (shouldRoll(active, size, offsetCount)) {
+                active = roll();
+            }
+            append = new PendingAppend(active, activeReservedSize, records, nextOffsetToAssign, offsetCount);
+            nextOffsetToAssign += offsetCount;
+            activeReservedSize += size;
+            pendingAppends.add(append);
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            assignOffsets(records, append.firstOffset);
+            append.segment.write(records, append.position);
+            append.state = PendingAppend.WRITTEN;
+        } catch (IOException | RuntimeException e) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            append.state = PendingAppend.FAILED;
+            log.error("Failed to write to " + this + ", taking it offline", e);
+        }
+        publishWritten();
+        return append.await(logStartOffset());
+    }
+
+    // Publish every written append at the head of the queue. An append written out of turn waits
+    // for the ones before it, and is published by whichever thread completes the last of those.
+    // After a failed write nothing more is published, since readers would meet the gap it left
+    private void publishWritten() {
+        publishLock.lock();
+        try {
+            PendingAppend head;
+            while ((head = pendingAppends.peek()) != null && head.state != PendingAppend.WRITING) {
+                pendingAppends.poll();
+                if (publishStopped || head.state == PendingAppend.FAILED) {
+                    publishStopped = true;
+                    head.published.completeExceptionally(failure);
+                    continue;
+                }
+                head.segment.publish(head.records, head.position);
+                logEndOffset = head.firstOffset + head.offsetCount;
+                head.published.complete(null);
+            }
+        } finally {
+            publishLock.unlock();
+        }
+        if (flushScheduler != null && logEndOffset - flushedOffset >= config.getFlushIntervalMessages()) {
+            flushScheduler.requestFlush();
+        }
+    }
+
+    // Offset below which every record is on disk
+    public long flushedOffset() {
+        return flushedOffset;
+    }
+
+    // True if the log has unflushed records past either flush interval, or someone is waiting
+    boolean isFlushDue(long nowMs) {
+        long unflushed = logEndOffset - flushedOffset;
+        return flushWaiters.get() != null || (unflushed > 0
+                && (unflushed >= config.getFlushIntervalMessages() || nowMs - lastFlushMs >= config.getFlushIntervalMs()));
+    }
+
+    // Force every segment with unflushed records to disk and release the appends waiting for it.
+    // The waiters are taken before the end offset is read, so each of them is covered. Returns
+    // whether anything was written. A failed flush takes the log offline, like a failed write
+    public boolean flush() throws IOException {
+        flushLock.lock();
+        CompletableFuture<Void> waiters = flushWaiters.getAndSet(null);
+        try {
+            long target = logEndOffset;
+            boolean flushed = false;
+            if (target > flushedOffset) {
+                Long from = segments.floorKey(flushedOffset);
+                for (LogSegment segment : (from == null ? segments : segments.tailMap(from, true)).values()) {
+                    segment.flush();
+                }
+                flushedOffset = target;
+                flushed = true;
+            }
+            lastFlushMs = System.currentTimeMillis();
+            if (waiters != null) {
+                waiters.complete(null);
+            }
+            return flushed;
+        } catch (IOException | RuntimeException e) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            if (waiters != null) {
+                waiters.completeExceptionally(failure);
+            }
+            throw failure;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Wait until the record at offset is on disk, asking the scheduler for an early flush so that
+    // everyone waiting shares it. Returns false if the timeout passes first
+    public boolean awaitFlush(long offset, long timeoutMs) throws IOException {
+        if (offset < flushedOffset) {
+            return true;
+        }
+        CompletableFuture<Void> waiter = flushWaiters.updateAndGet(current -> current != null ? current : new CompletableFuture<>());
+        if (flushScheduler != null) {
+            flushScheduler.requestFlush();
+        } else {
+            flush();
+        }
+        try {
+            waiter.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a flush");
+        } catch (ExecutionException e) {
+            throw new IOException("Flush failed", e.getCause());
+        }
+    }
+
+    // Roll when the batches would overflow the active segment or its index, or it is too old.
+    // An empty segment is never rolled, so an oversized append still has somewhere to go
+    private boolean shouldRoll(LogSegment active, int size, int offsetCount) {
+        if (activeReservedSize == 0) {
+            return false;
+        }
+        return (long) activeReservedSize + size > config.getSegmentBytes()
+                || System.currentTimeMillis() - active.createdMs() >= config.getRollMs()
+                || active.isIndexFull()
+                || nextOffsetToAssign + offsetCount - 1 - active.baseOffset() > Integer.MAX_VALUE;
+    }
+
+    // Start a new active segment at the next offset. Appends still writing to the old one finish
+    // there and are published in order as usual
+    private LogSegment roll() throws IOException {
+        LogSegment segment = LogSegment.open(dir, nextOffsetToAssign, config, mmapCache);
+        segments.put(nextOffsetToAssign, segment);
+        activeReservedSize = segment.size();
+        log.info("Rolled " + topic + "-" + partition + " to a new segment at offset " + nextOffsetToAssign);
+        return segment;
+    }
+
+    // Check every batch before anything is reserved: the current format, a CRC matching its bytes
+    // and nothing left over after the last one. Compressed batches are decoded too, their records
+    // inflating to at most decompressedMaxBytes between them. Returns the decoded batches
+    private static List<RecordBatch> validate(ByteBuffer records, long decompressedMaxBytes)
+            throws InvalidRecordsException {
+        if (records == null || !records.hasRemaining()) {
+            throw new InvalidRecordsException(Constants.ErrorCode.CORRUPT_MESSAGE, "No record batches");
+        }
+        ByteBuffer buffer = records.duplicate();
+        List<RecordBatch> batches = new ArrayList<>();
+        long offsetCount = 0;
+        long decompressedRemaining = decompressedMaxBytes;
+        while (buffer.hasRemaining()) {
+            RecordBatch batch;
+            try {
+                batch = RecordBatch.decode(buffer);
+            } catch (IOException e) {
+                throw new InvalidRecordsException(Constants.ErrorCode.CORRUPT_MESSAGE, e.getMessage());
+            }
+            if (batch.getMagic() != RecordBatch.MAGIC_VALUE_V2 || batch.getLastOffsetDelta() < 0) {
+                throw new InvalidRecordsException(Constants.ErrorCode.CORRUPT_MESSAGE,
+                        "Unsupported record batch, magic " + batch.getMagic());
+            }
+            if (!batch.isValid()) {
+                throw new InvalidRecordsException(Constants.ErrorCode.CORRUPT_MESSAGE, "Record batch CRC mismatch");
+            }
+            if (!CompressionCodecs.isSupported(batch.compressionId())) {
+                throw new InvalidRecordsException(Constants.ErrorCode.UNSUPPORTED_COMPRESSION_TYPE,
+                        "Unsupported compression codec " + batch.compressionId());
+            }
+            if (batch.compressionId() != CompressionCodecs.NONE) {
+                try {
+                    for (Record record : batch.getRecords(decompressedRemaining)) {
+                        decompressedRemaining -= record.sizeOf();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    throw new InvalidRecordsException(Constants.ErrorCode.CORRUPT_MESSAGE,
+                            "Invalid compressed records: " + e.getMessage());
+                }
+            }
+            offsetCount += batch.getLastOffsetDelta() + 1;
+            batches.add(batch);
+        }
+        if (offsetCount > Integer.MAX_VALUE) {
+            throw new InvalidRecordsException(Constants.ErrorCode.CORRUPT_MESSAGE, "Too many records in one append");
+        }
+        return batches;
+    }
+
+    // Codec id appended batches should be stored with, or -1 to keep the producer's. A
+    // compression.type naming a codec that is not installed keeps the producer's too
+    private int targetCompression() {
+        String type = LogConfig.topicOverride(topic, "compression.type", config.getCompressionType());
+        if (type.equalsIgnoreCase("uncompressed")) {
+            return CompressionCodecs.NONE;
+        }
+        CompressionCodec codec = type.equalsIgnoreCase("producer") ? null : CompressionCodecs.forName(type);
+        return codec == null ? -1 : codec.id();
+    }
+
+    // The batches with their records recompressed with the target codec. Batches already using it
+    // and control batches are copied as they are, and if every batch is, the buffer itself is
+    // returned. Takes the batches validate() decoded from records, so none is decompressed twice
+    private static ByteBuffer convertCompression(ByteBuffer records, List<RecordBatch> validated, int targetId)
+            throws IOException {
+        if (targetId < 0) {
+            return records;
+        }
+        List<RecordBatch> batches = new ArrayList<>(validated.size());
+        boolean converting = false;
+        for (RecordBatch batch : validated) {
+            if (batch.compressionId() != targetId && (batch.getAttributes() & CONTROL_FLAG_MASK) == 0) {
+                batch = new RecordBatch(batch.getBaseOffset(), 0, batch.getPartitionLeaderEpoch(), batch.getMagic(), 0,
+                        (short) ((batch.getAttributes() & ~RecordBatch.COMPRESSION_CODEC_MASK) | targetId),
+                        batch.getLastOffsetDelta(), batch.getBaseTimestamp(), batch.getMaxTimestamp(),
+                        batch.getProducerId(), batch.getProducerEpoch(), batch.getBaseSequence(), batch.getRecords());
+                converting = true;
+            }
+            batches.add(batch);
+        }
+        if (!converting) {
+            return records;
+        }
+        int size = 0;
+        for (RecordBatch batch : batches) {
+            size += batch.sizeOf();
+        }
+        ByteBuffer converted = ByteBuffer.allocate(size);
+        for (RecordBatch batch : batches) {
+            batch.encode(converted);
+        }
+        return converted.flip();
+    }
+
+    // Give the batches consecutive offsets from firstOffset. The CRC covers only what follows it,
+    // so rewriting the base offset leaves every batch valid
+    private static void assignOffsets(ByteBuffer records, long firstOffset) {
+        long offset = firstOffset;
+        int position = records.position();
+        while (position < records.limit()) {
+            records.putLong(position, offset);
+            offset += records.getInt(position + LogSegment.LAST_OFFSET_DELTA_OFFSET) + 1;
+            position += LogSegment.LOG_OVERHEAD + records.getInt(position + 8);
+        }
+    }
+
+    // Records starting at the batch that holds startOffset, up to maxBytes, or null if there are
+    // none at or after it. Later segments are tried when the offset falls in a gap. With the read
+    // cache enabled, the bytes come from memory when another fetch has already read them
+    public Records read(long startOffset, int maxBytes) throws IOException {
+        return read(startOffset, maxBytes, true);
+    }
+
+    // As read(startOffset, maxBytes), but unless minOneBatch is set a first batch larger than
+    // maxBytes is not returned either, and the result is null
+    public Records read(long startOffset, int maxBytes, boolean minOneBatch) throws IOException {
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(startOffset);
+        if (entry == null) {
+            entry = segments.firstEntry();
+        }
+        for (LogSegment segment : segments.tailMap(entry.getKey(), true).values()) {
+            FileRecords records = segment.read(startOffset, maxBytes, minOneBatch);
+            if (records != null && records.sizeInBytes() == 0) {
+                return null;
+            }
+            if (records != null) {
+                return batchCache == null ? records : batchCache.get(topic, partition, segment.baseOffset(), records);
+            }
+        }
+        return null;
+    }
+
+    // First record with a timestamp at or above the target, or null if every record is older.
+    // Segments are skipped on their largest timestamp before any index is touched
+    public TimestampAndOffset fetchOffsetByTimestamp(long targetTimestamp) throws IOException {
+        for (LogSegment segment : segments.values()) {
+            if (segment.largestTimestamp() >= targetTimestamp) {
+                TimestampAndOffset found = segment.findOffsetByTimestamp(targetTimestamp);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    // The record with the largest timestamp in the log, or null if it has none
+    public TimestampAndOffset fetchOffsetOfMaxTimestamp() throws IOException {
+        LogSegment latest = null;
+        for (LogSegment segment : segments.values()) {
+            if (segment.largestTimestamp() >= 0
+                    && (latest == null || segment.largestTimestamp() > latest.largestTimestamp())) {
+                latest = segment;
+            }
+        }
+        return latest == null ? null : latest.offsetOfMaxTimestamp();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (LogSegment segment : segments.values()) {
+            if (batchCache != null) {
+                batchCache.invalidateSegment(topic, partition, segment.baseOffset());
+            }
+            segment.close();
+        }
+    }
+
+    // An append between reserving its space and being published
+    private static final class PendingAppend {
+        private static final int WRITING = 0;
+        private static final int WRITTEN = 1;
+        private static final int FAILED = 2;
+
+        private final LogSegment segment;
+        private final int position;
+        private final ByteBuffer records;
+        private final long firstOffset;
+        private final int offsetCount;
+        private final CompletableFuture<Void> published = new CompletableFuture<>();
+        private volatile int state = WRITING;
+
+        private PendingAppend(LogSegment segment, int position, ByteBuffer records, long firstOffset, int offsetCount) {
+            this.segment = segment;
+            this.position = position;
+            this.records = records;
+            this.firstOffset = firstOffset;
+            this.offsetCount = offsetCount;
+        }
+
+        // Wait until readers can see the records
+        private LogAppendInfo await(long logStartOffset) throws IOException {
+            try {
+                published.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for an append to be published");
+            } catch (ExecutionException e) {
+                throw new IOException("Append failed", e.getCause());
+            }
+            return new LogAppendInfo(firstOffset, firstOffset + offsetCount - 1, logStartOffset);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Log(" + topic + "-" + partition + ", " + segments.size() + " segments, offsets "
+                + logStartOffset() + " to " + logEndOffset() + ")";
+    }
+}
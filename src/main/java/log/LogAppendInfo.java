@@ -0,0 +1,34 @@
+package log;
+
+// Result of an append: the offsets given to the producer's records, and where the log now starts
+public final class LogAppendInfo {
+    private final long firstOffset;
+    private final long lastOffset;
+    private final long logStartOffset;
+
+    // Constructor
+    public LogAppendInfo(long firstOffset, long lastOffset, long logStartOffset) {
+        this.firstOffset = firstOffset;
+        this.lastOffset = lastOffset;
+        this.logStartOffset = logStartOffset;
+    }
+
+    // Getters
+    public long getFirstOffset() {
+        return firstOffset;
+    }
+
+    public long getLastOffset() {
+        return lastOffset;
+    }
+
+    public long getLogStartOffset() {
+        return logStartOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "LogAppendInfo(firstOffset=" + firstOffset + ", lastOffset=" + lastOffset
+                + ", logStartOffset=" + logStartOffset + ")";
+    }
+}
@@ -0,0 +1,375 @@
+package log;
+
+import Kafka.Logger;
+import Kafka.ServerConfig;
+import compression.CompressionCodecs;
+import metadata.Record;
+import metadata.RecordBatch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Compacts the logs of topics whose cleanup.policy includes "compact", and the metadata log,
+// down to the latest record of every key. A round picks each log whose uncleaned ("dirty") share
+// has reached min.cleanable.dirty.ratio, maps every key in the dirty part to its latest offset,
+// then rewrites the segments from the start of the log without the records those offsets
+// replace. Tombstones go too once they are older than delete.retention.ms. Each group of
+// rewritten segments is swapped in for its originals in one step, and where the log has been
+// cleaned up to is kept in a checkpoint file per log directory. The active segment is never
+// touched, and the cleaner's reads and writes are throttled to leave disk bandwidth for fetches
+public class LogCleaner {
+    private static final Logger log = Logger.getLogger(LogCleaner.class);
+    private static final String METADATA_TOPIC = "__cluster_metadata";
+    static final String CHECKPOINT_FILE = "cleaner-offset-checkpoint";
+    private static final int CONTROL_FLAG_MASK = 0x20;
+
+    private final ServerConfig config;
+    private final LogConfig logConfig;
+    private final Supplier<Collection<Log>> logs;
+    private final Consumer<LogSegment> deleter; // Deletes replaced segments once readers are done
+    private final Throttler throttler;
+    private final Map<Path, Map<String, Long>> checkpoints = new HashMap<>(); // Cleaner thread only
+    private SkimpyOffsetMap offsetMap; // Allocated on the first round that has a log to clean
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Constructor
+    public LogCleaner(ServerConfig config, LogConfig logConfig, Supplier<Collection<Log>> logs,
+                      Consumer<LogSegment> deleter) {
+        this.config = config;
+        this.logConfig = logConfig;
+        this.logs = logs;
+        this.deleter = deleter;
+        this.throttler = new Throttler(config.getLogCleanerIoMaxBytesPerSecond());
+        this.thread = new Thread(this::run, "kafka-log-cleaner");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Stop the cleaner, abandoning a log it is halfway through; its partial output is deleted
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            for (Log partitionLog : logs.get()) {
+                if (!running) {
+                    break;
+                }
+                try {
+                    if (isCompacted(partitionLog.topic())) {
+                        cleanIfDirty(partitionLog);
+                    }
+                } catch (InterruptedIOException e) {
+                    log.info("Stopped cleaning " + partitionLog + " for shutdown");
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to clean " + partitionLog, e);
+                }
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(config.getLogCleanerBackoffMs()));
+        }
+    }
+
+    private boolean isCompacted(String topic) {
+        return topic.equals(METADATA_TOPIC)
+                || LogConfig.topicOverride(topic, "cleanup.policy", config.getLogCleanupPolicy()).contains("compact");
+    }
+
+    // Clean the log if enough of what can be cleaned has not been yet
+    private void cleanIfDirty(Log partitionLog) throws IOException {
+        long firstDirtyOffset = Math.max(checkpoint(partitionLog), partitionLog.logStartOffset());
+        long firstUncleanableOffset = partitionLog.firstUncleanableOffset();
+        long cleanBytes = 0;
+        long dirtyBytes = 0;
+        for (LogSegment segment : partitionLog.segments()) {
+            if (segment.baseOffset() >= firstUncleanableOffset) {
+                break;
+            }
+            if (segment.nextOffset() <= firstDirtyOffset) {
+                cleanBytes += segment.size();
+            } else {
+                dirtyBytes += segment.size();
+            }
+        }
+        double minRatio = LogConfig.topicOverride(partitionLog.topic(), "min.cleanable.dirty.ratio",
+                config.getLogCleanerMinCleanableRatio());
+        if (dirtyBytes > 0 && (double) dirtyBytes / (cleanBytes + dirtyBytes) >= minRatio) {
+            clean(partitionLog, firstDirtyOffset, firstUncleanableOffset);
+        }
+    }
+
+    private void clean(Log partitionLog, long firstDirtyOffset, long firstUncleanableOffset) throws IOException {
+        long start = System.nanoTime();
+        if (offsetMap == null) {
+            offsetMap = new SkimpyOffsetMap((int) Math.min(config.getLogCleanerDedupeBufferSize(), Integer.MAX_VALUE));
+        }
+        long endOffset = buildOffsetMap(partitionLog, firstDirtyOffset, firstUncleanableOffset);
+        if (endOffset <= firstDirtyOffset) {
+            log.warn("Cannot clean " + partitionLog + ": the batch at offset " + firstDirtyOffset
+                    + " has more keys than log.cleaner.dedupe.buffer.size can map");
+            return;
+        }
+        long deleteRetentionMs = LogConfig.topicOverride(partitionLog.topic(), "delete.retention.ms",
+                config.getLogCleanerDeleteRetentionMs());
+        CleanerStats stats = new CleanerStats();
+        for (List<LogSegment> group : groupSegments(partitionLog, endOffset)) {
+            cleanSegments(partitionLog, group, System.currentTimeMillis() - deleteRetentionMs, stats);
+        }
+        updateCheckpoint(partitionLog, endOffset);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Cleaned " + partitionLog.topic() + "-" + partitionLog.partition() + " up to offset " + endOffset + " in "
+                + elapsedMs + " ms: " + stats);
+    }
+
+    // Map every key in the dirty part of the log to its latest offset. Returns the offset the map
+    // covers up to, which stops short of the first uncleanable offset if the map fills up first
+    private long buildOffsetMap(Log partitionLog, long firstDirtyOffset, long firstUncleanableOffset) throws IOException {
+        offsetMap.clear();
+        int maxEntries = (int) (offsetMap.slots() * config.getLogCleanerIoBufferLoadFactor());
+        for (LogSegment segment : partitionLog.segments()) {
+            if (segment.baseOffset() >= firstUncleanableOffset) {
+                break;
+            }
+            if (segment.nextOffset() <= firstDirtyOffset) {
+                continue;
+            }
+            int position = 0;
+            while (true) {
+                // Mapped batch bytes stay valid only while the lease is held, one batch at a time
+                try (MmapCache.Lease lease = segment.leaseMappings()) {
+                    ByteBuffer bytes = segment.batchAt(lease, position);
+                    if (bytes == null) {
+                        break;
+                    }
+                    checkRunning();
+                    position += bytes.remaining();
+                    throttler.maybeThrottle(bytes.remaining());
+                    RecordBatch batch = RecordBatch.decode(bytes);
+                    if (batch.getBaseOffset() + batch.getLastOffsetDelta() < firstDirtyOffset || !isCleanable(batch)) {
+                        continue;
+                    }
+                    if (offsetMap.size() + batch.getRecordCount() > maxEntries) {
+                        return Math.max(batch.getBaseOffset(), firstDirtyOffset);
+                    }
+                    for (Record record : batch.getRecords()) {
+                        long offset = batch.getBaseOffset() + record.getOffsetDelta();
+                        if (record.getKey() != null && offset >= firstDirtyOffset) {
+                            offsetMap.put(record.getKey(), offset);
+                        }
+                    }
+                }
+            }
+        }
+        return firstUncleanableOffset;
+    }
+
+    // Consecutive segments below endOffset, grouped so each group still fits in one segment
+    private List<List<LogSegment>> groupSegments(Log partitionLog, long endOffset) {
+        List<List<LogSegment>> groups = new ArrayList<>();
+        List<LogSegment> group = new ArrayList<>();
+        long groupBytes = 0;
+        for (LogSegment segment : partitionLog.segments()) {
+            if (segment.baseOffset() >= endOffset) {
+                break;
+            }
+            if (!group.isEmpty() && (groupBytes + segment.size() > logConfig.getSegmentBytes()
+                    || segment.nextOffset() - 1 - group.get(0).baseOffset() > Integer.MAX_VALUE)) {
+                groups.add(group);
+                group = new ArrayList<>();
+                groupBytes = 0;
+            }
+            group.add(segment);
+            groupBytes += segment.size();
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    // Write the records of a group of segments that survive the offset map into one new segment,
+    // then swap it in for them
+    private void cleanSegments(Log partitionLog, List<LogSegment> group, long deleteHorizonMs, CleanerStats stats)
+            throws IOException {
+        LogSegment cleaned = partitionLog.createCleanedSegment(group.get(0).baseOffset());
+        try {
+            ByteBuffer writeBuffer = ByteBuffer.allocate(config.getLogCleanerIoBufferSize());
+            for (LogSegment segment : group) {
+                int position = 0;
+                while (true) {
+                    // The retained bytes may be a view of the mapping, so they are written or
+                    // copied before the lease is released
+                    try (MmapCache.Lease lease = segment.leaseMappings()) {
+                        ByteBuffer bytes = segment.batchAt(lease, position);
+                        if (bytes == null) {
+                            break;
+                        }
+                        checkRunning();
+                        position += bytes.remaining();
+                        stats.bytesRead += bytes.remaining();
+                        throttler.maybeThrottle(bytes.remaining());
+                        ByteBuffer retained = filterBatch(bytes, deleteHorizonMs, stats);
+                        if (retained == null) {
+                            continue;
+                        }
+                        if (retained.remaining() > writeBuffer.remaining()) {
+                            writeOut(cleaned, writeBuffer, stats);
+                        }
+                        if (retained.remaining() > writeBuffer.capacity()) {
+                            stats.bytesWritten += retained.remaining();
+                            throttler.maybeThrottle(retained.remaining());
+                            cleaned.append(retained);
+                        } else {
+                            writeBuffer.put(retained);
+                        }
+                    }
+                }
+            }
+            writeOut(cleaned, writeBuffer, stats);
+            cleaned.flush();
+        } catch (IOException | RuntimeException e) {
+            cleaned.delete();
+            throw e;
+        }
+        if (!partitionLog.replaceSegments(cleaned, group)) {
+            log.info("Segments of " + partitionLog + " changed while cleaning, dropping the cleaned copy");
+            cleaned.delete();
+            return;
+        }
+        for (LogSegment segment : group) {
+            deleter.accept(segment);
+        }
+    }
+
+    private void writeOut(LogSegment cleaned, ByteBuffer writeBuffer, CleanerStats stats) throws IOException {
+        writeBuffer.flip();
+        if (writeBuffer.hasRemaining()) {
+            stats.bytesWritten += writeBuffer.remaining();
+            throttler.maybeThrottle(writeBuffer.remaining());
+            cleaned.append(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    // The batch without the records a later one for the same key replaces and without tombstones
+    // older than the horizon: the original bytes if every record stays, null if none does, and
+    // otherwise a new batch. The new batch keeps the original offsets and last offset delta, so
+    // the offsets after it are unchanged
+    private ByteBuffer filterBatch(ByteBuffer bytes, long deleteHorizonMs, CleanerStats stats) throws IOException {
+        RecordBatch batch = RecordBatch.decode(bytes.duplicate());
+        if (!isCleanable(batch)) {
+            stats.recordsRetained += batch.getRecordCount();
+            return bytes;
+        }
+        List<Record> records = batch.getRecords();
+        List<Record> retained = new ArrayList<>(records.size());
+        for (Record record : records) {
+            if (shouldRetain(batch, record, deleteHorizonMs)) {
+                retained.add(record);
+            }
+        }
+        stats.recordsRetained += retained.size();
+        stats.recordsRemoved += records.size() - retained.size();
+        if (retained.size() == records.size()) {
+            return bytes;
+        }
+        if (retained.isEmpty()) {
+            return null;
+        }
+        RecordBatch filtered = new RecordBatch(batch.getBaseOffset(), 0, batch.getPartitionLeaderEpoch(),
+                batch.getMagic(), 0, batch.getAttributes(), batch.getLastOffsetDelta(), batch.getBaseTimestamp(),
+                batch.getMaxTimestamp(), batch.getProducerId(), batch.getProducerEpoch(), batch.getBaseSequence(),
+                retained);
+        ByteBuffer encoded = ByteBuffer.allocate(filtered.sizeOf());
+        filtered.encode(encoded);
+        return encoded.flip();
+    }
+
+    // Records without a key cannot be compacted and are always kept
+    private boolean shouldRetain(RecordBatch batch, Record record, long deleteHorizonMs) {
+        if (record.getKey() == null) {
+            return true;
+        }
+        long offset = batch.getBaseOffset() + record.getOffsetDelta();
+        if (offsetMap.get(record.getKey()) > offset) {
+            return false;
+        }
+        return record.getValue() != null || batch.getBaseTimestamp() + record.getTimestampDelta() >= deleteHorizonMs;
+    }
+
+    // Control batches mark transaction boundaries rather than carrying keyed data, and batches
+    // compressed with a codec that is not installed cannot be read; both are kept whole.
+    // Filtered compressed batches are recompressed with their own codec
+    private static boolean isCleanable(RecordBatch batch) {
+        return (batch.getAttributes() & CONTROL_FLAG_MASK) == 0 && CompressionCodecs.isSupported(batch.compressionId());
+    }
+
+    private void checkRunning() throws InterruptedIOException {
+        if (!running) {
+            throw new InterruptedIOException("Log cleaner is shutting down");
+        }
+    }
+
+    // Offset the log has been cleaned up to, from the checkpoint in its log directory
+    private long checkpoint(Log partitionLog) {
+        Long offset = checkpointsFor(partitionLog.dir().getParent()).get(partitionLog.dir().getFileName().toString());
+        return offset == null ? 0 : offset;
+    }
+
+    private void updateCheckpoint(Log partitionLog, long offset) {
+        Path logDir = partitionLog.dir().getParent();
+        Map<String, Long> offsets = checkpointsFor(logDir);
+        offsets.put(partitionLog.dir().getFileName().toString(), offset);
+        try {
+            new OffsetCheckpointFile(logDir.resolve(CHECKPOINT_FILE)).write(offsets);
+        } catch (IOException e) {
+            log.error("Failed to write the cleaner checkpoint in " + logDir, e);
+        }
+    }
+
+    private Map<String, Long> checkpointsFor(Path logDir) {
+        return checkpoints.computeIfAbsent(logDir, dir -> {
+            try {
+                return new OffsetCheckpointFile(dir.resolve(CHECKPOINT_FILE)).read();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable cleaner checkpoint in " + dir + ": " + e.getMessage());
+                return new HashMap<>();
+            }
+        });
+    }
+
+    // What one log's cleaning did, for the log line at the end
+    private static final class CleanerStats {
+        private long bytesRead;
+        private long bytesWritten;
+        private long recordsRetained;
+        private long recordsRemoved;
+
+        @Override
+        public String toString() {
+            return "read " + bytesRead + " bytes, wrote " + bytesWritten + ", kept " + recordsRetained + " records, removed "
+                    + recordsRemoved;
+        }
+    }
+}
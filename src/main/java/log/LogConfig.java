@@ -0,0 +1,114 @@
+package log;
+
+import Kafka.Logger;
+import Kafka.ServerConfig;
+import metadata.ClusterMetadata;
+
+// Settings shared by every partition log, read once from the server config
+public class LogConfig {
+    private static final Logger log = Logger.getLogger(LogConfig.class);
+
+    private final int segmentBytes;
+    private final long rollMs;
+    private final int indexIntervalBytes;
+    private final int maxIndexSize;
+    private final long flushIntervalMessages;
+    private final long flushIntervalMs;
+    private final boolean flushOnAcksAll;
+    private final String compressionType;
+    private final long decompressedMaxBytes;
+
+    // Constructor
+    public LogConfig(int segmentBytes, long rollMs, int indexIntervalBytes, int maxIndexSize,
+                     long flushIntervalMessages, long flushIntervalMs, boolean flushOnAcksAll, String compressionType,
+                     long decompressedMaxBytes) {
+        this.segmentBytes = segmentBytes;
+        this.rollMs = rollMs;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.maxIndexSize = maxIndexSize;
+        this.flushIntervalMessages = flushIntervalMessages;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushOnAcksAll = flushOnAcksAll;
+        this.compressionType = compressionType;
+        this.decompressedMaxBytes = decompressedMaxBytes;
+    }
+
+    public static LogConfig fromServerConfig(ServerConfig config) {
+        return new LogConfig(config.getLogSegmentBytes(), config.getLogRollMs(), config.getLogIndexIntervalBytes(),
+                config.getLogIndexSizeMaxBytes(), config.getLogFlushIntervalMessages(), config.getLogFlushIntervalMs(),
+                config.getLogFlushOnAcksAll(), config.getCompressionType(), config.getLogDecompressedMaxBytes());
+    }
+
+    // A topic's override of a setting such as retention.ms, from the config records in the metadata
+    // log, or the broker default
+    public static String topicOverride(String topic, String name, String defaultValue) {
+        String value = ClusterMetadata.getInstance().getTopicConfig(topic, name);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    // A numeric override, or the broker default if the topic has none or its value is not a number.
+    // Overrides come from the metadata log, not the checked server config, so a bad one is logged
+    // and skipped rather than failing the caller
+    public static long topicOverride(String topic, String name, long defaultValue) {
+        String value = topicOverride(topic, name, (String) null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid " + name + " of topic " + topic + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static double topicOverride(String topic, String name, double defaultValue) {
+        String value = topicOverride(topic, name, (String) null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid " + name + " of topic " + topic + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    // Getters
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public long getRollMs() {
+        return rollMs;
+    }
+
+    public int getIndexIntervalBytes() {
+        return indexIntervalBytes;
+    }
+
+    public int getMaxIndexSize() {
+        return maxIndexSize;
+    }
+
+    public long getFlushIntervalMessages() {
+        return flushIntervalMessages;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public boolean isFlushOnAcksAll() {
+        return flushOnAcksAll;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public long getDecompressedMaxBytes() {
+        return decompressedMaxBytes;
+    }
+}
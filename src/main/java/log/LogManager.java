@@ -0,0 +1,244 @@
+package log;
+
+import Kafka.Logger;
+import Kafka.ServerConfig;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Owns the partition logs under log.dirs. Every partition directory is opened at startup, so a
+// fetch only costs a map lookup before it reaches the segment. A clean shutdown checkpoints how
+// far each log is on disk, so the next startup trusts everything before that
+public class LogManager {
+    private static final Logger log = Logger.getLogger(LogManager.class);
+    private static final String RECOVERY_POINT_CHECKPOINT = "recovery-point-offset-checkpoint";
+
+    private final List<Path> logDirs = new ArrayList<>();
+    private final LogConfig logConfig;
+    private final int recoveryThreadsPerDir;
+    private final MmapCache mmapCache; // Null unless log.mmap.enable is set
+    private final BatchCache batchCache; // Null unless log.read.cache.max.bytes is set
+    private final FlushScheduler flushScheduler;
+    private final RetentionManager retentionManager;
+    private final LogCleaner logCleaner; // Null unless log.cleaner.enable is set
+    private final Map<String, Log> logs = new ConcurrentHashMap<>();
+    private final ReentrantLock createLock = new ReentrantLock();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // Constructor
+    private LogManager(ServerConfig config) throws IOException {
+        for (String logDir : config.getLogDirs().split(",")) {
+            if (!logDir.isBlank()) {
+                logDirs.add(Paths.get(logDir.trim()));
+            }
+        }
+        this.logConfig = LogConfig.fromServerConfig(config);
+        this.recoveryThreadsPerDir = Math.max(1, config.getNumRecoveryThreadsPerDataDir());
+        this.mmapCache = config.getLogMmapEnable()
+                ? new MmapCache(config.getLogMmapChunkBytes(), config.getLogMmapMaxBytes())
+                : null;
+        this.batchCache = config.getLogReadCacheMaxBytes() > 0 ? new BatchCache(config.getLogReadCacheMaxBytes()) : null;
+        this.flushScheduler = new FlushScheduler(config.getLogFlushSchedulerIntervalMs(), logs::values);
+        this.retentionManager = new RetentionManager(config, logs::values);
+        this.logCleaner = config.getLogCleanerEnable()
+                ? new LogCleaner(config, logConfig, logs::values, retentionManager::scheduleDelete)
+                : null;
+        loadLogs();
+        flushScheduler.start();
+        retentionManager.start();
+        if (logCleaner != null) {
+            logCleaner.start();
+        }
+    }
+
+    // Singleton instance, opened at startup; the defaults apply if it is first used before then
+    private static volatile LogManager instance;
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+
+    // Open the logs under log.dirs before any request is served
+    public static void startup(ServerConfig config) throws IOException {
+        instanceLock.lock();
+        try {
+            if (instance == null) {
+                instance = new LogManager(config);
+            }
+        } finally {
+            instanceLock.unlock();
+        }
+    }
+
+    public static LogManager getInstance() {
+        LogManager result = instance;
+        if (result != null) {
+            return result;
+        }
+        try {
+            startup(new ServerConfig());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load logs", e);
+        }
+        return instance;
+    }
+
+    // Close every log, trimming the indexes, if the logs were ever opened
+    public static void shutdown() {
+        LogManager result = instance;
+        if (result != null) {
+            result.close();
+        }
+    }
+
+    // Open the partition logs of every directory in parallel, on a pool of
+    // num.recovery.threads.per.data.dir threads per directory so one slow disk does not hold up
+    // the others. Each log is only checked from its checkpointed recovery point on
+    private void loadLogs() throws IOException {
+        long startMs = System.currentTimeMillis();
+        List<ExecutorService> pools = new ArrayList<>();
+        List<Future<Log>> loads = new ArrayList<>();
+        try {
+            for (Path logDir : logDirs) {
+                if (!Files.isDirectory(logDir)) {
+                    log.warn("Log directory " + logDir + " does not exist");
+                    continue;
+                }
+                Map<String, Long> recoveryPoints = readRecoveryPoints(logDir);
+                String threadPrefix = "kafka-log-recovery-" + pools.size() + "-";
+                AtomicInteger threadId = new AtomicInteger();
+                ExecutorService pool = Executors.newFixedThreadPool(recoveryThreadsPerDir, runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + threadId.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                pools.add(pool);
+                try (DirectoryStream<Path> dirs = Files.newDirectoryStream(logDir, Log::isPartitionDirectory)) {
+                    for (Path dir : dirs) {
+                        long recoveryPoint = recoveryPoints.getOrDefault(dir.getFileName().toString(), 0L);
+                        loads.add(pool.submit(() ->
+                                Log.load(dir, logConfig, mmapCache, batchCache, flushScheduler, recoveryPoint)));
+                    }
+                }
+            }
+            for (Future<Log> load : loads) {
+                Log partitionLog = load.get();
+                logs.put(key(partitionLog.topic(), partitionLog.partition()), partitionLog);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Failed to load logs", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading logs");
+        } finally {
+            for (ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+        log.info("Loaded " + logs.size() + " partition logs from " + logDirs + " in "
+                + (System.currentTimeMillis() - startMs) + " ms");
+    }
+
+    // Recovery points written at the last shutdown, or none, so that every log is checked in full
+    private static Map<String, Long> readRecoveryPoints(Path logDir) {
+        try {
+            return new OffsetCheckpointFile(logDir.resolve(RECOVERY_POINT_CHECKPOINT)).read();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable recovery point checkpoint in " + logDir + ": " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    // Record the flushed offset of every log in its directory's checkpoint. A checkpoint is never
+    // ahead of the disk, so one left from an earlier run only makes the next startup check more
+    private void checkpointRecoveryPoints() {
+        for (Path logDir : logDirs) {
+            if (!Files.isDirectory(logDir)) {
+                continue;
+            }
+            Map<String, Long> recoveryPoints = new HashMap<>();
+            for (Log partitionLog : logs.values()) {
+                if (partitionLog.dir().getParent().equals(logDir)) {
+                    recoveryPoints.put(key(partitionLog.topic(), partitionLog.partition()),
+                            partitionLog.flushedOffset());
+                }
+            }
+            try {
+                new OffsetCheckpointFile(logDir.resolve(RECOVERY_POINT_CHECKPOINT)).write(recoveryPoints);
+            } catch (IOException e) {
+                log.error("Failed to write the recovery point checkpoint in " + logDir, e);
+            }
+        }
+    }
+
+    // The log of a partition, or null if this broker has none
+    public Log getLog(String topic, int partition) {
+        return logs.get(key(topic, partition));
+    }
+
+    // The log of a partition, created in the first log directory if this broker has none yet
+    public Log getOrCreateLog(String topic, int partition) throws IOException {
+        Log existing = getLog(topic, partition);
+        if (existing != null) {
+            return existing;
+        }
+        createLock.lock();
+        try {
+            Log partitionLog = getLog(topic, partition);
+            if (partitionLog == null) {
+                if (logDirs.isEmpty()) {
+                    throw new IOException("No log directory to create " + key(topic, partition) + " in");
+                }
+                Path dir = Files.createDirectories(logDirs.get(0).resolve(key(topic, partition)));
+                partitionLog = Log.load(dir, logConfig, mmapCache, batchCache, flushScheduler, 0);
+                logs.put(key(topic, partition), partitionLog);
+                log.info("Created " + partitionLog);
+            }
+            return partitionLog;
+        } finally {
+            createLock.unlock();
+        }
+    }
+
+    // Flush every log, close them and checkpoint their recovery points; only the first call does anything
+    private void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (logCleaner != null) {
+            logCleaner.shutdown();
+        }
+        retentionManager.shutdown();
+        flushScheduler.shutdown();
+        if (batchCache != null) {
+            log.info("Closing logs, " + batchCache);
+        }
+        for (Log partitionLog : logs.values()) {
+            try {
+                partitionLog.close();
+            } catch (IOException e) {
+                log.error("Failed to close " + partitionLog, e);
+            }
+        }
+        checkpointRecoveryPoints();
+    }
+
+    private static String key(String topic, int partition) {
+        return topic + "-" + partition;
+    }
+}
@@ -0,0 +1,468 @@
+package log;
+
+import Kafka.Logger;
+import compression.CompressionCodecs;
+import metadata.FileRecords;
+import metadata.Record;
+import metadata.RecordBatch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// One file of a partition log, named by the offset of its first record, plus its offset index.
+// Positioning a read costs an index lookup and a scan of at most log.index.interval.bytes of batch
+// headers, however long the segment is. Appends are written at positions reserved by the Log and
+// become visible to readers only once published, in offset order
+public class LogSegment implements Closeable {
+    private static final Logger log = Logger.getLogger(LogSegment.class);
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".index";
+    static final String TIME_INDEX_SUFFIX = ".timeindex";
+    static final String DELETED_SUFFIX = ".deleted";
+    static final String CLEANED_SUFFIX = ".cleaned"; // A segment the cleaner is still writing
+    static final String SWAP_SUFFIX = ".swap"; // A cleaned segment about to replace the originals
+    private static final String[] SUFFIXES = {LOG_SUFFIX, INDEX_SUFFIX, TIME_INDEX_SUFFIX};
+
+    static final int LOG_OVERHEAD = 12; // Base offset and batch length, which does not count them
+    private static final int CRC_OFFSET = 17; // CRC32C of everything from the attributes on
+    private static final int ATTRIBUTES_OFFSET = 21;
+    static final int LAST_OFFSET_DELTA_OFFSET = 23;
+    private static final int MAX_TIMESTAMP_OFFSET = 35;
+    private static final int HEADER_SIZE = MAX_TIMESTAMP_OFFSET + 8;
+    private static final int TIMESTAMP_TYPE_MASK = 0x08; // Set for LogAppendTime
+
+    private final Path dir;
+    private final long baseOffset;
+    private final FileChannel channel;
+    private final OffsetIndex index;
+    private final TimeIndex timeIndex;
+    private final int indexIntervalBytes;
+    private final MmapCache mmapCache; // Null when segments are read through the channel
+    private volatile int size;
+    private volatile long nextOffset;
+    private volatile long maxTimestampSoFar = -1;
+    private volatile long offsetOfMaxTimestampSoFar; // Last offset of the batch that carried it
+    private volatile boolean markedForDeletion;
+    private volatile String fileSuffix; // Appended to every file name; empty for a live segment
+    private int bytesSinceLastIndexEntry; // Only touched while recovering or publishing
+    private final long createdMs = System.currentTimeMillis();
+
+    // Constructor
+    private LogSegment(Path dir, long baseOffset, String fileSuffix, FileChannel channel, OffsetIndex index,
+                       TimeIndex timeIndex, int indexIntervalBytes, MmapCache mmapCache, int size) {
+        this.dir = dir;
+        this.fileSuffix = fileSuffix;
+        this.baseOffset = baseOffset;
+        this.channel = channel;
+        this.index = index;
+        this.timeIndex = timeIndex;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.mmapCache = mmapCache;
+        this.size = size;
+        this.nextOffset = baseOffset;
+    }
+
+    // Open the segment files in a partition directory, rebuilding the indexes if they do not match
+    // the log or each other. Both are written together, so they are rebuilt together
+    public static LogSegment open(Path dir, long baseOffset, LogConfig config, MmapCache mmapCache) throws IOException {
+        return open(dir, baseOffset, config, mmapCache, "");
+    }
+
+    // Open a segment whose file names carry a suffix, such as one being written by the cleaner
+    static LogSegment open(Path dir, long baseOffset, LogConfig config, MmapCache mmapCache, String fileSuffix)
+            throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(fileName(baseOffset, LOG_SUFFIX + fileSuffix)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        OffsetIndex index = new OffsetIndex(dir.resolve(fileName(baseOffset, INDEX_SUFFIX + fileSuffix)), baseOffset,
+                config.getMaxIndexSize());
+        TimeIndex timeIndex = new TimeIndex(dir.resolve(fileName(baseOffset, TIME_INDEX_SUFFIX + fileSuffix)), baseOffset,
+                config.getMaxIndexSize());
+        LogSegment segment = new LogSegment(dir, baseOffset, fileSuffix, channel, index, timeIndex,
+                config.getIndexIntervalBytes(), mmapCache, (int) channel.size());
+        if (!index.isValid(segment.size) || !timeIndex.isValid(segment.size)
+                || timeIndex.lastOffset() > index.lastOffset()
+                || (timeIndex.isNewlyCreated() && index.entries() > 0)) {
+            index.reset();
+            timeIndex.reset();
+        }
+        segment.maxTimestampSoFar = timeIndex.lastTimestamp();
+        segment.offsetOfMaxTimestampSoFar = timeIndex.lastOffset();
+        segment.nextOffset = segment.recoverIndex();
+        return segment;
+    }
+
+    // Kafka file names: the base offset padded to 20 digits
+    public static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    // Getters
+    public long baseOffset() {
+        return baseOffset;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Offset the next appended record will get
+    public long nextOffset() {
+        return nextOffset;
+    }
+
+    public int indexEntries() {
+        return index.entries();
+    }
+
+    public int timeIndexEntries() {
+        return timeIndex.entries();
+    }
+
+    // True once no more index entries fit, so appends should move on to a new segment
+    public boolean isIndexFull() {
+        return index.isFull() || timeIndex.isFull();
+    }
+
+    // When this segment was opened, for rolling by age
+    public long createdMs() {
+        return createdMs;
+    }
+
+    // Largest batch timestamp in the segment, or -1 if it is empty
+    public long largestTimestamp() {
+        return maxTimestampSoFar;
+    }
+
+    // Records from the batch holding startOffset up to maxSize bytes, or null if the segment has no
+    // such batch. The first batch is returned whole even when it is larger than maxSize, so a
+    // consumer can always make progress
+    public FileRecords read(long startOffset, int maxSize) throws IOException {
+        return read(startOffset, maxSize, true);
+    }
+
+    // As read(startOffset, maxSize), but unless minOneBatch is set a first batch larger than maxSize
+    // gives empty records instead
+    public FileRecords read(long startOffset, int maxSize, boolean minOneBatch) throws IOException {
+        if (startOffset >= nextOffset) {
+            return null;
+        }
+        int end = size;
+        ByteBuffer scratch = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer header;
+        int position = index.lookup(startOffset);
+        try (MmapCache.Lease lease = leaseMappings()) {
+            while ((header = readHeader(lease, scratch, position, end)) != null) {
+                int batchSize = LOG_OVERHEAD + header.getInt(8);
+                if (lastOffset(header) >= startOffset) {
+                    if (batchSize > maxSize && !minOneBatch) {
+                        return new FileRecords(channel, position, 0);
+                    }
+                    int length = Math.max(batchSize, Math.min(maxSize, end - position));
+                    return new FileRecords(channel, position, length);
+                }
+                position += batchSize;
+            }
+            return null;
+        }
+    }
+
+    // First record with a timestamp at or above the target, or null if there is none. The time
+    // index skips every batch known to be older; the batch found is decoded to pick the record
+    public TimestampAndOffset findOffsetByTimestamp(long targetTimestamp) throws IOException {
+        if (maxTimestampSoFar < targetTimestamp) {
+            return null;
+        }
+        long olderThroughOffset = timeIndex.lookup(targetTimestamp);
+        int end = size;
+        ByteBuffer scratch = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer header;
+        int position = olderThroughOffset < 0 ? 0 : index.lookup(olderThroughOffset);
+        try (MmapCache.Lease lease = leaseMappings()) {
+            while ((header = readHeader(lease, scratch, position, end)) != null) {
+                int batchSize = LOG_OVERHEAD + header.getInt(8);
+                if (header.getLong(MAX_TIMESTAMP_OFFSET) >= targetTimestamp) {
+                    TimestampAndOffset found = searchBatch(lease, header, position, batchSize, targetTimestamp);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+                position += batchSize;
+            }
+            return null;
+        }
+    }
+
+    // The record carrying the largest timestamp in the segment, or null if it is empty
+    public TimestampAndOffset offsetOfMaxTimestamp() throws IOException {
+        long maxTimestamp = maxTimestampSoFar;
+        if (maxTimestamp < 0) {
+            return null;
+        }
+        ByteBuffer scratch = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer header;
+        int position = index.lookup(offsetOfMaxTimestampSoFar);
+        try (MmapCache.Lease lease = leaseMappings()) {
+            while ((header = readHeader(lease, scratch, position, size)) != null) {
+                int batchSize = LOG_OVERHEAD + header.getInt(8);
+                if (lastOffset(header) >= offsetOfMaxTimestampSoFar) {
+                    TimestampAndOffset found = searchBatch(lease, header, position, batchSize, maxTimestamp);
+                    return found != null ? found : new TimestampAndOffset(maxTimestamp, lastOffset(header));
+                }
+                position += batchSize;
+            }
+            return null;
+        }
+    }
+
+    // Find the first record of a batch with a timestamp at or above the target, or null if the
+    // header's max timestamp overstated the records. LogAppendTime batches, and compressed ones
+    // whose codec is not installed, are answered from the header
+    private TimestampAndOffset searchBatch(MmapCache.Lease lease, ByteBuffer header, int position, int batchSize,
+                                           long targetTimestamp) throws IOException {
+        long batchBaseOffset = header.getLong(0);
+        long batchMaxTimestamp = header.getLong(MAX_TIMESTAMP_OFFSET);
+        short attributes = header.getShort(ATTRIBUTES_OFFSET);
+        if ((attributes & TIMESTAMP_TYPE_MASK) != 0
+                || !CompressionCodecs.isSupported(attributes & RecordBatch.COMPRESSION_CODEC_MASK)) {
+            return new TimestampAndOffset(batchMaxTimestamp, batchBaseOffset);
+        }
+        RecordBatch batch = RecordBatch.decode(readBytes(lease, position, batchSize));
+        for (Record record : batch.getRecords()) {
+            long timestamp = batch.getBaseTimestamp() + record.getTimestampDelta();
+            if (timestamp >= targetTimestamp) {
+                return new TimestampAndOffset(timestamp, batchBaseOffset + record.getOffsetDelta());
+            }
+        }
+        return null;
+    }
+
+    // The whole batch at position, or null past the last one; for walking every batch in order.
+    // A mapped batch is only valid while the lease from leaseMappings() is held
+    ByteBuffer batchAt(MmapCache.Lease lease, int position) throws IOException {
+        ByteBuffer header = readHeader(lease, ByteBuffer.allocate(HEADER_SIZE), position, size);
+        return header == null ? null : readBytes(lease, position, LOG_OVERHEAD + header.getInt(8));
+    }
+
+    // Write and publish batches at the end of a segment nobody else appends to, like one the
+    // cleaner is filling
+    void append(ByteBuffer records) throws IOException {
+        int position = size;
+        write(records, position);
+        publish(records, position);
+    }
+
+    // Write appended batches at a position reserved for them. Appends to a segment may be written
+    // concurrently and in any order; readers do not see the bytes until publish()
+    void write(ByteBuffer records, int position) throws IOException {
+        ByteBuffer source = records.duplicate();
+        int written = 0;
+        while (source.hasRemaining()) {
+            written += channel.write(source, (long) position + written);
+        }
+    }
+
+    // Make batches written at position visible: index them, then move the end of the segment past
+    // them. Called in position order, by one thread at a time
+    void publish(ByteBuffer records, int position) {
+        long next = nextOffset;
+        int start = records.position();
+        int batchPosition = start;
+        while (batchPosition < records.limit()) {
+            ByteBuffer header = records.duplicate().position(batchPosition).slice();
+            int batchSize = LOG_OVERHEAD + header.getInt(8);
+            next = lastOffset(header) + 1;
+            indexBatch(position + batchPosition - start, batchSize, next - 1, header.getLong(MAX_TIMESTAMP_OFFSET));
+            batchPosition += batchSize;
+        }
+        size = position + records.remaining();
+        nextOffset = next;
+    }
+
+    // Walk the batches after the last index entry to find the end of the segment, indexing every
+    // indexIntervalBytes on the way. This fills in indexes that are missing or behind the log. A
+    // torn batch at the end, left by a crash mid-write, is cut off so appends continue after the
+    // last whole batch
+    private long recoverIndex() throws IOException {
+        ByteBuffer scratch = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer header;
+        long next = baseOffset;
+        int position = index.lastPosition();
+        try (MmapCache.Lease lease = leaseMappings()) {
+            while ((header = readHeader(lease, scratch, position, size)) != null) {
+                int batchSize = LOG_OVERHEAD + header.getInt(8);
+                next = lastOffset(header) + 1;
+                indexBatch(position, batchSize, next - 1, header.getLong(MAX_TIMESTAMP_OFFSET));
+                position += batchSize;
+            }
+        }
+        if (position < size) {
+            log.warn("Truncating " + (size - position) + " bytes after the last whole batch of segment " + baseOffset);
+            channel.truncate(position);
+            size = position;
+        }
+        return next;
+    }
+
+    // Rebuild both indexes from a scan of every batch, checking each one's CRC32C against its
+    // bytes. For segments that may not have reached the disk before the broker stopped. The
+    // segment is cut at the first torn or corrupt batch; returns the number of bytes cut
+    int recover() throws IOException {
+        index.reset();
+        timeIndex.reset();
+        maxTimestampSoFar = -1;
+        offsetOfMaxTimestampSoFar = 0;
+        bytesSinceLastIndexEntry = 0;
+        ByteBuffer scratch = ByteBuffer.allocate(HEADER_SIZE);
+        long next = baseOffset;
+        int position = 0;
+        while (true) {
+            // One lease per batch, so chunks dropped during a long scan are unmapped as it goes
+            try (MmapCache.Lease lease = leaseMappings()) {
+                ByteBuffer header = readHeader(lease, scratch, position, size);
+                if (header == null) {
+                    break;
+                }
+                int batchSize = LOG_OVERHEAD + header.getInt(8);
+                long lastOffset = lastOffset(header);
+                long batchMaxTimestamp = header.getLong(MAX_TIMESTAMP_OFFSET);
+                ByteBuffer batch = readBytes(lease, position, batchSize);
+                long crc = RecordBatch.crc32c(batch.slice(batch.position() + ATTRIBUTES_OFFSET, batchSize - ATTRIBUTES_OFFSET));
+                if (crc != Integer.toUnsignedLong(batch.getInt(batch.position() + CRC_OFFSET))) {
+                    break;
+                }
+                next = lastOffset + 1;
+                indexBatch(position, batchSize, lastOffset, batchMaxTimestamp);
+                position += batchSize;
+            }
+        }
+        int truncated = size - position;
+        if (truncated > 0) {
+            log.warn("Truncating " + truncated + " bytes of segment " + baseOffset + " at a torn or corrupt batch");
+            if (mmapCache != null) {
+                mmapCache.invalidate(channel);
+            }
+            channel.truncate(position);
+            size = position;
+        }
+        nextOffset = next;
+        return truncated;
+    }
+
+    // Track the largest timestamp and add index entries every indexIntervalBytes
+    private void indexBatch(int position, int batchSize, long lastOffset, long batchMaxTimestamp) {
+        if (batchMaxTimestamp > maxTimestampSoFar) {
+            maxTimestampSoFar = batchMaxTimestamp;
+            offsetOfMaxTimestampSoFar = lastOffset;
+        }
+        if (bytesSinceLastIndexEntry >= indexIntervalBytes && lastOffset > index.lastOffset() && !isIndexFull()) {
+            index.append(lastOffset, position);
+            timeIndex.maybeAppend(maxTimestampSoFar, offsetOfMaxTimestampSoFar);
+            bytesSinceLastIndexEntry = 0;
+        }
+        bytesSinceLastIndexEntry += batchSize;
+    }
+
+    // A lease keeping this segment's mappings in place while slices read under it are in use, or
+    // null when mmap is off
+    MmapCache.Lease leaseMappings() {
+        return mmapCache == null ? null : mmapCache.lease(channel);
+    }
+
+    // The header of the batch at position, or null at the end of the log or at a torn batch. With
+    // mmap enabled it is a view of the shared mapping, valid while the lease is held, so scanning
+    // headers makes no read calls
+    private ByteBuffer readHeader(MmapCache.Lease lease, ByteBuffer scratch, int position, int end) throws IOException {
+        if (position + HEADER_SIZE > end) {
+            return null;
+        }
+        ByteBuffer header = lease == null ? null : mmapCache.slice(lease, position, HEADER_SIZE, end);
+        if (header == null) {
+            header = scratch.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, position + header.position()) < 0) {
+                    return null;
+                }
+            }
+        }
+        int batchLength = header.getInt(8);
+        boolean complete = batchLength >= HEADER_SIZE - LOG_OVERHEAD && (long) position + LOG_OVERHEAD + batchLength <= end;
+        return complete ? header : null;
+    }
+
+    // Bytes of the segment for decoding, mapped when possible and copied otherwise
+    private ByteBuffer readBytes(MmapCache.Lease lease, int position, int length) throws IOException {
+        ByteBuffer mapped = lease == null ? null : mmapCache.slice(lease, position, length, size);
+        return mapped != null ? mapped : new FileRecords(channel, position, length).readAll();
+    }
+
+    // Force the log and both indexes to disk, so everything published so far survives a crash
+    public void flush() throws IOException {
+        if (markedForDeletion) {
+            return; // The data is going away; the channel may already be closed
+        }
+        channel.force(true);
+        index.flush();
+        timeIndex.flush();
+    }
+
+    private static long lastOffset(ByteBuffer header) {
+        return header.getLong(0) + header.getInt(LAST_OFFSET_DELTA_OFFSET);
+    }
+
+    // First step of deleting the segment: rename its files with a .deleted suffix, so the log is
+    // never reopened with it, while fetches that already hold the segment keep reading through
+    // the open channel and mappings
+    void markForDeletion() throws IOException {
+        markedForDeletion = true;
+        if (mmapCache != null) {
+            mmapCache.invalidate(channel);
+        }
+        changeFileSuffix(DELETED_SUFFIX);
+    }
+
+    // Rename the segment's files to carry a different suffix. Open channels and mappings follow
+    // the files, so the segment stays readable throughout. A file already at the new name is
+    // replaced: that only happens to an earlier segment with the same base offset still waiting
+    // to be deleted, whose open channel keeps its data until then
+    void changeFileSuffix(String newSuffix) throws IOException {
+        Files.move(dir.resolve(fileName(baseOffset, LOG_SUFFIX + fileSuffix)),
+                dir.resolve(fileName(baseOffset, LOG_SUFFIX + newSuffix)), StandardCopyOption.REPLACE_EXISTING);
+        index.renameTo(dir.resolve(fileName(baseOffset, INDEX_SUFFIX + newSuffix)));
+        timeIndex.renameTo(dir.resolve(fileName(baseOffset, TIME_INDEX_SUFFIX + newSuffix)));
+        fileSuffix = newSuffix;
+    }
+
+    // Second step, once no fetch can still be reading: close the channel and remove the files.
+    // The indexes are not trimmed, since their files are going away
+    void delete() throws IOException {
+        channel.close();
+        deleteFiles(dir, baseOffset, fileSuffix);
+    }
+
+    // Remove the files of a segment that is not open
+    static void deleteFiles(Path dir, long baseOffset, String fileSuffix) throws IOException {
+        for (String suffix : SUFFIXES) {
+            Files.deleteIfExists(dir.resolve(fileName(baseOffset, suffix + fileSuffix)));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mmapCache != null) {
+            mmapCache.invalidate(channel);
+        }
+        try {
+            index.close();
+            timeIndex.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package log;
+
+import Kafka.Logger;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Read-only mappings of segment files, shared by every fetcher. Files are mapped in fixed-size
+// chunks, so a hot region of a large segment does not pin the whole file, and the least recently
+// used chunks are unmapped once more than maxBytes are mapped. Each chunk is mapped in its own
+// shared Arena, and closing the arena unmaps it there and then instead of whenever the GC gets to
+// it. Slices are only handed out under a Lease on their file: a chunk dropped while its file is
+// leased stays mapped, still counted, until the last lease is released, so no reader is left
+// holding unmapped memory
+public class MmapCache {
+    private static final Logger log = Logger.getLogger(MmapCache.class);
+
+    private final int chunkBytes;
+    private final long maxBytes;
+    private final Map<ChunkKey, Chunk> mappings = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<FileChannel, Integer> leaseCounts = new IdentityHashMap<>();
+    private final Map<FileChannel, List<Chunk>> retired = new IdentityHashMap<>(); // Dropped while leased
+    private final ReentrantLock lock = new ReentrantLock();
+    private long mappedBytes; // Every chunk still mapped, retired ones included
+
+    // Constructor
+    public MmapCache(int chunkBytes, long maxBytes) {
+        this.chunkBytes = chunkBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    // Keep the file's mappings in place while slices of it are in use; close the lease when done
+    public Lease lease(FileChannel channel) {
+        lock.lock();
+        try {
+            leaseCounts.merge(channel, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        return new Lease(channel);
+    }
+
+    // A view of length bytes at position, valid until the lease is closed, or null if they
+    // straddle two chunks and must be read through the channel. Only the first fileSize bytes of
+    // the file are ever mapped, so a chunk that has grown since it was mapped is mapped again
+    public ByteBuffer slice(Lease lease, int position, int length, int fileSize) throws IOException {
+        if (lease.released) {
+            throw new IllegalStateException("Lease already released");
+        }
+        int chunk = position / chunkBytes;
+        int offset = position - chunk * chunkBytes;
+        if (offset + length > chunkBytes || position + length > fileSize) {
+            return null;
+        }
+        ChunkKey key = new ChunkKey(lease.channel, chunk);
+        lock.lock();
+        try {
+            Chunk mapping = mappings.get(key);
+            if (mapping == null || mapping.size() < offset + length) {
+                long chunkStart = (long) chunk * chunkBytes;
+                int mapLength = (int) Math.min(chunkBytes, fileSize - chunkStart);
+                Arena arena = Arena.ofShared();
+                try {
+                    mapping = new Chunk(arena,
+                            lease.channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, mapLength, arena).asByteBuffer());
+                } catch (IOException | RuntimeException e) {
+                    arena.close();
+                    throw e;
+                }
+                mappedBytes += mapLength;
+                Chunk previous = mappings.put(key, mapping);
+                if (previous != null) {
+                    unmap(key.channel, previous);
+                }
+                evict(key);
+            }
+            return mapping.buffer.slice(offset, length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Unmap the chunks of a file that is being closed or deleted, or retire them until its leases end
+    public void invalidate(FileChannel channel) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<ChunkKey, Chunk>> iterator = mappings.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ChunkKey, Chunk> entry = iterator.next();
+                if (entry.getKey().channel == channel) {
+                    iterator.remove();
+                    unmap(channel, entry.getValue());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long mappedBytes() {
+        lock.lock();
+        try {
+            return mappedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drop least recently used chunks, other than the one just mapped, until under the cap
+    private void evict(ChunkKey keep) {
+        Iterator<Map.Entry<ChunkKey, Chunk>> iterator = mappings.entrySet().iterator();
+        while (mappedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<ChunkKey, Chunk> entry = iterator.next();
+            if (!entry.getKey().equals(keep)) {
+                iterator.remove();
+                unmap(entry.getKey().channel, entry.getValue());
+                log.trace(() -> "Dropped chunk " + entry.getKey().chunk + ", " + mappedBytes + " bytes still mapped");
+            }
+        }
+    }
+
+    // Close a dropped chunk's arena now, or once the last lease on its file is released
+    private void unmap(FileChannel channel, Chunk chunk) {
+        if (leaseCounts.containsKey(channel)) {
+            retired.computeIfAbsent(channel, k -> new ArrayList<>()).add(chunk);
+        } else {
+            chunk.arena.close();
+            mappedBytes -= chunk.size();
+        }
+    }
+
+    private void release(FileChannel channel) {
+        lock.lock();
+        try {
+            if (leaseCounts.merge(channel, -1, Integer::sum) > 0) {
+                return;
+            }
+            leaseCounts.remove(channel);
+            List<Chunk> chunks = retired.remove(channel);
+            if (chunks != null) {
+                for (Chunk chunk : chunks) {
+                    chunk.arena.close();
+                    mappedBytes -= chunk.size();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Slices of one file taken under it stay valid until it is closed. Not shared between threads
+    public final class Lease implements AutoCloseable {
+        private final FileChannel channel;
+        private boolean released;
+
+        private Lease(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(channel);
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final Arena arena;
+        private final ByteBuffer buffer;
+
+        private Chunk(Arena arena, ByteBuffer buffer) {
+            this.arena = arena;
+            this.buffer = buffer;
+        }
+
+        private int size() {
+            return buffer.capacity();
+        }
+    }
+
+    private static final class ChunkKey {
+        private final FileChannel channel;
+        private final int chunk;
+
+        private ChunkKey(FileChannel channel, int chunk) {
+            this.channel = channel;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) o;
+            return channel == other.channel && chunk == other.chunk;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(channel), chunk);
+        }
+    }
+}
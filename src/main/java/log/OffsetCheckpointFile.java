@@ -0,0 +1,69 @@
+package log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// An offset per partition, kept in a log directory in Kafka's checkpoint format: a version line,
+// a count line, then "<topic> <partition> <offset>" per partition. Partitions are keyed by their
+// directory name, <topic>-<partition>. A write goes to a temporary file that is synced and then
+// renamed over the old one, so a crash leaves either checkpoint whole
+public class OffsetCheckpointFile {
+    private static final int VERSION = 0;
+
+    private final Path path;
+
+    // Constructor
+    public OffsetCheckpointFile(Path path) {
+        this.path = path;
+    }
+
+    // The offsets in the file, or none if it does not exist yet
+    public Map<String, Long> read() throws IOException {
+        Map<String, Long> offsets = new HashMap<>();
+        if (!Files.exists(path)) {
+            return offsets;
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.size() < 2 || Integer.parseInt(lines.get(0).trim()) != VERSION) {
+            throw new IOException("Unrecognized checkpoint file " + path);
+        }
+        int count = Integer.parseInt(lines.get(1).trim());
+        if (lines.size() < 2 + count) {
+            throw new IOException("Checkpoint file " + path + " lists " + count + " partitions but has "
+                    + (lines.size() - 2));
+        }
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines.get(2 + i).trim().split(" ");
+            if (fields.length != 3) {
+                throw new IOException("Malformed line in checkpoint file " + path + ": " + lines.get(2 + i));
+            }
+            offsets.put(fields[0] + "-" + Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+        }
+        return offsets;
+    }
+
+    public void write(Map<String, Long> offsets) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(VERSION + "\n" + offsets.size() + "\n");
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                int dash = entry.getKey().lastIndexOf('-');
+                writer.write(entry.getKey().substring(0, dash) + " " + entry.getKey().substring(dash + 1) + " "
+                        + entry.getValue() + "\n");
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
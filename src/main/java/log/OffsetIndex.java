@@ -0,0 +1,63 @@
+package log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Sparse index from offsets to file positions in one segment. Each 8-byte entry is the offset
+// relative to the segment's base offset and the position of the batch holding it, so a lookup is
+// a binary search over the mapped file
+public class OffsetIndex extends AbstractIndex {
+    private static final int ENTRY_SIZE = 8;
+
+    // Constructor
+    public OffsetIndex(Path path, long baseOffset, int maxIndexSize) throws IOException {
+        super(path, baseOffset, maxIndexSize, ENTRY_SIZE);
+    }
+
+    // Offsets and positions strictly ascending, and positions inside the log
+    @Override
+    protected boolean isValidEntry(int entry, int logSize) {
+        int position = position(entry);
+        if (relativeOffset(entry) < 0 || position < 0 || position >= logSize) {
+            return false;
+        }
+        return entry == 0 || (relativeOffset(entry) > relativeOffset(entry - 1) && position > position(entry - 1));
+    }
+
+    // Position of the last indexed batch at or before the offset, or 0 if there is none
+    public int lookup(long targetOffset) {
+        int found = largestLowerBound(targetOffset - baseOffset, this::relativeOffset);
+        return found < 0 ? 0 : position(found);
+    }
+
+    // Position of the last entry, where a scan for the end of the log can start
+    public int lastPosition() {
+        int n = entries;
+        return n <= 0 ? 0 : position(n - 1);
+    }
+
+    public long lastOffset() {
+        int n = entries;
+        return n <= 0 ? baseOffset : baseOffset + relativeOffset(n - 1);
+    }
+
+    // Add an entry; offsets and positions must be larger than the last entry's
+    public void append(long offset, int position) {
+        if (entries > 0 && (offset <= lastOffset() || position <= lastPosition())) {
+            throw new IllegalArgumentException("Offset " + offset + " at position " + position
+                    + " is not after the last entry of " + path);
+        }
+        int index = nextEntryIndex();
+        mmap.putInt(index, (int) (offset - baseOffset));
+        mmap.putInt(index + 4, position);
+        commitEntry();
+    }
+
+    private int relativeOffset(int entry) {
+        return mmap.getInt(entryIndex(entry));
+    }
+
+    private int position(int entry) {
+        return mmap.getInt(entryIndex(entry) + 4);
+    }
+}
@@ -0,0 +1,99 @@
+package log;
+
+import Kafka.Logger;
+import Kafka.ServerConfig;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Deletes old segments in the background. Every check interval each partition is held to its
+// topic's retention.ms and retention.bytes, falling back to the broker defaults, and segments
+// past either limit leave the log at once. Their files are only renamed then; they are closed
+// and removed after log.segment.delete.delay.ms, so a fetch that already picked a segment can
+// finish reading it
+public class RetentionManager {
+    private static final Logger log = Logger.getLogger(RetentionManager.class);
+    private static final String METADATA_TOPIC = "__cluster_metadata";
+
+    private final ServerConfig config;
+    private final Supplier<Collection<Log>> logs;
+    private final ScheduledExecutorService scheduler;
+    private final Queue<LogSegment> pendingDeletes = new ConcurrentLinkedQueue<>();
+
+    // Constructor
+    public RetentionManager(ServerConfig config, Supplier<Collection<Log>> logs) {
+        this.config = config;
+        this.logs = logs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kafka-log-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        long intervalMs = config.getLogRetentionCheckIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::checkRetention, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop checking and delete the segments still waiting out their delay, since no fetch can
+    // be reading them once the broker is going down
+    public void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LogSegment segment;
+        while ((segment = pendingDeletes.poll()) != null) {
+            delete(segment);
+        }
+    }
+
+    private void checkRetention() {
+        long nowMs = System.currentTimeMillis();
+        for (Log partitionLog : logs.get()) {
+            String topic = partitionLog.topic();
+            try {
+                String policy = LogConfig.topicOverride(topic, "cleanup.policy", config.getLogCleanupPolicy());
+                if (topic.equals(METADATA_TOPIC) || !policy.contains("delete")) {
+                    continue;
+                }
+                long retentionMs = LogConfig.topicOverride(topic, "retention.ms", config.getLogRetentionMs());
+                long retentionBytes = LogConfig.topicOverride(topic, "retention.bytes", config.getLogRetentionBytes());
+                List<LogSegment> deleted = partitionLog.deleteOldSegments(retentionMs, retentionBytes, nowMs);
+                for (LogSegment segment : deleted) {
+                    scheduleDelete(segment);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to apply retention to " + partitionLog, e); // Retried at the next check
+            }
+        }
+    }
+
+    // Delete a segment taken out of its log once the delete delay has passed
+    void scheduleDelete(LogSegment segment) {
+        pendingDeletes.add(segment);
+        scheduler.schedule(() -> {
+            if (pendingDeletes.remove(segment)) {
+                delete(segment);
+            }
+        }, config.getLogSegmentDeleteDelayMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void delete(LogSegment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            log.error("Failed to delete segment " + segment.baseOffset(), e);
+        }
+    }
+}
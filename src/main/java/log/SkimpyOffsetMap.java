@@ -0,0 +1,106 @@
+package log;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// Latest offset of every key in the dirty part of a log, in a fixed block of memory. Keys are
+// stored as their MD5 digest next to an 8-byte offset, in an open-addressing table probed
+// linearly, so the map costs 24 bytes per key with no per-entry objects. Two keys sharing a
+// digest would be taken for one, which MD5 makes vanishingly unlikely
+public class SkimpyOffsetMap {
+    private static final int HASH_SIZE = 16;
+    private static final int ENTRY_SIZE = HASH_SIZE + 8;
+
+    private final ByteBuffer bytes;
+    private final int slots;
+    private final MessageDigest digest;
+    private final byte[] hash = new byte[HASH_SIZE];
+    private final byte[] probe = new byte[HASH_SIZE];
+    private int entries;
+    private long latestOffset = -1;
+
+    // Constructor
+    public SkimpyOffsetMap(int memoryBytes) {
+        this.slots = memoryBytes / ENTRY_SIZE;
+        this.bytes = ByteBuffer.allocate(slots * ENTRY_SIZE);
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    // Largest offset put since the last clear, or -1
+    public long latestOffset() {
+        return latestOffset;
+    }
+
+    // Record offset as the latest for key. Offsets are put in ascending order, so a key seen
+    // before simply has its offset replaced
+    public void put(byte[] key, long offset) {
+        if (entries >= slots) {
+            throw new IllegalStateException("Offset map is full with " + entries + " keys");
+        }
+        hash(key);
+        int slot = find();
+        int position = slot * ENTRY_SIZE;
+        if (isEmpty(position)) {
+            bytes.put(position, hash);
+            entries++;
+        }
+        bytes.putLong(position + HASH_SIZE, offset);
+        latestOffset = offset;
+    }
+
+    // Latest offset put for key, or -1 if it was not seen
+    public long get(byte[] key) {
+        hash(key);
+        int position = find() * ENTRY_SIZE;
+        return isEmpty(position) ? -1 : bytes.getLong(position + HASH_SIZE);
+    }
+
+    // Empty the map for the next log
+    public void clear() {
+        if (entries > 0) {
+            Arrays.fill(bytes.array(), (byte) 0);
+        }
+        entries = 0;
+        latestOffset = -1;
+    }
+
+    // Slot holding the current hash, or the empty slot where it belongs. An all-zero digest marks
+    // an empty slot, so a key with that digest is never found and its records are all kept
+    private int find() {
+        int slot = (ByteBuffer.wrap(hash).getInt() & 0x7fffffff) % slots;
+        while (true) {
+            int position = slot * ENTRY_SIZE;
+            if (isEmpty(position)) {
+                return slot;
+            }
+            bytes.get(position, probe);
+            if (Arrays.equals(probe, hash)) {
+                return slot;
+            }
+            slot = slot + 1 == slots ? 0 : slot + 1;
+        }
+    }
+
+    private boolean isEmpty(int position) {
+        return bytes.getLong(position) == 0 && bytes.getLong(position + 8) == 0;
+    }
+
+    private void hash(byte[] key) {
+        digest.update(key);
+        System.arraycopy(digest.digest(), 0, hash, 0, HASH_SIZE);
+    }
+}
@@ -0,0 +1,37 @@
+package log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Holds a background task to a byte rate. The caller reports the bytes it has read or written;
+// once per check interval the rate since the last check is measured, and the caller sleeps for
+// as long as it ran ahead. Sleeping in intervals keeps the overhead off every small read
+public class Throttler {
+    private static final long CHECK_INTERVAL_MS = 100;
+
+    private final double bytesPerSecond;
+    private long periodStartNanos = System.nanoTime();
+    private long bytesInPeriod;
+
+    // Constructor
+    public Throttler(double bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void maybeThrottle(long bytes) {
+        if (bytesPerSecond <= 0 || Double.isInfinite(bytesPerSecond) || bytesPerSecond == Double.MAX_VALUE) {
+            return;
+        }
+        bytesInPeriod += bytes;
+        long elapsedNanos = System.nanoTime() - periodStartNanos;
+        if (elapsedNanos < TimeUnit.MILLISECONDS.toNanos(CHECK_INTERVAL_MS)) {
+            return;
+        }
+        long targetNanos = (long) (bytesInPeriod / bytesPerSecond * TimeUnit.SECONDS.toNanos(1));
+        if (targetNanos > elapsedNanos) {
+            LockSupport.parkNanos(targetNanos - elapsedNanos);
+        }
+        periodStartNanos = System.nanoTime();
+        bytesInPeriod = 0;
+    }
+}
@@ -0,0 +1,62 @@
+package log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Sparse index from timestamps to offsets in one segment. Each 12-byte entry is the largest
+// timestamp seen so far and the relative offset of the last record of the batch that carried it,
+// written alongside the offset index entries whenever that timestamp has grown
+public class TimeIndex extends AbstractIndex {
+    private static final int ENTRY_SIZE = 12;
+
+    // Constructor
+    public TimeIndex(Path path, long baseOffset, int maxIndexSize) throws IOException {
+        super(path, baseOffset, maxIndexSize, ENTRY_SIZE);
+    }
+
+    // Timestamps strictly ascending and offsets not going back
+    @Override
+    protected boolean isValidEntry(int entry, int logSize) {
+        if (relativeOffset(entry) < 0) {
+            return false;
+        }
+        return entry == 0 || (timestamp(entry) > timestamp(entry - 1) && relativeOffset(entry) >= relativeOffset(entry - 1));
+    }
+
+    // Offset after which the first timestamp at or above the target can be, or -1 to scan the whole
+    // segment. Every batch up to and including that offset has only smaller timestamps
+    public long lookup(long targetTimestamp) {
+        int found = largestLowerBound(targetTimestamp - 1, this::timestamp);
+        return found < 0 ? -1 : baseOffset + relativeOffset(found);
+    }
+
+    public long lastTimestamp() {
+        int n = entries;
+        return n <= 0 ? -1 : timestamp(n - 1);
+    }
+
+    public long lastOffset() {
+        int n = entries;
+        return n <= 0 ? baseOffset : baseOffset + relativeOffset(n - 1);
+    }
+
+    // Add an entry if the timestamp is larger than the last one; returns whether it was added
+    public boolean maybeAppend(long timestamp, long offset) {
+        if (timestamp <= lastTimestamp() || isFull()) {
+            return false;
+        }
+        int index = nextEntryIndex();
+        mmap.putLong(index, timestamp);
+        mmap.putInt(index + 8, (int) (offset - baseOffset));
+        commitEntry();
+        return true;
+    }
+
+    private long timestamp(int entry) {
+        return mmap.getLong(entryIndex(entry));
+    }
+
+    private int relativeOffset(int entry) {
+        return mmap.getInt(entryIndex(entry) + 8);
+    }
+}
@@ -0,0 +1,28 @@
+package log;
+
+// Answer to a ListOffsets lookup: the first offset at or after a timestamp, with the timestamp of
+// the record found there
+public final class TimestampAndOffset {
+    private final long timestamp;
+    private final long offset;
+
+    // Constructor
+    public TimestampAndOffset(long timestamp, long offset) {
+        this.timestamp = timestamp;
+        this.offset = offset;
+    }
+
+    // Getters
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "TimestampAndOffset(timestamp=" + timestamp + ", offset=" + offset + ")";
+    }
+}
@@ -1,7 +1,7 @@
 package messages;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class AbstractRequest {
     protected final RequestHeader header;
@@ -22,5 +22,5 @@ public abstract class AbstractRequest {
     }
 
     // Abstract method for decoding body
-    public abstract Object decodeBody(DataInputStream inputStream) throws IOException;
+    public abstract Object decodeBody(ByteBuffer buffer) throws IOException;
 }
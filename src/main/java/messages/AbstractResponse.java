@@ -1,13 +1,13 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import network.Send;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class AbstractResponse {
     protected final ResponseHeader header;
+    protected int throttleTimeMs;
 
     // Constructor
     public AbstractResponse(ResponseHeader header) {
@@ -19,33 +19,70 @@ public abstract class AbstractResponse {
         return header;
     }
 
+    public int getThrottleTimeMs() {
+        return throttleTimeMs;
+    }
+
+    // Set by the quota managers before the response is encoded
+    public void setThrottleTimeMs(int throttleTimeMs) {
+        this.throttleTimeMs = throttleTimeMs;
+    }
+
     // Abstract method to generate body arguments based on the request
     public abstract Object makeBody(ResponseHeader request);
 
-    // Abstract method to encode the body
-    protected abstract byte[] encodeBody() throws IOException;
+    // Exact encoded size of the body, including any zero-copy data
+    protected abstract int sizeOfBody();
 
-    // Encode the response
-    public byte[] encode() throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataStream = new DataOutputStream(byteStream);
+    // Bytes of the body sent straight from files rather than written into the response buffer
+    protected int zeroCopySizeOfBody() {
+        return 0;
+    }
 
-        // Encode header
-        header.encode(dataStream);
+    // Abstract method to encode the body
+    protected abstract void encodeBody(SendBuilder builder) throws IOException;
 
-        // Encode body
-        dataStream.write(encodeBody());
+    // Exact size of the response frame, including the 4-byte length prefix
+    public int sizeOf() {
+        return 4 + header.sizeOf() + sizeOfBody();
+    }
+
+    // Offset of throttle_time_ms within the body, for responses that are cached as templates
+    protected int throttleTimeOffsetInBody() {
+        return -1;
+    }
 
-        // Get the encoded response
-        byte[] encodedResponse = byteStream.toByteArray();
+    // Offset of throttle_time_ms within the encoded frame, or -1 if the response has none
+    public int throttleTimeOffset() {
+        int offset = throttleTimeOffsetInBody();
+        return offset < 0 ? -1 : 4 + header.sizeOf() + offset;
+    }
 
-        // Prepend the length of the response
-        ByteArrayOutputStream finalStream = new ByteArrayOutputStream();
-        DataOutputStream finalDataStream = new DataOutputStream(finalStream);
+    // Encode the response as a length-prefixed send for the socket, written once into a
+    // right-sized buffer
+    public Send toSend() throws IOException {
+        return encode(sizeOf() - zeroCopySizeOfBody()).build();
+    }
 
-        PrimitiveTypes.encodeInt32(finalDataStream, encodedResponse.length);
-        finalDataStream.write(encodedResponse);
+    // Encode the whole frame into one buffer; only for responses without zero-copy data
+    public ByteBuffer toByteBuffer() throws IOException {
+        if (zeroCopySizeOfBody() != 0) {
+            throw new IllegalStateException("Cannot buffer a response with zero-copy data");
+        }
+        ByteBuffer buffer = encode(sizeOf()).buffer();
+        if (buffer.hasRemaining()) {
+            throw new IllegalStateException("Response size mismatch: " + buffer.remaining() + " of "
+                    + buffer.capacity() + " bytes not written");
+        }
+        return buffer.flip();
+    }
 
-        return finalStream.toByteArray();
+    private SendBuilder encode(int bufferSize) throws IOException {
+        SendBuilder builder = new SendBuilder(bufferSize);
+        ByteBuffer buffer = builder.buffer();
+        buffer.putInt(sizeOf() - 4);
+        header.encode(buffer);
+        encodeBody(builder);
+        return builder;
     }
 }
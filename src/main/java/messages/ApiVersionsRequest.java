@@ -1,44 +1,49 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import Kafka.Logger;
+import messages.generated.ApiVersionsRequestData;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class ApiVersionsRequest extends AbstractRequest {
-    private final String clientSoftwareName;
-    private final String clientSoftwareVersion;
+    private static final Logger log = Logger.getLogger(ApiVersionsRequest.class);
+
+    private final ApiVersionsRequestData data;
 
     // Constructor
-    public ApiVersionsRequest(RequestHeader header, String clientSoftwareName, String clientSoftwareVersion) {
+    public ApiVersionsRequest(RequestHeader header, ApiVersionsRequestData data) {
         super(header);
-        this.clientSoftwareName = clientSoftwareName;
-        this.clientSoftwareVersion = clientSoftwareVersion;
+        this.data = data;
     }
 
     // Getters
+    public ApiVersionsRequestData data() {
+        return data;
+    }
+
     public String getClientSoftwareName() {
-        return clientSoftwareName;
+        return data.getClientSoftwareName();
     }
 
     public String getClientSoftwareVersion() {
-        return clientSoftwareVersion;
+        return data.getClientSoftwareVersion();
     }
 
-    // Decode body
-    public static ApiVersionsRequest decodeBody(DataInputStream inputStream, RequestHeader header) throws IOException {
-        String clientSoftwareName = PrimitiveTypes.decodeCompactString(inputStream);
-        String clientSoftwareVersion = PrimitiveTypes.decodeCompactString(inputStream);
-        System.out.println("clientSoftwareName"+  clientSoftwareName);
-        System.out.println("clientSoftwareVersion " + clientSoftwareVersion);
-
-        PrimitiveTypes.decodeTaggedFields(inputStream);
+    // Decode body. A version newer than we know is answered with UNSUPPORTED_VERSION, so its body
+    // is left unread rather than rejected
+    public static ApiVersionsRequest decodeBody(ByteBuffer buffer, RequestHeader header) throws IOException {
+        short version = (short) header.getApiVersion();
+        ApiVersionsRequestData data = version > ApiVersionsRequestData.HIGHEST_SUPPORTED_VERSION
+                ? new ApiVersionsRequestData()
+                : new ApiVersionsRequestData(buffer, version);
+        log.trace(() -> "clientSoftwareName " + data.getClientSoftwareName() + ", clientSoftwareVersion " + data.getClientSoftwareVersion());
 
-        return new ApiVersionsRequest(header, clientSoftwareName, clientSoftwareVersion);
+        return new ApiVersionsRequest(header, data);
     }
 
     @Override
-    public Object decodeBody(DataInputStream inputStream) throws IOException {
+    public Object decodeBody(ByteBuffer buffer) throws IOException {
         return null;
     }
 }
@@ -1,48 +1,66 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
+import Kafka.Logger;
+import messages.generated.ApiVersionsRequestData;
+import messages.generated.DescribeTopicPartitionsRequestData;
+import messages.generated.FetchRequestData;
+import messages.generated.ListOffsetsRequestData;
+import messages.generated.ProduceRequestData;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.List;
 
+// ApiVersions response in the layout of the request's version: v0-2 use plain arrays and no tagged
+// fields, v0 also has no throttle_time_ms, and v3 and later are flexible. A version newer than we
+// know is answered with UNSUPPORTED_VERSION in the newest layout
 public class ApiVersionsResponse extends AbstractResponse {
+    private static final Logger log = Logger.getLogger(ApiVersionsResponse.class);
+
+    private final short version;
+    private final boolean flexible;
     private final Constants.ErrorCode errorCode;
     private final List<ApiVersionsResponseApiKey> apiKeys;
-    private final int throttleTimeMs;
 
     // Constructor
-    public ApiVersionsResponse(ResponseHeader header, Constants.ErrorCode errorCode, List<ApiVersionsResponseApiKey> apiKeys, int throttleTimeMs) {
+    public ApiVersionsResponse(ResponseHeader header, short version, Constants.ErrorCode errorCode,
+                               List<ApiVersionsResponseApiKey> apiKeys, int throttleTimeMs) {
         super(header);
+        this.version = version;
+        this.flexible = version >= ApiVersionsRequestData.LOWEST_FLEXIBLE_VERSION;
         this.errorCode = errorCode;
         this.apiKeys = apiKeys;
         this.throttleTimeMs = throttleTimeMs;
     }
 
+    // The APIs this broker serves; the same for every request
+    private static final List<ApiVersionsResponseApiKey> API_KEYS = List.of(
+            new ApiVersionsResponseApiKey(Constants.ApiKey.PRODUCE,
+                    ProduceRequestData.LOWEST_SUPPORTED_VERSION, ProduceRequestData.HIGHEST_SUPPORTED_VERSION),
+            new ApiVersionsResponseApiKey(Constants.ApiKey.FETCH,
+                    FetchRequestData.LOWEST_SUPPORTED_VERSION, FetchRequestData.HIGHEST_SUPPORTED_VERSION),
+            new ApiVersionsResponseApiKey(Constants.ApiKey.LIST_OFFSETS,
+                    ListOffsetsRequestData.LOWEST_SUPPORTED_VERSION, ListOffsetsRequestData.HIGHEST_SUPPORTED_VERSION),
+            new ApiVersionsResponseApiKey(Constants.ApiKey.API_VERSIONS,
+                    ApiVersionsRequestData.LOWEST_SUPPORTED_VERSION, ApiVersionsRequestData.HIGHEST_SUPPORTED_VERSION),
+            new ApiVersionsResponseApiKey(Constants.ApiKey.DESCRIBE_TOPIC_PARTITIONS,
+                    DescribeTopicPartitionsRequestData.LOWEST_SUPPORTED_VERSION, DescribeTopicPartitionsRequestData.HIGHEST_SUPPORTED_VERSION));
+
     // Create body arguments based on request
     public static ApiVersionsResponse makeBody(ResponseHeader header, AbstractRequest request) {
-        Constants.ErrorCode errorCode;
-        if (List.of(0, 1, 2, 3, 4).contains(request.getHeader().getApiVersion())) {
-            errorCode = Constants.ErrorCode.NONE;
-        } else {
-            errorCode = Constants.ErrorCode.UNSUPPORTED_VERSION;
-        }
-
-        List<ApiVersionsResponseApiKey> apiKeys = new ArrayList<>();
-        apiKeys.add(new ApiVersionsResponseApiKey(Constants.ApiKey.FETCH, (short) 0, (short) 16));
-        apiKeys.add(new ApiVersionsResponseApiKey(Constants.ApiKey.API_VERSIONS, (short) 0, (short) 4));
-        apiKeys.add(new ApiVersionsResponseApiKey(Constants.ApiKey.DESCRIBE_TOPIC_PARTITIONS, (short) 0, (short) 0));
+        Constants.ErrorCode errorCode = isSupportedVersion(request.getHeader().getApiVersion())
+                ? Constants.ErrorCode.NONE
+                : Constants.ErrorCode.UNSUPPORTED_VERSION;
+        log.trace(() -> "Advertising api keys " + API_KEYS);
 
-        for (ApiVersionsResponseApiKey apikey: apiKeys
-             ) {
-            System.out.println(apikey);
-
-        }
+        return new ApiVersionsResponse(header, (short) request.getHeader().getApiVersion(), errorCode, API_KEYS, 0);
+    }
 
-        return new ApiVersionsResponse(header, errorCode, apiKeys, 0);
+    public static boolean isSupportedVersion(int version) {
+        return version >= ApiVersionsRequestData.LOWEST_SUPPORTED_VERSION
+                && version <= ApiVersionsRequestData.HIGHEST_SUPPORTED_VERSION;
     }
 
     @Override
@@ -50,17 +68,37 @@ public class ApiVersionsResponse extends AbstractResponse {
         return null;
     }
 
-    // Encode the body of the response
     @Override
-    protected byte[] encodeBody() throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataStream = new DataOutputStream(byteStream);
+    protected int sizeOfBody() {
+        return 2 + sizeOfApiKeys() + (version >= 1 ? 4 : 0) + (flexible ? ByteBufferTypes.sizeOfTaggedFields() : 0);
+    }
+
+    @Override
+    protected int throttleTimeOffsetInBody() {
+        return version >= 1 ? 2 + sizeOfApiKeys() : -1;
+    }
 
-        errorCode.encode(dataStream);
-        PrimitiveTypes.encodeCompactArray(dataStream, apiKeys, (output, apiKey) -> ((ApiVersionsResponseApiKey) apiKey).encode(output));
-        PrimitiveTypes.encodeInt32(dataStream, throttleTimeMs);
-        PrimitiveTypes.encodeTaggedFields(dataStream);
+    private int sizeOfApiKeys() {
+        return flexible
+                ? ByteBufferTypes.sizeOfCompactArray(apiKeys, apiKey -> apiKey.sizeOf(true))
+                : ByteBufferTypes.sizeOfArray(apiKeys, apiKey -> apiKey.sizeOf(false));
+    }
 
-        return byteStream.toByteArray();
+    // Encode the body of the response
+    @Override
+    protected void encodeBody(SendBuilder builder) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        errorCode.encode(buffer);
+        if (flexible) {
+            ByteBufferTypes.encodeCompactArray(buffer, apiKeys, (output, apiKey) -> apiKey.encode(output, true));
+        } else {
+            ByteBufferTypes.encodeArray(buffer, apiKeys, (output, apiKey) -> apiKey.encode(output, false));
+        }
+        if (version >= 1) {
+            ByteBufferTypes.encodeInt32(buffer, throttleTimeMs);
+        }
+        if (flexible) {
+            ByteBufferTypes.encodeTaggedFields(buffer);
+        }
     }
 }
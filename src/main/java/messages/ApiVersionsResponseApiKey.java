@@ -1,11 +1,9 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class ApiVersionsResponseApiKey {
     private   Constants.ApiKey apiKey;
@@ -21,12 +19,18 @@ public class ApiVersionsResponseApiKey {
 
     }
 
-    // Encode the response API key
-    public void encode(DataOutputStream outputStream) throws IOException {
-        apiKey.encode(outputStream);
-        PrimitiveTypes.encodeInt16(outputStream, minVersion);
-        PrimitiveTypes.encodeInt16(outputStream, maxVersion);
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public int sizeOf(boolean flexible) {
+        return 2 + 2 + 2 + (flexible ? ByteBufferTypes.sizeOfTaggedFields() : 0);
+    }
+
+    // Encode the response API key; tagged fields only in the flexible versions
+    public void encode(ByteBuffer buffer, boolean flexible) {
+        apiKey.encode(buffer);
+        ByteBufferTypes.encodeInt16(buffer, minVersion);
+        ByteBufferTypes.encodeInt16(buffer, maxVersion);
+        if (flexible) {
+            ByteBufferTypes.encodeTaggedFields(buffer);
+        }
     }
 
     @Override
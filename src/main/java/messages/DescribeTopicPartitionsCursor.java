@@ -1,10 +1,8 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class DescribeTopicPartitionsCursor {
     private final String topicName;
@@ -25,25 +23,14 @@ public class DescribeTopicPartitionsCursor {
         return partitionIndex;
     }
 
-    // Decode method
-    public static DescribeTopicPartitionsCursor decode(DataInputStream inputStream) throws IOException {
-        if (inputStream.readByte() == (byte) 0xFF) {
-            return null; // Indicates no cursor
-        }
-
-        inputStream.skipBytes(-1); // Move back one byte
-
-        String topicName = PrimitiveTypes.decodeCompactString(inputStream);
-        int partitionIndex = PrimitiveTypes.decodeInt32(inputStream);
-        PrimitiveTypes.decodeTaggedFields(inputStream);
-
-        return new DescribeTopicPartitionsCursor(topicName, partitionIndex);
+    public int sizeOf() {
+        return ByteBufferTypes.sizeOfCompactString(topicName) + 4 + ByteBufferTypes.sizeOfTaggedFields();
     }
 
     // Encode method
-    public void encode(DataOutputStream outputStream) throws IOException {
-        PrimitiveTypes.encodeCompactString(outputStream, topicName);
-        PrimitiveTypes.encodeInt32(outputStream, partitionIndex);
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public void encode(ByteBuffer buffer) {
+        ByteBufferTypes.encodeCompactString(buffer, topicName);
+        ByteBufferTypes.encodeInt32(buffer, partitionIndex);
+        ByteBufferTypes.encodeTaggedFields(buffer);
     }
 }
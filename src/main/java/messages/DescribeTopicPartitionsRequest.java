@@ -1,51 +1,46 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import messages.generated.DescribeTopicPartitionsRequestData;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class DescribeTopicPartitionsRequest extends AbstractRequest {
-    private final List<DescribeTopicPartitionsRequestTopic> topics;
-    private final int responsePartitionLimit;
-    private final DescribeTopicPartitionsCursor cursor;
+    private final DescribeTopicPartitionsRequestData data;
 
     // Constructor
-    public DescribeTopicPartitionsRequest(RequestHeader header, List<DescribeTopicPartitionsRequestTopic> topics,
-                                          int responsePartitionLimit, DescribeTopicPartitionsCursor cursor) {
+    public DescribeTopicPartitionsRequest(RequestHeader header, DescribeTopicPartitionsRequestData data) {
         super(header);
-        this.topics = topics;
-        this.responsePartitionLimit = responsePartitionLimit;
-        this.cursor = cursor;
+        this.data = data;
     }
 
     // Getters
-    public List<DescribeTopicPartitionsRequestTopic> getTopics() {
-        return topics;
+    public DescribeTopicPartitionsRequestData data() {
+        return data;
+    }
+
+    public List<DescribeTopicPartitionsRequestData.TopicRequest> getTopics() {
+        return data.getTopics();
     }
 
     public int getResponsePartitionLimit() {
-        return responsePartitionLimit;
+        return data.getResponsePartitionLimit();
     }
 
     public DescribeTopicPartitionsCursor getCursor() {
-        return cursor;
+        DescribeTopicPartitionsRequestData.Cursor cursor = data.getCursor();
+        return cursor == null ? null : new DescribeTopicPartitionsCursor(cursor.getTopicName(), cursor.getPartitionIndex());
     }
 
     // Decode body
-    public static DescribeTopicPartitionsRequest decodeBody(DataInputStream inputStream, RequestHeader header) throws IOException {
-        List<DescribeTopicPartitionsRequestTopic> topics = PrimitiveTypes.decodeCompactArray(
-                inputStream, DescribeTopicPartitionsRequestTopic::decode);
-        int responsePartitionLimit = PrimitiveTypes.decodeInt32(inputStream);
-        DescribeTopicPartitionsCursor cursor = DescribeTopicPartitionsCursor.decode(inputStream);
-        PrimitiveTypes.decodeTaggedFields(inputStream);
-
-        return new DescribeTopicPartitionsRequest(header, topics, responsePartitionLimit, cursor);
+    public static DescribeTopicPartitionsRequest decodeBody(ByteBuffer buffer, RequestHeader header) throws IOException {
+        return new DescribeTopicPartitionsRequest(header,
+                new DescribeTopicPartitionsRequestData(buffer, (short) header.getApiVersion()));
     }
 
     @Override
-    public Object decodeBody(DataInputStream inputStream) throws IOException {
+    public Object decodeBody(ByteBuffer buffer) throws IOException {
         return null;
     }
 }
@@ -1,14 +1,12 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class DescribeTopicPartitionsResponse extends AbstractResponse {
-    private final int throttleTimeMs;
     private final List<DescribeTopicPartitionsResponseTopic> topics;
     private final DescribeTopicPartitionsCursor nextCursor;
 
@@ -37,22 +35,29 @@ public class DescribeTopicPartitionsResponse extends AbstractResponse {
         return null;
     }
 
-    // Encode body
     @Override
-    protected byte[] encodeBody() throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataStream = new DataOutputStream(byteStream);
+    protected int sizeOfBody() {
+        return 4 + ByteBufferTypes.sizeOfCompactArray(topics, DescribeTopicPartitionsResponseTopic::sizeOf)
+                + (nextCursor == null ? 1 : nextCursor.sizeOf()) + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    @Override
+    protected int throttleTimeOffsetInBody() {
+        return 0;
+    }
 
-        PrimitiveTypes.encodeInt32(dataStream, throttleTimeMs);
-        PrimitiveTypes.encodeCompactArray(dataStream, topics, (stream, topic) -> topic.encode(stream));
+    // Encode body
+    @Override
+    protected void encodeBody(SendBuilder builder) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        ByteBufferTypes.encodeInt32(buffer, throttleTimeMs);
+        ByteBufferTypes.encodeCompactArray(buffer, topics, (output, topic) -> topic.encode(output));
         if (nextCursor == null) {
-            dataStream.writeByte(0xFF); // No cursor
+            buffer.put((byte) 0xFF); // No cursor
         } else {
-            nextCursor.encode(dataStream);
+            nextCursor.encode(buffer);
         }
-        PrimitiveTypes.encodeTaggedFields(dataStream);
-
-        return byteStream.toByteArray();
+        ByteBufferTypes.encodeTaggedFields(buffer);
     }
 
 }
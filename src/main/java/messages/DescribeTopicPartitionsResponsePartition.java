@@ -1,11 +1,10 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class DescribeTopicPartitionsResponsePartition {
@@ -35,17 +34,31 @@ public class DescribeTopicPartitionsResponsePartition {
         this.offlineReplicas = offlineReplicas;
     }
 
+    public int sizeOf() {
+        return 2 + 4 + 4 + 4
+                + sizeOfInt32Array(replicaNodes)
+                + sizeOfInt32Array(isrNodes)
+                + sizeOfInt32Array(eligibleLeaderReplicas)
+                + sizeOfInt32Array(lastKnownElr)
+                + sizeOfInt32Array(offlineReplicas)
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    private static int sizeOfInt32Array(List<Integer> array) {
+        return ByteBufferTypes.sizeOfCompactArray(array, value -> 4);
+    }
+
     // Encode method
-    public void encode(DataOutputStream outputStream) throws IOException {
-        errorCode.encode(outputStream);
-        PrimitiveTypes.encodeInt32(outputStream, partitionIndex);
-        PrimitiveTypes.encodeInt32(outputStream, leaderId);
-        PrimitiveTypes.encodeInt32(outputStream, leaderEpoch);
-        PrimitiveTypes.encodeCompactArray(outputStream, replicaNodes, PrimitiveTypes::encodeInt32);
-        PrimitiveTypes.encodeCompactArray(outputStream, isrNodes, PrimitiveTypes::encodeInt32);
-        PrimitiveTypes.encodeCompactArray(outputStream, eligibleLeaderReplicas, PrimitiveTypes::encodeInt32);
-        PrimitiveTypes.encodeCompactArray(outputStream, lastKnownElr, PrimitiveTypes::encodeInt32);
-        PrimitiveTypes.encodeCompactArray(outputStream, offlineReplicas, PrimitiveTypes::encodeInt32);
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public void encode(ByteBuffer buffer) throws IOException {
+        errorCode.encode(buffer);
+        ByteBufferTypes.encodeInt32(buffer, partitionIndex);
+        ByteBufferTypes.encodeInt32(buffer, leaderId);
+        ByteBufferTypes.encodeInt32(buffer, leaderEpoch);
+        ByteBufferTypes.encodeCompactArray(buffer, replicaNodes, ByteBufferTypes::encodeInt32);
+        ByteBufferTypes.encodeCompactArray(buffer, isrNodes, ByteBufferTypes::encodeInt32);
+        ByteBufferTypes.encodeCompactArray(buffer, eligibleLeaderReplicas, ByteBufferTypes::encodeInt32);
+        ByteBufferTypes.encodeCompactArray(buffer, lastKnownElr, ByteBufferTypes::encodeInt32);
+        ByteBufferTypes.encodeCompactArray(buffer, offlineReplicas, ByteBufferTypes::encodeInt32);
+        ByteBufferTypes.encodeTaggedFields(buffer);
     }
 }
@@ -1,12 +1,11 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
 import metadata.ClusterMetadata;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,15 +29,21 @@ public class DescribeTopicPartitionsResponseTopic {
         this.topicAuthorizedOperations = topicAuthorizedOperations;
     }
 
+    public int sizeOf() {
+        return 2 + ByteBufferTypes.sizeOfCompactString(name) + 16 + 1
+                + ByteBufferTypes.sizeOfCompactArray(partitions, DescribeTopicPartitionsResponsePartition::sizeOf)
+                + 4 + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
     // Encode method
-    public void encode(DataOutputStream outputStream) throws IOException {
-        errorCode.encode(outputStream);
-        PrimitiveTypes.encodeCompactNullableString(outputStream, name);
-        PrimitiveTypes.encodeUUID(outputStream, topicId);
-        PrimitiveTypes.encodeBoolean(outputStream, isInternal);
-        PrimitiveTypes.encodeCompactArray(outputStream, partitions, (stream, partition) -> partition.encode(stream));
-        PrimitiveTypes.encodeInt32(outputStream, topicAuthorizedOperations);
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public void encode(ByteBuffer buffer) throws IOException {
+        errorCode.encode(buffer);
+        ByteBufferTypes.encodeCompactString(buffer, name);
+        ByteBufferTypes.encodeUUID(buffer, topicId);
+        ByteBufferTypes.encodeBoolean(buffer, isInternal);
+        ByteBufferTypes.encodeCompactArray(buffer, partitions, (output, partition) -> partition.encode(output));
+        ByteBufferTypes.encodeInt32(buffer, topicAuthorizedOperations);
+        ByteBufferTypes.encodeTaggedFields(buffer);
     }
 
 
@@ -1,109 +1,127 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
+import Kafka.Logger;
+import Kafka.Varint;
+import messages.generated.FetchRequestData;
 
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.util.List;
-
-import static Kafka.PrimitiveTypes.decodeCompactArray;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 
+// Flyweight view of a Fetch request. The body is validated once and then read in place through
+// reusable cursors, so a request for hundreds of partitions does not build an object per
+// topic and partition. Layout follows FetchRequest.json for the flexible versions 12-16
 public class FetchRequest extends AbstractRequest {
+    private static final Logger log = Logger.getLogger(FetchRequest.class);
+
+    private final ByteBuffer body; // Private copy; the frame buffer goes back to the pool after decoding
+    private final short version;
     private final int maxWaitMs;
     private final int minBytes;
     private final int maxBytes;
-    private final int isolationLevel;
+    private final byte isolationLevel;
     private final int sessionId;
     private final int sessionEpoch;
-    private final List<FetchRequestTopic> topics;
-    private final List<FetchRequestForgottenTopic> forgottenTopicsData;
-    private final String rackId;
-    private final RequestHeader requestHeader;
-
-
-
-    public FetchRequest(int maxWaitMs, int minBytes, int maxBytes, int isolationLevel, int sessionId, int sessionEpoch,
-                        List<FetchRequestTopic> topics, List<FetchRequestForgottenTopic> forgottenTopicsData,
-                        String rackId, RequestHeader requestHeader) {
+    private final int topicCount;
+    private final int topicsStart;
+    private int replicaId;
+    private int forgottenTopicCount;
+    private int rackIdStart;
+
+    // Constructor
+    private FetchRequest(RequestHeader requestHeader, ByteBuffer body, short version, int replicaId, int maxWaitMs,
+                         int minBytes, int maxBytes, byte isolationLevel, int sessionId, int sessionEpoch,
+                         int topicCount, int topicsStart) {
         super(requestHeader);
+        this.body = body;
+        this.version = version;
+        this.replicaId = replicaId;
         this.maxWaitMs = maxWaitMs;
         this.minBytes = minBytes;
         this.maxBytes = maxBytes;
         this.isolationLevel = isolationLevel;
         this.sessionId = sessionId;
         this.sessionEpoch = sessionEpoch;
-        this.topics = topics;
-        this.forgottenTopicsData = forgottenTopicsData;
-        this.rackId = rackId;
-        this.requestHeader = requestHeader;
-    }
-
-    public static FetchRequest decodeBody(DataInputStream inputStream, RequestHeader requestHeader) throws IOException {
-        int maxWaitMs = inputStream.readInt();
-        System.out.println("maxWaitMs :");
-        System.out.println(maxWaitMs);
-
-        int minBytes = inputStream.readInt();
-        System.out.println("minBytes :");
-        System.out.println(minBytes);
-
-        int maxBytes = inputStream.readInt();
-        System.out.println("maxBytes :");
-        System.out.println(maxBytes);
-
-        int isolationLevel = inputStream.readByte();
-        System.out.println("isolationLevel :");
-        System.out.println(isolationLevel);
-
-        int sessionId = inputStream.readInt();
-        System.out.println("sessionId :");
-        System.out.println(sessionId);
-
-        int sessionEpoch = inputStream.readInt();
-        System.out.println("sessionEpoch :");
-        System.out.println(sessionEpoch);
-
-        List<FetchRequestTopic> topics = decodeCompactArray(inputStream, FetchRequestTopic::decode);
-        System.out.println("FetchRequestTopic :");
-        if (topics.isEmpty()) {
-            System.out.println("No topics in the Fetch request.");
-        } else {
-            for (FetchRequestTopic topic : topics) {
-                System.out.println(topic);
+        this.topicCount = topicCount;
+        this.topicsStart = topicsStart;
+    }
+
+    // Decode body: read the fixed fields, then walk the rest once without allocating so that a
+    // malformed request fails here on the network thread rather than half way through handling
+    public static FetchRequest decodeBody(ByteBuffer buffer, RequestHeader requestHeader) throws IOException {
+        short version = (short) requestHeader.getApiVersion();
+        if (version < FetchRequestData.LOWEST_SUPPORTED_VERSION || version > FetchRequestData.HIGHEST_SUPPORTED_VERSION) {
+            throw new IllegalArgumentException("Can't read version " + version + " of FetchRequest");
+        }
+        ByteBuffer body = ByteBuffer.allocate(buffer.remaining());
+        body.put(buffer).flip();
+
+        ByteBuffer reader = body.duplicate();
+        int replicaId = version <= 14 ? reader.getInt() : -1;
+        int maxWaitMs = reader.getInt();
+        int minBytes = reader.getInt();
+        int maxBytes = reader.getInt();
+        byte isolationLevel = reader.get();
+        int sessionId = reader.getInt();
+        int sessionEpoch = reader.getInt();
+        int topicCount = readArrayLength(reader);
+
+        FetchRequest request = new FetchRequest(requestHeader, body, version, replicaId, maxWaitMs, minBytes,
+                maxBytes, isolationLevel, sessionId, sessionEpoch, topicCount, reader.position());
+        request.validate();
+        log.trace(request::toString);
+        return request;
+    }
+
+    // Walk every topic and partition, then read the fields that follow the topics
+    private void validate() throws IOException {
+        TopicCursor topics = topics();
+        while (topics.next()) {
+            // Checks each topic and its partitions
+        }
+        ByteBuffer reader = body.duplicate().position(topics.position);
+
+        forgottenTopicCount = readArrayLength(reader);
+        for (int i = 0; i < forgottenTopicCount; i++) {
+            if (version == 12) {
+                skipString(reader);
+            } else {
+                ByteBufferTypes.skip(reader, 16); // Topic id
             }
+            ByteBufferTypes.skip(reader, readArrayLength(reader) * 4);
+            ByteBufferTypes.decodeTaggedFields(reader);
         }
-        System.out.println("forgottenTopicsData :");
-        List<FetchRequestForgottenTopic> forgottenTopicsData =
-                decodeCompactArray(inputStream, FetchRequestForgottenTopic::decode);
-        System.out.println("forgottenTopicsData :");
-        if (forgottenTopicsData.isEmpty()) {
-            System.out.println("No forgotten topics in the Fetch request.");
-        } else {
-            for (FetchRequestForgottenTopic forgottenTopic : forgottenTopicsData) {
-                System.out.println(forgottenTopic);
+        rackIdStart = reader.position();
+        skipString(reader);
+
+        // From v15 the replica id moves into the ReplicaState tagged field (tag 1)
+        int numTaggedFields = Varint.readUnsignedVarint(reader);
+        for (int i = 0; i < numTaggedFields; i++) {
+            int tag = Varint.readUnsignedVarint(reader);
+            int size = Varint.readUnsignedVarint(reader);
+            if (tag == 1 && version >= 15 && size >= 4) {
+                replicaId = reader.getInt(reader.position());
             }
+            ByteBufferTypes.skip(reader, size);
         }
-
-        String rackId = PrimitiveTypes.decodeCompactString(inputStream);
-        System.out.println("rackId :");
-        System.out.println(rackId);
-
-        PrimitiveTypes.decodeTaggedFields(inputStream);
-
-        return new FetchRequest(maxWaitMs, minBytes, maxBytes, isolationLevel, sessionId, sessionEpoch, topics,
-                forgottenTopicsData, rackId,requestHeader);
     }
 
-
-
-
-
-
     @Override
-    public Object decodeBody(DataInputStream inputStream) throws IOException {
+    public Object decodeBody(ByteBuffer buffer) throws IOException {
         return null;
     }
 
+    // Getters
+    public short getVersion() {
+        return version;
+    }
+
+    public int getReplicaId() {
+        return replicaId;
+    }
+
     public int getMaxWaitMs() {
         return maxWaitMs;
     }
@@ -128,15 +146,193 @@ public class FetchRequest extends AbstractRequest {
         return sessionEpoch;
     }
 
-    public List<FetchRequestTopic> getTopics() {
-        return topics;
+    public int getTopicCount() {
+        return topicCount;
     }
 
-    public List<FetchRequestForgottenTopic> getForgottenTopicsData() {
-        return forgottenTopicsData;
+    public int getForgottenTopicCount() {
+        return forgottenTopicCount;
     }
 
+    // Decoded on demand
     public String getRackId() {
-        return rackId;
+        try {
+            ByteBuffer reader = body.duplicate().position(rackIdStart);
+            return ByteBufferTypes.decodeCompactString(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Fetch request changed after validation", e);
+        }
+    }
+
+    // A new cursor positioned before the first topic
+    public TopicCursor topics() {
+        return new TopicCursor();
+    }
+
+    // Full decode with the generated reader, for logging only
+    public FetchRequestData toData() throws IOException {
+        return new FetchRequestData(body.duplicate(), version);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return "FetchRequest v" + version + " " + toData();
+        } catch (IOException e) {
+            return "FetchRequest v" + version + " (" + e.getMessage() + ")";
+        }
+    }
+
+    // Iterates the topics of the request. next() must return true before the accessors are used
+    public final class TopicCursor {
+        private final ByteBuffer reader = body.duplicate();
+        private final PartitionCursor partitions = new PartitionCursor(reader);
+        private int remaining = topicCount;
+        private int position = topicsStart; // Start of the next topic
+        private int nameStart;
+        private int nameLength;
+        private long topicIdMostSignificantBits;
+        private long topicIdLeastSignificantBits;
+        private int partitionCount;
+        private int partitionsStart;
+
+        private TopicCursor() {
+        }
+
+        public boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            reader.position(position);
+            if (version == 12) {
+                nameLength = Varint.readUnsignedVarint(reader) - 1;
+                if (nameLength < 0) {
+                    throw new IOException("non-nullable field topic was serialized as null");
+                }
+                nameStart = reader.position();
+                ByteBufferTypes.skip(reader, nameLength);
+            } else {
+                topicIdMostSignificantBits = reader.getLong();
+                topicIdLeastSignificantBits = reader.getLong();
+            }
+            partitionCount = readArrayLength(reader);
+            partitionsStart = reader.position();
+
+            // Walk past the partitions to find where the next topic starts
+            partitions.reset(partitionsStart, partitionCount);
+            while (partitions.next()) {
+                // Skip
+            }
+            reader.position(partitions.position);
+            ByteBufferTypes.decodeTaggedFields(reader);
+            position = reader.position();
+            return true;
+        }
+
+        // Topic name (v12), decoded on demand
+        public String topicName() {
+            if (version != 12) {
+                return "";
+            }
+            byte[] bytes = new byte[nameLength];
+            body.get(nameStart, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Topic id (v13 and above)
+        public UUID topicId() {
+            return new UUID(topicIdMostSignificantBits, topicIdLeastSignificantBits);
+        }
+
+        public int partitionCount() {
+            return partitionCount;
+        }
+
+        // The partitions of the current topic. The cursor is shared, so it is reset by each call
+        // and invalidated by the next call to next()
+        public PartitionCursor partitions() {
+            partitions.reset(partitionsStart, partitionCount);
+            return partitions;
+        }
+    }
+
+    // Iterates the partitions of one topic. next() must return true before the accessors are used
+    public final class PartitionCursor {
+        private final ByteBuffer reader;
+        private int remaining;
+        private int position; // Start of the next partition
+        private int partition;
+        private int currentLeaderEpoch;
+        private long fetchOffset;
+        private int lastFetchedEpoch;
+        private long logStartOffset;
+        private int partitionMaxBytes;
+
+        private PartitionCursor(ByteBuffer reader) {
+            this.reader = reader;
+        }
+
+        private void reset(int position, int count) {
+            this.position = position;
+            this.remaining = count;
+        }
+
+        public boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            reader.position(position);
+            partition = reader.getInt();
+            currentLeaderEpoch = reader.getInt();
+            fetchOffset = reader.getLong();
+            lastFetchedEpoch = reader.getInt();
+            logStartOffset = reader.getLong();
+            partitionMaxBytes = reader.getInt();
+            ByteBufferTypes.decodeTaggedFields(reader);
+            position = reader.position();
+            return true;
+        }
+
+        public int partition() {
+            return partition;
+        }
+
+        public int currentLeaderEpoch() {
+            return currentLeaderEpoch;
+        }
+
+        public long fetchOffset() {
+            return fetchOffset;
+        }
+
+        public int lastFetchedEpoch() {
+            return lastFetchedEpoch;
+        }
+
+        public long logStartOffset() {
+            return logStartOffset;
+        }
+
+        public int partitionMaxBytes() {
+            return partitionMaxBytes;
+        }
+    }
+
+    private static int readArrayLength(ByteBuffer reader) throws IOException {
+        int length = Varint.readUnsignedVarint(reader) - 1;
+        if (length < 0) {
+            throw new IOException("Null array in Fetch request");
+        }
+        ByteBufferTypes.checkLength(reader, length); // Every element takes at least one byte
+        return length;
+    }
+
+    private static void skipString(ByteBuffer reader) throws IOException {
+        int length = Varint.readUnsignedVarint(reader) - 1;
+        if (length > 0) {
+            ByteBufferTypes.skip(reader, length);
+        }
     }
 }
@@ -1,22 +1,31 @@
 package messages;
 
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
+import metadata.Records;
+import messages.generated.FetchRequestData;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
+// A Fetch response in the flexible layout of the request's version: v12 names topics, v13 and later
+// give their ids
 public class FetchResponse extends AbstractResponse {
-    private final int throttleTimeMs;
+    private final short version;
     private final Constants.ErrorCode errorCode;
     private final int sessionId;
     private final List<FetchResponseTopic> responses;
 
-    public FetchResponse(ResponseHeader responseHeader,int throttleTimeMs, Constants.ErrorCode errorCode, int sessionId, List<FetchResponseTopic> responses) {
+    public FetchResponse(ResponseHeader responseHeader, short version, int throttleTimeMs, Constants.ErrorCode errorCode,
+                         int sessionId, List<FetchResponseTopic> responses) {
         super(responseHeader);
+        if (version < FetchRequestData.LOWEST_SUPPORTED_VERSION || version > FetchRequestData.HIGHEST_SUPPORTED_VERSION) {
+            throw new IllegalArgumentException("No Fetch response layout for version " + version);
+        }
+        this.version = version;
         this.throttleTimeMs = throttleTimeMs;
         this.errorCode = errorCode;
         this.sessionId = sessionId;
@@ -25,18 +34,18 @@ public class FetchResponse extends AbstractResponse {
 
     public static FetchResponse makeBody(ResponseHeader responseHeader,AbstractRequest request) {
         FetchRequest fetchRequest = (FetchRequest) request;
-        List<FetchResponseTopic> responses = fetchRequest.getTopics().stream()
-                .map(topic -> {
-                    try {
-                        return FetchResponseTopic.fromRequestTopic(topic);
-                    } catch (IOException e) {
-                        throw new RuntimeException("Error processing topic: " + topic, e);
-                    }
-                })
-                .toList();
-
-
-        return new FetchResponse(responseHeader,0, Constants.ErrorCode.NONE, 0, responses);
+        List<FetchResponseTopic> responses = new ArrayList<>(fetchRequest.getTopicCount());
+        FetchRequest.TopicCursor topics = fetchRequest.topics();
+        ByteBudget budget = new ByteBudget(fetchRequest.getMaxBytes());
+        try {
+            while (topics.next()) {
+                responses.add(FetchResponseTopic.fromRequestTopic(topics, fetchRequest.getVersion(), budget));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error processing topic: " + topics.topicId(), e);
+        }
+
+        return new FetchResponse(responseHeader, fetchRequest.getVersion(), 0, Constants.ErrorCode.NONE, 0, responses);
     }
 
     @Override
@@ -45,16 +54,60 @@ public class FetchResponse extends AbstractResponse {
     }
 
     @Override
-    protected byte[] encodeBody() throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataStream = new DataOutputStream(byteStream);
+    protected int sizeOfBody() {
+        return 4 + 2 + 4 + ByteBufferTypes.sizeOfCompactArray(responses, topic -> topic.sizeOf(version))
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Partition records are not copied into the response buffer
+    @Override
+    protected int zeroCopySizeOfBody() {
+        int size = 0;
+        for (FetchResponseTopic topic : responses) {
+            size += topic.recordsSizeInBytes();
+        }
+        return size;
+    }
+
+    // Partition records are spliced into the send builder as file regions
+    @Override
+    protected void encodeBody(SendBuilder builder) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        ByteBufferTypes.encodeInt32(buffer, throttleTimeMs);
+        errorCode.encode(buffer);
+        ByteBufferTypes.encodeInt32(buffer, sessionId);
+        ByteBufferTypes.encodeVarint(buffer, responses.size() + 1); // Compact array length
+        for (FetchResponseTopic topic : responses) {
+            topic.encode(builder, version);
+        }
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+
+    // What is left of the request's MaxBytes as its partitions are read in order. Each read takes at
+    // most the lesser of this and the partition's own limit. Until some partition has returned
+    // records, the first batch is let through whole even when it is larger, as Kafka does, so an
+    // oversized batch cannot stall a consumer
+    static final class ByteBudget {
+        private int remaining;
+        private boolean minOneBatch = true;
+
+        ByteBudget(int maxBytes) {
+            this.remaining = Math.max(0, maxBytes);
+        }
+
+        int remaining() {
+            return remaining;
+        }
 
-        PrimitiveTypes.encodeInt32(dataStream, throttleTimeMs);
-        errorCode.encode(dataStream);
-        PrimitiveTypes.encodeInt32(dataStream, sessionId);
-        PrimitiveTypes.encodeCompactArray(dataStream, responses, (stream, topic) -> topic.encode(stream));
-        PrimitiveTypes.encodeTaggedFields(dataStream);
+        boolean minOneBatch() {
+            return minOneBatch;
+        }
 
-        return byteStream.toByteArray();
+        void consume(Records records) {
+            if (records != null && records.sizeInBytes() > 0) {
+                remaining = Math.max(0, remaining - records.sizeInBytes());
+                minOneBatch = false;
+            }
+        }
     }
 }
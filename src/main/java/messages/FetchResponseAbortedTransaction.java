@@ -1,9 +1,8 @@
 package messages;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class FetchResponseAbortedTransaction {
     private final long producerId;
@@ -14,9 +13,13 @@ public class FetchResponseAbortedTransaction {
         this.firstOffset = firstOffset;
     }
 
-    public void encode(DataOutputStream outputStream) throws IOException {
-        PrimitiveTypes.encodeInt64(outputStream, producerId);
-        PrimitiveTypes.encodeInt64(outputStream, firstOffset);
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public int sizeOf() {
+        return 8 + 8 + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    public void encode(ByteBuffer buffer) {
+        ByteBufferTypes.encodeInt64(buffer, producerId);
+        ByteBufferTypes.encodeInt64(buffer, firstOffset);
+        ByteBufferTypes.encodeTaggedFields(buffer);
     }
 }
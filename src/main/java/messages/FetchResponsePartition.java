@@ -1,11 +1,11 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
-import metadata.RecordBatch;
+import metadata.Records;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class FetchResponsePartition {
@@ -16,11 +16,11 @@ public class FetchResponsePartition {
     private final long logStartOffset;
     private final List<FetchResponseAbortedTransaction> abortedTransactions;
     private final int preferredReadReplica;
-    private final List<RecordBatch> records;
+    private final Records records;
 
     public FetchResponsePartition(int partitionIndex, Constants.ErrorCode errorCode, long highWatermark, long lastStableOffset,
                                   long logStartOffset, List<FetchResponseAbortedTransaction> abortedTransactions,
-                                  int preferredReadReplica, List<RecordBatch> records) {
+                                  int preferredReadReplica, Records records) {
         this.partitionIndex = partitionIndex;
         this.errorCode = errorCode;
         this.highWatermark = highWatermark;
@@ -31,15 +31,36 @@ public class FetchResponsePartition {
         this.records = records;
     }
 
-    public void encode(DataOutputStream outputStream) throws IOException {
-        PrimitiveTypes.encodeInt32(outputStream, partitionIndex);
-        PrimitiveTypes.encodeInt16(outputStream, (short) errorCode.getValue());
-        PrimitiveTypes.encodeInt64(outputStream, highWatermark);
-        PrimitiveTypes.encodeInt64(outputStream, lastStableOffset);
-        PrimitiveTypes.encodeInt64(outputStream, logStartOffset);
-        PrimitiveTypes.encodeCompactArray(outputStream, abortedTransactions, (stream, transaction) -> transaction.encode(stream));
-        PrimitiveTypes.encodeInt32(outputStream, preferredReadReplica);
-        PrimitiveTypes.encodeCompactArray(outputStream, records, (stream, record) -> record.encode(stream));
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public int sizeOf() {
+        return 4 + 2 + 8 + 8 + 8
+                + ByteBufferTypes.sizeOfCompactArray(abortedTransactions, FetchResponseAbortedTransaction::sizeOf)
+                + 4
+                + ByteBufferTypes.sizeOfVarint(recordsSizeInBytes() + 1) + recordsSizeInBytes()
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    public int recordsSizeInBytes() {
+        return records == null ? 0 : records.sizeInBytes();
+    }
+
+    public void encode(SendBuilder builder) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        ByteBufferTypes.encodeInt32(buffer, partitionIndex);
+        errorCode.encode(buffer);
+        ByteBufferTypes.encodeInt64(buffer, highWatermark);
+        ByteBufferTypes.encodeInt64(buffer, lastStableOffset);
+        ByteBufferTypes.encodeInt64(buffer, logStartOffset);
+        ByteBufferTypes.encodeCompactArray(buffer, abortedTransactions, (output, transaction) -> transaction.encode(output));
+        ByteBufferTypes.encodeInt32(buffer, preferredReadReplica);
+        encodeRecords(builder);
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+
+    // COMPACT_RECORDS: unsigned varint of size + 1, then the raw batches exactly as stored in the log
+    private void encodeRecords(SendBuilder builder) {
+        ByteBufferTypes.encodeVarint(builder.buffer(), recordsSizeInBytes() + 1); // 1 for an empty record set
+        if (records != null) {
+            builder.writeSend(records.toSend());
+        }
     }
 }
@@ -1,51 +1,120 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
+import log.Log;
+import log.LogManager;
 import metadata.ClusterMetadata;
-import metadata.RecordBatch;
+import metadata.Records;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 public class FetchResponseTopic {
-    private final UUID topicId;
+    private final String topicName; // Sent in v12
+    private final UUID topicId; // Sent from v13
     private final List<FetchResponsePartition> partitions;
 
-    public FetchResponseTopic(UUID topicId, List<FetchResponsePartition> partitions) {
+    public FetchResponseTopic(String topicName, UUID topicId, List<FetchResponsePartition> partitions) {
+        this.topicName = topicName;
         this.topicId = topicId;
         this.partitions = partitions;
     }
 
-    public static FetchResponseTopic fromRequestTopic(FetchRequestTopic requestTopic) throws IOException {
+    // v12 requests name their topics and v13 and later give ids; the answer echoes whichever was asked.
+    // Records read are taken from the budget shared by the whole fetch
+    public static FetchResponseTopic fromRequestTopic(FetchRequest.TopicCursor requestTopic, short version,
+                                                      FetchResponse.ByteBudget budget) throws IOException {
         ClusterMetadata clusterMetadata = ClusterMetadata.getInstance();
-        String topicName = clusterMetadata.getTopicName(requestTopic.getTopicId());
+        if (version == 12) {
+            String topicName = requestTopic.topicName();
+            if (clusterMetadata.getTopicId(topicName) == null) {
+                // Names have no UNKNOWN_TOPIC_ID; every requested partition is unknown instead
+                List<FetchResponsePartition> partitions = new ArrayList<>(requestTopic.partitionCount());
+                FetchRequest.PartitionCursor partition = requestTopic.partitions();
+                while (partition.next()) {
+                    partitions.add(new FetchResponsePartition(partition.partition(),
+                            Constants.ErrorCode.UNKNOWN_TOPIC_OR_PARTITION, -1, -1, -1, List.of(), -1, null));
+                }
+                return new FetchResponseTopic(topicName, null, partitions);
+            }
+            return new FetchResponseTopic(topicName, null, fromRequestPartitions(topicName, requestTopic, budget));
+        }
 
+        UUID topicId = requestTopic.topicId();
+        String topicName = clusterMetadata.getTopicName(topicId);
         if (topicName == null) {
             // Return UNKNOWN_TOPIC_ID if topic doesn't exist
             List<FetchResponsePartition> partitions = List.of(
-                    new FetchResponsePartition(0, Constants.ErrorCode.UNKNOWN_TOPIC_ID, 0, 0, 0, List.of(), 0, List.of())
+                    new FetchResponsePartition(0, Constants.ErrorCode.UNKNOWN_TOPIC_ID, 0, 0, 0, List.of(), 0, null)
             );
-            return new FetchResponseTopic(requestTopic.getTopicId(), partitions);
+            return new FetchResponseTopic(null, topicId, partitions);
+        }
+        return new FetchResponseTopic(null, topicId, fromRequestPartitions(topicName, requestTopic, budget));
+    }
+
+    private static List<FetchResponsePartition> fromRequestPartitions(String topicName,
+                                                                      FetchRequest.TopicCursor requestTopic,
+                                                                      FetchResponse.ByteBudget budget)
+            throws IOException {
+
+        // Position each partition through its log's offset index; the bytes are sent from the file later
+        LogManager logManager = LogManager.getInstance();
+        List<FetchResponsePartition> partitions = new ArrayList<>(requestTopic.partitionCount());
+        FetchRequest.PartitionCursor partition = requestTopic.partitions();
+        while (partition.next()) {
+            partitions.add(fromRequestPartition(logManager.getLog(topicName, partition.partition()), partition, budget));
         }
+        return partitions;
+    }
 
-        // Retrieve records from log file and build partitions
-        List<FetchResponsePartition> partitions = new ArrayList<>();
-        for (FetchRequestPartition partition : requestTopic.getPartitions()) {
-            List<RecordBatch> records = (List<RecordBatch>) clusterMetadata.readRecordBatches(topicName, partition.getPartition());
-            partitions.add(new FetchResponsePartition(partition.getPartition(), Constants.ErrorCode.NONE, 0, 0, 0, List.of(), 0, records));
+    private static FetchResponsePartition fromRequestPartition(Log partitionLog, FetchRequest.PartitionCursor partition,
+                                                               FetchResponse.ByteBudget budget) throws IOException {
+        if (partitionLog == null) {
+            return new FetchResponsePartition(partition.partition(), Constants.ErrorCode.UNKNOWN_TOPIC_OR_PARTITION,
+                    -1, -1, -1, List.of(), 0, null);
         }
+        long logStartOffset = partitionLog.logStartOffset();
+        long logEndOffset = partitionLog.logEndOffset();
+        long fetchOffset = partition.fetchOffset();
+        if (fetchOffset < logStartOffset || fetchOffset > logEndOffset) {
+            return new FetchResponsePartition(partition.partition(), Constants.ErrorCode.OFFSET_OUT_OF_RANGE,
+                    logEndOffset, logEndOffset, logStartOffset, List.of(), 0, null);
+        }
+        Records records = partitionLog.read(fetchOffset, Math.min(partition.partitionMaxBytes(), budget.remaining()),
+                budget.minOneBatch());
+        budget.consume(records);
+        return new FetchResponsePartition(partition.partition(), Constants.ErrorCode.NONE,
+                logEndOffset, logEndOffset, logStartOffset, List.of(), 0, records);
+    }
 
-        return new FetchResponseTopic(requestTopic.getTopicId(), partitions);
+    public int sizeOf(short version) {
+        return (version == 12 ? ByteBufferTypes.sizeOfCompactString(topicName) : 16) + ByteBufferTypes.sizeOfCompactArray(partitions, FetchResponsePartition::sizeOf)
+                + ByteBufferTypes.sizeOfTaggedFields();
     }
 
+    public int recordsSizeInBytes() {
+        int size = 0;
+        for (FetchResponsePartition partition : partitions) {
+            size += partition.recordsSizeInBytes();
+        }
+        return size;
+    }
 
-    public void encode(DataOutputStream outputStream) throws IOException {
-        PrimitiveTypes.encodeUUID(outputStream, topicId);
-        PrimitiveTypes.encodeCompactArray(outputStream, partitions, (stream, partition) -> partition.encode(stream));
-        PrimitiveTypes.encodeTaggedFields(outputStream);
+    public void encode(SendBuilder builder, short version) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        if (version == 12) {
+            ByteBufferTypes.encodeCompactString(buffer, topicName);
+        } else {
+            ByteBufferTypes.encodeUUID(buffer, topicId);
+        }
+        ByteBufferTypes.encodeVarint(buffer, partitions.size() + 1); // Compact array length
+        for (FetchResponsePartition partition : partitions) {
+            partition.encode(builder);
+        }
+        ByteBufferTypes.encodeTaggedFields(buffer);
     }
 }
@@ -0,0 +1,49 @@
+package messages;
+
+import messages.generated.ListOffsetsRequestData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class ListOffsetsRequest extends AbstractRequest {
+    // Special timestamps asking for a position rather than a point in time
+    public static final long LATEST_TIMESTAMP = -1L;
+    public static final long EARLIEST_TIMESTAMP = -2L;
+    public static final long MAX_TIMESTAMP = -3L;
+
+    private final ListOffsetsRequestData data;
+
+    // Constructor
+    public ListOffsetsRequest(RequestHeader header, ListOffsetsRequestData data) {
+        super(header);
+        this.data = data;
+    }
+
+    // Getters
+    public ListOffsetsRequestData data() {
+        return data;
+    }
+
+    public int getReplicaId() {
+        return data.getReplicaId();
+    }
+
+    public byte getIsolationLevel() {
+        return data.getIsolationLevel();
+    }
+
+    public List<ListOffsetsRequestData.ListOffsetsTopic> getTopics() {
+        return data.getTopics();
+    }
+
+    // Decode body
+    public static ListOffsetsRequest decodeBody(ByteBuffer buffer, RequestHeader header) throws IOException {
+        return new ListOffsetsRequest(header, new ListOffsetsRequestData(buffer, (short) header.getApiVersion()));
+    }
+
+    @Override
+    public Object decodeBody(ByteBuffer buffer) throws IOException {
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package messages;
+
+import Kafka.ByteBufferTypes;
+import messages.generated.ListOffsetsRequestData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListOffsetsResponse extends AbstractResponse {
+    private final List<ListOffsetsResponseTopic> topics;
+
+    // Constructor
+    public ListOffsetsResponse(ResponseHeader header, int throttleTimeMs, List<ListOffsetsResponseTopic> topics) {
+        super(header);
+        this.throttleTimeMs = throttleTimeMs;
+        this.topics = topics;
+    }
+
+    // Create body arguments based on request
+    public static ListOffsetsResponse makeBody(ResponseHeader header, AbstractRequest request) {
+        ListOffsetsRequest listOffsetsRequest = (ListOffsetsRequest) request;
+        int version = request.getHeader().getApiVersion();
+        List<ListOffsetsResponseTopic> topics = new ArrayList<>(listOffsetsRequest.getTopics().size());
+        try {
+            for (ListOffsetsRequestData.ListOffsetsTopic topic : listOffsetsRequest.getTopics()) {
+                topics.add(ListOffsetsResponseTopic.fromRequestTopic(topic, version));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error looking up offsets", e);
+        }
+
+        return new ListOffsetsResponse(header, 0, topics);
+    }
+
+    @Override
+    public Object makeBody(ResponseHeader request) {
+        return null;
+    }
+
+    @Override
+    protected int sizeOfBody() {
+        return 4 + ByteBufferTypes.sizeOfCompactArray(topics, ListOffsetsResponseTopic::sizeOf)
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Encode body
+    @Override
+    protected void encodeBody(SendBuilder builder) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        ByteBufferTypes.encodeInt32(buffer, throttleTimeMs);
+        ByteBufferTypes.encodeCompactArray(buffer, topics, (output, topic) -> topic.encode(output));
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+}
@@ -0,0 +1,43 @@
+package messages;
+
+import Kafka.ByteBufferTypes;
+import Kafka.Constants;
+
+import java.nio.ByteBuffer;
+
+public class ListOffsetsResponsePartition {
+    private final int partitionIndex;
+    private final Constants.ErrorCode errorCode;
+    private final long timestamp;
+    private final long offset;
+    private final int leaderEpoch;
+
+    // Constructor
+    public ListOffsetsResponsePartition(int partitionIndex, Constants.ErrorCode errorCode, long timestamp, long offset,
+                                        int leaderEpoch) {
+        this.partitionIndex = partitionIndex;
+        this.errorCode = errorCode;
+        this.timestamp = timestamp;
+        this.offset = offset;
+        this.leaderEpoch = leaderEpoch;
+    }
+
+    // A partition that could not be answered
+    public static ListOffsetsResponsePartition error(int partitionIndex, Constants.ErrorCode errorCode) {
+        return new ListOffsetsResponsePartition(partitionIndex, errorCode, -1, -1, -1);
+    }
+
+    public int sizeOf() {
+        return 4 + 2 + 8 + 8 + 4 + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Encode method
+    public void encode(ByteBuffer buffer) {
+        ByteBufferTypes.encodeInt32(buffer, partitionIndex);
+        errorCode.encode(buffer);
+        ByteBufferTypes.encodeInt64(buffer, timestamp);
+        ByteBufferTypes.encodeInt64(buffer, offset);
+        ByteBufferTypes.encodeInt32(buffer, leaderEpoch);
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+}
@@ -0,0 +1,80 @@
+package messages;
+
+import Kafka.ByteBufferTypes;
+import Kafka.Constants;
+import log.Log;
+import log.LogManager;
+import log.TimestampAndOffset;
+import messages.generated.ListOffsetsRequestData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListOffsetsResponseTopic {
+    private final String name;
+    private final List<ListOffsetsResponsePartition> partitions;
+
+    // Constructor
+    public ListOffsetsResponseTopic(String name, List<ListOffsetsResponsePartition> partitions) {
+        this.name = name;
+        this.partitions = partitions;
+    }
+
+    // Answer every partition of a request topic from its log's indexes
+    public static ListOffsetsResponseTopic fromRequestTopic(ListOffsetsRequestData.ListOffsetsTopic requestTopic,
+                                                            int version) throws IOException {
+        LogManager logManager = LogManager.getInstance();
+        List<ListOffsetsResponsePartition> partitions = new ArrayList<>(requestTopic.getPartitions().size());
+        for (ListOffsetsRequestData.ListOffsetsPartition partition : requestTopic.getPartitions()) {
+            Log partitionLog = logManager.getLog(requestTopic.getName(), partition.getPartitionIndex());
+            partitions.add(fromRequestPartition(partitionLog, partition, version));
+        }
+        return new ListOffsetsResponseTopic(requestTopic.getName(), partitions);
+    }
+
+    private static ListOffsetsResponsePartition fromRequestPartition(Log partitionLog,
+                                                                     ListOffsetsRequestData.ListOffsetsPartition partition,
+                                                                     int version) throws IOException {
+        int partitionIndex = partition.getPartitionIndex();
+        if (partitionLog == null) {
+            return ListOffsetsResponsePartition.error(partitionIndex, Constants.ErrorCode.UNKNOWN_TOPIC_OR_PARTITION);
+        }
+
+        long timestamp = partition.getTimestamp();
+        TimestampAndOffset found;
+        if (timestamp == ListOffsetsRequest.EARLIEST_TIMESTAMP) {
+            found = new TimestampAndOffset(-1, partitionLog.logStartOffset());
+        } else if (timestamp == ListOffsetsRequest.LATEST_TIMESTAMP) {
+            found = new TimestampAndOffset(-1, partitionLog.logEndOffset());
+        } else if (timestamp == ListOffsetsRequest.MAX_TIMESTAMP) {
+            if (version < 7) {
+                return ListOffsetsResponsePartition.error(partitionIndex, Constants.ErrorCode.UNSUPPORTED_VERSION);
+            }
+            found = partitionLog.fetchOffsetOfMaxTimestamp();
+        } else {
+            found = partitionLog.fetchOffsetByTimestamp(timestamp);
+        }
+
+        // No record at or after the timestamp: no offset, but not an error
+        if (found == null) {
+            return new ListOffsetsResponsePartition(partitionIndex, Constants.ErrorCode.NONE, -1, -1, -1);
+        }
+        return new ListOffsetsResponsePartition(partitionIndex, Constants.ErrorCode.NONE,
+                found.getTimestamp(), found.getOffset(), -1);
+    }
+
+    public int sizeOf() {
+        return ByteBufferTypes.sizeOfCompactString(name)
+                + ByteBufferTypes.sizeOfCompactArray(partitions, ListOffsetsResponsePartition::sizeOf)
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Encode method
+    public void encode(ByteBuffer buffer) throws IOException {
+        ByteBufferTypes.encodeCompactString(buffer, name);
+        ByteBufferTypes.encodeCompactArray(buffer, partitions, (output, partition) -> partition.encode(output));
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+}
@@ -1,34 +1,72 @@
 package messages;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+
+import Kafka.Logger;
+import network.MemoryPool;
+
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 
 public class MessageHandler {
+    private static final Logger log = Logger.getLogger(MessageHandler.class);
 
-    public static AbstractRequest readRequest(DataInputStream inputStream) throws IOException {
-        int n = inputStream.readInt();
-        byte[] data = new byte[n];
-        inputStream.readFully(data);
-        System.out.println("Length:");
-        System.out.println(n);
-        ByteArrayInputStream binaryStream = new ByteArrayInputStream(data);
-        DataInputStream dataInputStream = new DataInputStream(binaryStream);
+    // Blocking read of one request frame into a pooled buffer. Blocking socket channels park rather
+    // than hold a monitor, so this is safe to call from a virtual thread
+    public static AbstractRequest readRequest(ReadableByteChannel channel, MemoryPool memoryPool) throws IOException {
+        ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+        readFully(channel, sizeBuffer);
+        int n = sizeBuffer.getInt(0);
 
-        RequestHeader requestHeader = RequestHeader.decode(dataInputStream);
+        // Validates the untrusted length and waits for (or rejects) memory beyond the budget
+        ByteBuffer data;
+        try {
+            data = memoryPool.allocate(n);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for request memory");
+        }
+        try {
+            readFully(channel, data);
+            data.flip();
+            return decodeRequest(data);
+        } finally {
+            memoryPool.release(data);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+        }
+    }
+
+    // Decode a request frame whose length prefix has already been consumed. Decoded requests
+    // copy what they need, so the buffer can be reused as soon as this returns
+    public static AbstractRequest decodeRequest(ByteBuffer data) throws IOException {
+        RequestHeader requestHeader = RequestHeader.decode(data);
+        log.debug(() -> "Received " + requestHeader.getApiKey() + " v" + requestHeader.getApiVersion()
+                + " request, correlation id " + requestHeader.getCorrelationId() + ", client id " + requestHeader.getClientId());
         AbstractRequest request;
 
         switch (requestHeader.getApiKey()) {
+            case PRODUCE:
+                request = ProduceRequest.decodeBody(data, requestHeader);
+                break;
             case FETCH:
-                System.out.println("Fetch req");
-                request = FetchRequest.decodeBody(dataInputStream, requestHeader);
+                request = FetchRequest.decodeBody(data, requestHeader);
+                break;
+            case LIST_OFFSETS:
+                request = ListOffsetsRequest.decodeBody(data, requestHeader);
                 break;
             case API_VERSIONS:
-                System.out.println("APi ver req");
-                request = ApiVersionsRequest.decodeBody(dataInputStream, requestHeader);
+                request = ApiVersionsRequest.decodeBody(data, requestHeader);
                 break;
             case DESCRIBE_TOPIC_PARTITIONS:
-                System.out.println("Topic req");
-                request = DescribeTopicPartitionsRequest.decodeBody(dataInputStream, requestHeader);
+                request = DescribeTopicPartitionsRequest.decodeBody(data, requestHeader);
                 break;
             default:
                 throw new IllegalArgumentException("Unsupported API key: " + requestHeader.getApiKey());
@@ -42,16 +80,19 @@ public class MessageHandler {
         AbstractResponse response;
 
         switch (responseHeader.getApiKey()) {
+            case PRODUCE:
+                response = ProduceResponse.makeBody(responseHeader, request);
+                break;
             case FETCH:
-                System.out.println("Fetch  res");
                 response = FetchResponse.makeBody(responseHeader,request);
                 break;
+            case LIST_OFFSETS:
+                response = ListOffsetsResponse.makeBody(responseHeader, request);
+                break;
             case API_VERSIONS:
-                System.out.println("APi ver res");
                 response = ApiVersionsResponse.makeBody(responseHeader,  request);
                 break;
             case DESCRIBE_TOPIC_PARTITIONS:
-                System.out.println("DESCRIBE_TOPIC_PARTITIONS  res");
                 response = DescribeTopicPartitionsResponse.makeBody(responseHeader, request);
                 break;
             default:
@@ -0,0 +1,51 @@
+package messages;
+
+import messages.generated.ProduceRequestData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class ProduceRequest extends AbstractRequest {
+    public static final short ACKS_ALL = -1;
+
+    private final ProduceRequestData data;
+
+    // Constructor
+    public ProduceRequest(RequestHeader header, ProduceRequestData data) {
+        super(header);
+        this.data = data;
+    }
+
+    // Getters
+    public ProduceRequestData data() {
+        return data;
+    }
+
+    public String getTransactionalId() {
+        return data.getTransactionalId();
+    }
+
+    // 0 for no response, 1 or -1 for a response once the records are in the log
+    public short getAcks() {
+        return data.getAcks();
+    }
+
+    public int getTimeoutMs() {
+        return data.getTimeoutMs();
+    }
+
+    public List<ProduceRequestData.TopicProduceData> getTopicData() {
+        return data.getTopicData();
+    }
+
+    // Decode body
+    public static ProduceRequest decodeBody(ByteBuffer buffer, RequestHeader header) throws IOException {
+        return new ProduceRequest(header, new ProduceRequestData(buffer, (short) header.getApiVersion()));
+    }
+
+    @Override
+    public Object decodeBody(ByteBuffer buffer) throws IOException {
+        return null;
+    }
+}
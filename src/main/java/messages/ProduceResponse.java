@@ -0,0 +1,64 @@
+package messages;
+
+import Kafka.ByteBufferTypes;
+import Kafka.Constants;
+import messages.generated.ProduceRequestData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProduceResponse extends AbstractResponse {
+    private final List<ProduceResponseTopic> responses;
+
+    // Constructor
+    public ProduceResponse(ResponseHeader header, int throttleTimeMs, List<ProduceResponseTopic> responses) {
+        super(header);
+        this.throttleTimeMs = throttleTimeMs;
+        this.responses = responses;
+    }
+
+    // Append every partition's records to its log, or reject them all if acks is not valid. With
+    // acks=-1 the response also waits for the flushes the logs require, after every partition has
+    // been appended, so that one flush round covers the whole request
+    public static ProduceResponse makeBody(ResponseHeader header, AbstractRequest request) {
+        ProduceRequest produceRequest = (ProduceRequest) request;
+        short acks = produceRequest.getAcks();
+        boolean validAcks = acks == ProduceRequest.ACKS_ALL || acks == 0 || acks == 1;
+        List<ProduceResponseTopic> responses = new ArrayList<>(produceRequest.getTopicData().size());
+        for (ProduceRequestData.TopicProduceData topicData : produceRequest.getTopicData()) {
+            responses.add(validAcks
+                    ? ProduceResponseTopic.fromRequestTopic(topicData)
+                    : ProduceResponseTopic.error(topicData, Constants.ErrorCode.INVALID_REQUIRED_ACKS));
+        }
+        if (acks == ProduceRequest.ACKS_ALL) {
+            long deadlineMs = System.currentTimeMillis() + Math.max(0, produceRequest.getTimeoutMs());
+            for (ProduceResponseTopic topic : responses) {
+                topic.awaitFlushes(deadlineMs);
+            }
+        }
+
+        return new ProduceResponse(header, 0, responses);
+    }
+
+    @Override
+    public Object makeBody(ResponseHeader request) {
+        return null;
+    }
+
+    @Override
+    protected int sizeOfBody() {
+        return ByteBufferTypes.sizeOfCompactArray(responses, ProduceResponseTopic::sizeOf) + 4
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Encode body; throttle_time_ms comes after the topics in this response
+    @Override
+    protected void encodeBody(SendBuilder builder) throws IOException {
+        ByteBuffer buffer = builder.buffer();
+        ByteBufferTypes.encodeCompactArray(buffer, responses, (output, topic) -> topic.encode(output));
+        ByteBufferTypes.encodeInt32(buffer, throttleTimeMs);
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+}
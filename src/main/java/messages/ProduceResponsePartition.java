@@ -0,0 +1,53 @@
+package messages;
+
+import Kafka.ByteBufferTypes;
+import Kafka.Constants;
+
+import java.nio.ByteBuffer;
+
+public class ProduceResponsePartition {
+    private final int index;
+    private final Constants.ErrorCode errorCode;
+    private final long baseOffset;
+    private final long logAppendTimeMs;
+    private final long logStartOffset;
+    private final String errorMessage;
+
+    // Constructor
+    public ProduceResponsePartition(int index, Constants.ErrorCode errorCode, long baseOffset, long logAppendTimeMs,
+                                    long logStartOffset, String errorMessage) {
+        this.index = index;
+        this.errorCode = errorCode;
+        this.baseOffset = baseOffset;
+        this.logAppendTimeMs = logAppendTimeMs;
+        this.logStartOffset = logStartOffset;
+        this.errorMessage = errorMessage;
+    }
+
+    // A partition whose records were not appended
+    public static ProduceResponsePartition error(int index, Constants.ErrorCode errorCode, String errorMessage) {
+        return new ProduceResponsePartition(index, errorCode, -1, -1, -1, errorMessage);
+    }
+
+    public int index() {
+        return index;
+    }
+
+    // Record errors are always empty: a bad batch fails the whole partition
+    public int sizeOf() {
+        return 4 + 2 + 8 + 8 + 8 + 1 + ByteBufferTypes.sizeOfCompactString(errorMessage)
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Encode method
+    public void encode(ByteBuffer buffer) {
+        ByteBufferTypes.encodeInt32(buffer, index);
+        errorCode.encode(buffer);
+        ByteBufferTypes.encodeInt64(buffer, baseOffset);
+        ByteBufferTypes.encodeInt64(buffer, logAppendTimeMs);
+        ByteBufferTypes.encodeInt64(buffer, logStartOffset);
+        ByteBufferTypes.encodeVarint(buffer, 1); // Empty compact array of record errors
+        ByteBufferTypes.encodeCompactString(buffer, errorMessage);
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+}
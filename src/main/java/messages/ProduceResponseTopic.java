@@ -0,0 +1,135 @@
+package messages;
+
+import Kafka.ByteBufferTypes;
+import Kafka.Constants;
+import Kafka.Logger;
+import log.InvalidRecordsException;
+import log.Log;
+import log.LogAppendInfo;
+import log.LogManager;
+import messages.generated.ProduceRequestData;
+import metadata.ClusterMetadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class ProduceResponseTopic {
+    private static final Logger log = Logger.getLogger(ProduceResponseTopic.class);
+
+    private final String name;
+    private final List<ProduceResponsePartition> partitionResponses;
+    private final List<PendingFlush> pendingFlushes = new ArrayList<>();
+
+    // Constructor
+    public ProduceResponseTopic(String name, List<ProduceResponsePartition> partitionResponses) {
+        this.name = name;
+        this.partitionResponses = partitionResponses;
+    }
+
+    // Append each partition's records to its log. A partition the cluster metadata knows but this
+    // broker has no log for yet gets one. Partitions whose log flushes on acks=-1 are remembered
+    // for awaitFlushes()
+    public static ProduceResponseTopic fromRequestTopic(ProduceRequestData.TopicProduceData topicData) {
+        String topicName = topicData.getName();
+        ProduceResponseTopic topic = new ProduceResponseTopic(topicName, new ArrayList<>(topicData.getPartitionData().size()));
+        for (ProduceRequestData.PartitionProduceData partitionData : topicData.getPartitionData()) {
+            topic.partitionResponses.add(topic.appendToPartition(topicName, partitionData));
+        }
+        return topic;
+    }
+
+    // Every partition of the topic rejected with the same error
+    public static ProduceResponseTopic error(ProduceRequestData.TopicProduceData topicData, Constants.ErrorCode errorCode) {
+        List<ProduceResponsePartition> partitions = new ArrayList<>(topicData.getPartitionData().size());
+        for (ProduceRequestData.PartitionProduceData partitionData : topicData.getPartitionData()) {
+            partitions.add(ProduceResponsePartition.error(partitionData.getIndex(), errorCode, null));
+        }
+        return new ProduceResponseTopic(topicData.getName(), partitions);
+    }
+
+    // Hold the response until the appended records are on disk, for logs that require it. A
+    // partition still unflushed at the deadline is answered with REQUEST_TIMED_OUT
+    public void awaitFlushes(long deadlineMs) {
+        for (PendingFlush pending : pendingFlushes) {
+            int partitionIndex = partitionResponses.get(pending.responseIndex).index();
+            try {
+                long remainingMs = Math.max(0, deadlineMs - System.currentTimeMillis());
+                if (!pending.partitionLog.awaitFlush(pending.lastOffset, remainingMs)) {
+                    partitionResponses.set(pending.responseIndex, ProduceResponsePartition.error(partitionIndex,
+                            Constants.ErrorCode.REQUEST_TIMED_OUT, "Timed out waiting for the records to be flushed"));
+                }
+            } catch (IOException e) {
+                log.error("Failed to flush " + name + "-" + partitionIndex, e);
+                partitionResponses.set(pending.responseIndex, ProduceResponsePartition.error(partitionIndex,
+                        Constants.ErrorCode.KAFKA_STORAGE_ERROR, e.getMessage()));
+            }
+        }
+        pendingFlushes.clear();
+    }
+
+    private ProduceResponsePartition appendToPartition(String topicName,
+                                                       ProduceRequestData.PartitionProduceData partitionData) {
+        int partitionIndex = partitionData.getIndex();
+        try {
+            Log partitionLog = findLog(topicName, partitionIndex);
+            if (partitionLog == null) {
+                return ProduceResponsePartition.error(partitionIndex, Constants.ErrorCode.UNKNOWN_TOPIC_OR_PARTITION, null);
+            }
+            LogAppendInfo appendInfo = partitionLog.append(partitionData.getRecords());
+            if (partitionLog.config().isFlushOnAcksAll()) {
+                pendingFlushes.add(new PendingFlush(partitionResponses.size(), partitionLog, appendInfo.getLastOffset()));
+            }
+            return new ProduceResponsePartition(partitionIndex, Constants.ErrorCode.NONE, appendInfo.getFirstOffset(),
+                    -1, appendInfo.getLogStartOffset(), null);
+        } catch (InvalidRecordsException e) {
+            log.debug(() -> "Rejected records for " + topicName + "-" + partitionIndex + ": " + e.getMessage());
+            return ProduceResponsePartition.error(partitionIndex, e.getErrorCode(), e.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to append to " + topicName + "-" + partitionIndex, e);
+            return ProduceResponsePartition.error(partitionIndex, Constants.ErrorCode.KAFKA_STORAGE_ERROR, e.getMessage());
+        }
+    }
+
+    private static Log findLog(String topicName, int partitionIndex) throws IOException {
+        LogManager logManager = LogManager.getInstance();
+        Log partitionLog = logManager.getLog(topicName, partitionIndex);
+        if (partitionLog != null) {
+            return partitionLog;
+        }
+        ClusterMetadata clusterMetadata = ClusterMetadata.getInstance();
+        UUID topicId = clusterMetadata.getTopicId(topicName);
+        if (topicId == null || !clusterMetadata.getPartitionIndices(topicId).contains(partitionIndex)) {
+            return null;
+        }
+        return logManager.getOrCreateLog(topicName, partitionIndex);
+    }
+
+    // A partition whose response waits for its records to be flushed
+    private static final class PendingFlush {
+        private final int responseIndex;
+        private final Log partitionLog;
+        private final long lastOffset;
+
+        private PendingFlush(int responseIndex, Log partitionLog, long lastOffset) {
+            this.responseIndex = responseIndex;
+            this.partitionLog = partitionLog;
+            this.lastOffset = lastOffset;
+        }
+    }
+
+    public int sizeOf() {
+        return ByteBufferTypes.sizeOfCompactString(name)
+                + ByteBufferTypes.sizeOfCompactArray(partitionResponses, ProduceResponsePartition::sizeOf)
+                + ByteBufferTypes.sizeOfTaggedFields();
+    }
+
+    // Encode method
+    public void encode(ByteBuffer buffer) throws IOException {
+        ByteBufferTypes.encodeCompactString(buffer, name);
+        ByteBufferTypes.encodeCompactArray(buffer, partitionResponses, (output, partition) -> partition.encode(output));
+        ByteBufferTypes.encodeTaggedFields(buffer);
+    }
+}
@@ -1,11 +1,12 @@
 package messages;
 
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
-import Kafka.PrimitiveTypes;
+import messages.generated.ApiVersionsRequestData;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class RequestHeader {
     private final Constants.ApiKey apiKey;
@@ -39,34 +40,27 @@ public class RequestHeader {
     }
 
     // Decode method
-    public static RequestHeader decode(DataInputStream inputStream) throws IOException {
-        System.out.println("Apikey:");
-        Constants.ApiKey apiKey = Constants.ApiKey.decode(inputStream);
-
-        System.out.println(apiKey);
-        System.out.println("Apiversion:");
-        int apiVersion = inputStream.readShort(); // Decode as a 16-bit integer
-        System.out.println(apiVersion);
-        int correlationId = inputStream.readInt(); // Decode as a 32-bit integer
-        System.out.println("Corelationid:");
-        System.out.println(correlationId);
-        String clientId = decodeNullableString(inputStream);
-        System.out.println("Clientid:");
-        System.out.println(clientId);
-        PrimitiveTypes.decodeTaggedFields(inputStream); // Handle tagged fields (if necessary)
+    public static RequestHeader decode(ByteBuffer buffer) throws IOException {
+        Constants.ApiKey apiKey = Constants.ApiKey.decode(buffer);
+        int apiVersion = buffer.getShort(); // Decode as a 16-bit integer
+        int correlationId = buffer.getInt(); // Decode as a 32-bit integer
+        String clientId = decodeNullableString(buffer);
+        if (isFlexible(apiKey, apiVersion)) {
+            ByteBufferTypes.decodeTaggedFields(buffer); // Header v2 adds tagged fields
+        }
 
         return new RequestHeader(apiKey, apiVersion, correlationId, clientId);
     }
 
-    // Decode a nullable string
-    private static String decodeNullableString(DataInputStream inputStream) throws IOException {
-        int length = inputStream.readShort(); // Read length as 16-bit integer
-        if (length == -1) { // Length of -1 indicates null
-            return null;
-        }
-        byte[] bytes = new byte[length];
-        inputStream.readFully(bytes);
-        return new String(bytes, "UTF-8"); // Decode bytes to UTF-8 string
+    // Flexible request versions use header v2. Every other API is only served in flexible versions,
+    // so just ApiVersions v0-2 comes with header v1
+    public static boolean isFlexible(Constants.ApiKey apiKey, int apiVersion) {
+        return apiKey != Constants.ApiKey.API_VERSIONS || apiVersion >= ApiVersionsRequestData.LOWEST_FLEXIBLE_VERSION;
+    }
+
+    // Decode a nullable string; a length of -1 indicates null
+    private static String decodeNullableString(ByteBuffer buffer) throws IOException {
+        return ByteBufferTypes.decodeString(buffer);
     }
 
 
@@ -1,9 +1,9 @@
 package messages;
 
+import Kafka.ByteBufferTypes;
 import Kafka.Constants;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class ResponseHeader {
     private final Constants.ApiKey apiKey;
@@ -29,21 +29,23 @@ public class ResponseHeader {
         return new ResponseHeader(requestHeader.getApiKey(), requestHeader.getCorrelationId());
     }
 
+    // ApiVersions responses always use header v0, which has no tagged fields
+    private boolean hasTaggedFields() {
+        return apiKey != Constants.ApiKey.API_VERSIONS;
+    }
+
+    public int sizeOf() {
+        return 4 + (hasTaggedFields() ? 1 : 0);
+    }
+
     // Encode method
-    public void encode(DataOutputStream outputStream) throws IOException {
+    public void encode(ByteBuffer buffer) {
         // Encode correlation ID
-        outputStream.writeInt(correlationId);
+        buffer.putInt(correlationId);
 
         // Additional encoding for tagged fields (if necessary)
-        if (apiKey != Constants.ApiKey.API_VERSIONS) {
-            encodeTaggedFields(outputStream);
+        if (hasTaggedFields()) {
+            ByteBufferTypes.encodeTaggedFields(buffer);
         }
     }
-
-    // Helper method to encode tagged fields
-    private void encodeTaggedFields(DataOutputStream outputStream) throws IOException {
-        // Placeholder: Encode tagged fields if required
-        // For now, write zero bytes for tagged fields
-        outputStream.writeByte(0);
-    }
 }
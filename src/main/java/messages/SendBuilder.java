@@ -0,0 +1,51 @@
+package messages;
+
+import network.ByteBufferSend;
+import network.MultiSend;
+import network.Send;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Writes a whole response into one buffer sized exactly up front, and lets encoders splice
+// zero-copy sends (such as log file regions) between the bytes they write. The buffered parts are
+// slices of that single buffer, so nothing is copied after it has been written once
+public class SendBuilder {
+    private final ByteBuffer buffer;
+    private final List<Send> sends = new ArrayList<>();
+    private int sliceStart = 0;
+
+    // Constructor; capacity must cover every byte written, excluding spliced sends
+    public SendBuilder(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    // The buffer encoders write into
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    // Append a send after the bytes written so far
+    public void writeSend(Send send) {
+        flushSlice();
+        sends.add(send);
+    }
+
+    public Send build() {
+        if (buffer.hasRemaining()) {
+            throw new IllegalStateException("Response size mismatch: " + buffer.remaining() + " of "
+                    + buffer.capacity() + " bytes not written");
+        }
+        flushSlice();
+        return sends.size() == 1 ? sends.get(0) : new MultiSend(sends);
+    }
+
+    private void flushSlice() {
+        int position = buffer.position();
+        if (position > sliceStart) {
+            sends.add(new ByteBufferSend(buffer.duplicate().position(sliceStart).limit(position).slice()));
+            sliceStart = position;
+        }
+    }
+}
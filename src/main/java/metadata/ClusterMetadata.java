@@ -1,42 +1,57 @@
 package metadata;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
+import log.Log;
+import log.LogManager;
+import log.LogSegment;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ClusterMetadata {
-
-    // Singleton instance
-    private static ClusterMetadata instance;
+    private static final int TOPIC_RESOURCE_TYPE = 2;
 
     // Topic metadata mappings
     private final Map<String, UUID> topicIdLookup = new ConcurrentHashMap<>();
     private final Map<UUID, String> topicNameLookup = new ConcurrentHashMap<>();
     private final Map<UUID, List<Integer>> partitionIndicesLookup = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> topicConfigs = new ConcurrentHashMap<>(); // Overrides by topic name
 
-    // Private constructor for singleton
+    // Private constructor for singleton. The metadata log is replayed in one pass, in offset order:
+    // later records override earlier ones (a CONFIG record with a null value removes an override) and
+    // PARTITION records refer to their TOPIC, so its single partition gives nothing to split across
+    // threads. LogManager has already loaded it and CRC-checked its tail past the recovery point
     private ClusterMetadata() {
         try {
-            for (RecordBatch recordBatch : readRecordBatches("__cluster_metadata", 0)) {
-                for (Record record : recordBatch.getRecords()) {
-                    addRecord(record);
-                }
-            }
+            replay("__cluster_metadata", 0);
         } catch (IOException e) {
             throw new RuntimeException("Failed to initialize ClusterMetadata", e);
         }
     }
 
+    // Singleton instance, guarded by a ReentrantLock rather than synchronized so a virtual thread
+    // reading the metadata log during initialisation does not pin its carrier thread
+    private static volatile ClusterMetadata instance;
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+
     // Get singleton instance
-    public static synchronized ClusterMetadata getInstance() {
-        if (instance == null) {
-            instance = new ClusterMetadata();
+    public static ClusterMetadata getInstance() {
+        ClusterMetadata result = instance;
+        if (result != null) {
+            return result;
+        }
+        instanceLock.lock();
+        try {
+            if (instance == null) {
+                instance = new ClusterMetadata();
+            }
+            return instance;
+        } finally {
+            instanceLock.unlock();
         }
-        return instance;
     }
 
     // Get topic ID by name
@@ -54,46 +69,75 @@ public class ClusterMetadata {
         return partitionIndicesLookup.getOrDefault(topicId, Collections.emptyList());
     }
 
+    // A topic's override of a log setting such as retention.ms, or null if it uses the broker default
+    public String getTopicConfig(String topicName, String name) {
+        Map<String, String> configs = topicConfigs.get(topicName);
+        return configs == null ? null : configs.get(name);
+    }
+
     // Add record to metadata
     private void addRecord(Record record) throws IOException {
-        ByteArrayInputStream binaryStream = new ByteArrayInputStream(record.getValue());
-        DataInputStream inputStream = new DataInputStream(binaryStream);
+        ByteBuffer buffer = ByteBuffer.wrap(record.getValue());
 
-        PrimitiveTypes.decodeInt8(inputStream); // Skip initial byte
-        int recordTypeValue = PrimitiveTypes.decodeInt8(inputStream);
+        ByteBufferTypes.decodeInt8(buffer); // Skip initial byte
+        int recordTypeValue = ByteBufferTypes.decodeInt8(buffer);
         RecordType recordType = RecordType.fromValue(recordTypeValue);
 
         switch (recordType) {
             case TOPIC -> {
-                PrimitiveTypes.decodeInt8(inputStream); // Skip extra byte
-                String topicName = PrimitiveTypes.decodeCompactString(inputStream);
-                UUID topicId = PrimitiveTypes.decodeUUID(inputStream);
+                ByteBufferTypes.decodeInt8(buffer); // Skip extra byte
+                String topicName = ByteBufferTypes.decodeCompactString(buffer);
+                UUID topicId = ByteBufferTypes.decodeUUID(buffer);
 
                 topicIdLookup.put(topicName, topicId);
                 topicNameLookup.put(topicId, topicName);
             }
             case PARTITION -> {
-                PrimitiveTypes.decodeInt8(inputStream); // Skip extra byte
-                int partitionIndex = PrimitiveTypes.decodeInt32(inputStream);
-                UUID topicId = PrimitiveTypes.decodeUUID(inputStream);
+                ByteBufferTypes.decodeInt8(buffer); // Skip extra byte
+                int partitionIndex = ByteBufferTypes.decodeInt32(buffer);
+                UUID topicId = ByteBufferTypes.decodeUUID(buffer);
 
                 partitionIndicesLookup.computeIfAbsent(topicId, k -> new ArrayList<>()).add(partitionIndex);
             }
+            case CONFIG -> {
+                ByteBufferTypes.decodeInt8(buffer); // Skip extra byte
+                int resourceType = ByteBufferTypes.decodeInt8(buffer);
+                String resourceName = ByteBufferTypes.decodeCompactString(buffer);
+                String name = ByteBufferTypes.decodeCompactString(buffer);
+                String value = ByteBufferTypes.decodeCompactString(buffer); // Null removes the override
+
+                if (resourceType == TOPIC_RESOURCE_TYPE) {
+                    Map<String, String> configs = topicConfigs.computeIfAbsent(resourceName, k -> new ConcurrentHashMap<>());
+                    if (value == null) {
+                        configs.remove(name);
+                    } else {
+                        configs.put(name, value);
+                    }
+                }
+            }
         }
     }
 
-    // Read record batches from log file
-    public static Iterable<RecordBatch> readRecordBatches(String topicName, int partitionIndex) throws IOException {
-        String filepath = String.format("/tmp/kraft-combined-logs/%s-%d/00000000000000000000.log", topicName, partitionIndex);
-        List<RecordBatch> recordBatches = new ArrayList<>();
-
-        try (DataInputStream inputStream = new DataInputStream(Files.newInputStream(Paths.get(filepath)))) {
-            while (inputStream.available() > 0) {
-                recordBatches.add(RecordBatch.decode(inputStream));
+    // Apply every record of a partition log as its batch is decoded, one segment at a time, rather than
+    // collecting the whole log first. Reads go through the FileChannel, which takes no monitors, so a
+    // virtual thread blocked here does not pin its carrier
+    private void replay(String topicName, int partitionIndex) throws IOException {
+        Log partitionLog = LogManager.getInstance().getLog(topicName, partitionIndex);
+        if (partitionLog == null) {
+            throw new FileNotFoundException("No log for " + topicName + "-" + partitionIndex);
+        }
+        for (LogSegment segment : partitionLog.segments()) {
+            FileRecords records = segment.read(segment.baseOffset(), Integer.MAX_VALUE);
+            if (records == null) {
+                continue;
+            }
+            ByteBuffer buffer = records.readAll();
+            while (buffer.hasRemaining()) {
+                for (Record record : RecordBatch.decode(buffer).getRecords()) {
+                    addRecord(record);
+                }
             }
         }
-
-        return recordBatches;
     }
 
 }
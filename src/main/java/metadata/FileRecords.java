@@ -0,0 +1,66 @@
+package metadata;
+
+import network.FileRegionSend;
+import network.Send;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class FileRecords implements Records {
+    private final FileChannel channel;
+    private final long position;
+    private final int sizeInBytes;
+
+    // Constructor
+    public FileRecords(FileChannel channel, long position, int sizeInBytes) {
+        this.channel = channel;
+        this.position = position;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    // Getters
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    // Copy the bytes into a heap buffer, for decoding on the broker
+    public ByteBuffer readAll() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(sizeInBytes);
+        readInto(buffer);
+        return buffer.flip();
+    }
+
+    // Read the bytes from the channel straight into the buffer at its position, which is advanced
+    // past them. A direct buffer is filled without a heap copy in between
+    public void readInto(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < sizeInBytes) {
+            throw new IllegalArgumentException(sizeInBytes + " bytes of records do not fit in " + buffer.remaining());
+        }
+        int start = buffer.position();
+        int end = start + sizeInBytes;
+        ByteBuffer target = buffer.duplicate().limit(end);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position() - start) < 0) {
+                throw new EOFException("Log file ended " + target.remaining() + " bytes early");
+            }
+        }
+        buffer.position(end);
+    }
+
+    // Send the raw batch bytes from the log file
+    @Override
+    public Send toSend() {
+        return new FileRegionSend(channel, position, sizeInBytes);
+    }
+}
@@ -0,0 +1,27 @@
+package metadata;
+
+import network.ByteBufferSend;
+import network.Send;
+
+import java.nio.ByteBuffer;
+
+// Record batches held in a buffer, e.g. a read cache entry shared by many fetchers. Each send
+// gets its own view, so the buffer itself is never moved
+public class MemoryRecords implements Records {
+    private final ByteBuffer buffer;
+
+    // Constructor
+    public MemoryRecords(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public Send toSend() {
+        return new ByteBufferSend(buffer.duplicate());
+    }
+}
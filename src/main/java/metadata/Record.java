@@ -1,10 +1,11 @@
 package metadata;
 
-import Kafka.PrimitiveTypes;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import Kafka.ByteBufferTypes;
+import Kafka.Varint;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Record {
@@ -63,35 +64,78 @@ public class Record {
         return headers;
     }
 
-    // Decode method
-    public static Record decode(DataInputStream inputStream) throws IOException {
-        int length = PrimitiveTypes.decodeVarint(inputStream);
-        byte attributes = PrimitiveTypes.decodeInt8(inputStream);
-        long timestampDelta = PrimitiveTypes.decodeVarlong(inputStream);
-        int offsetDelta = PrimitiveTypes.decodeVarint(inputStream);
-        byte[] key = PrimitiveTypes.decodeCompactBytes(inputStream);
-        int valueLength = PrimitiveTypes.decodeVarint(inputStream);
+    // Decode method. Every length and delta is a zigzag varint; a key or value length of -1 means null
+    public static Record decode(ByteBuffer buffer) throws IOException {
+        int length = Varint.readVarint(buffer);
+        byte attributes = ByteBufferTypes.decodeInt8(buffer);
+        long timestampDelta = Varint.readVarlong(buffer);
+        int offsetDelta = Varint.readVarint(buffer);
+        byte[] key = readNullableBytes(buffer, Varint.readVarint(buffer));
+        int valueLength = Varint.readVarint(buffer);
+        byte[] value = readNullableBytes(buffer, valueLength);
+
+        int headerCount = Varint.readVarint(buffer);
+        if (headerCount < 0) {
+            throw new IOException("Invalid negative header count " + headerCount);
+        }
+        ByteBufferTypes.checkLength(buffer, headerCount);
+        List<RecordHeader> headers = new ArrayList<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(RecordHeader.decode(buffer));
+        }
 
-        // Adjust value length (divide by 2)
-        int x = valueLength / 2;
-        byte[] value = new byte[x];
-        inputStream.readFully(value);
+        return new Record(length, attributes, timestampDelta, offsetDelta, key, valueLength, value, headers);
+    }
 
-        List<RecordHeader> headers = PrimitiveTypes.decodeCompactArray(inputStream, RecordHeader::decode);
+    static byte[] readNullableBytes(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0) {
+            return null;
+        }
+        ByteBufferTypes.checkLength(buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
 
-        return new Record(length, attributes, timestampDelta, offsetDelta, key, valueLength, value, headers);
+    static int sizeOfNullableBytes(byte[] bytes) {
+        return bytes == null ? Varint.sizeOfVarint(-1) : Varint.sizeOfVarint(bytes.length) + bytes.length;
     }
 
-    // Encode method
-    public void encode(DataOutputStream outputStream) throws IOException {
-        PrimitiveTypes.encodeVarint(outputStream, length);
-        PrimitiveTypes.encodeInt8(outputStream, attributes);
-        PrimitiveTypes.encodeVarlong(outputStream, timestampDelta);
-        PrimitiveTypes.encodeVarint(outputStream, offsetDelta);
-        PrimitiveTypes.encodeCompactBytes(outputStream, key);
-        PrimitiveTypes.encodeVarint(outputStream, valueLength);
-        outputStream.write(value); // Write value directly
-        PrimitiveTypes.encodeCompactArray(outputStream, headers, (stream, header) -> header.encode(stream));
+    static void writeNullableBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            Varint.writeVarint(buffer, -1);
+        } else {
+            Varint.writeVarint(buffer, bytes.length);
+            buffer.put(bytes);
+        }
     }
 
+    // Size of everything after the length prefix
+    private int sizeOfBody() {
+        int size = 1 + Varint.sizeOfVarlong(timestampDelta) + Varint.sizeOfVarint(offsetDelta)
+                + sizeOfNullableBytes(key) + sizeOfNullableBytes(value) + Varint.sizeOfVarint(headers.size());
+        for (RecordHeader header : headers) {
+            size += header.sizeOf();
+        }
+        return size;
+    }
+
+    public int sizeOf() {
+        int bodySize = sizeOfBody();
+        return Varint.sizeOfVarint(bodySize) + bodySize;
+    }
+
+    // Encode method; the length prefix is recomputed rather than trusted
+    public void encode(ByteBuffer buffer) {
+        Varint.writeVarint(buffer, sizeOfBody());
+        ByteBufferTypes.encodeInt8(buffer, attributes);
+        Varint.writeVarlong(buffer, timestampDelta);
+        Varint.writeVarint(buffer, offsetDelta);
+        writeNullableBytes(buffer, key);
+        writeNullableBytes(buffer, value);
+        Varint.writeVarint(buffer, headers.size());
+        for (RecordHeader header : headers) {
+            header.encode(buffer);
+        }
+    }
 }
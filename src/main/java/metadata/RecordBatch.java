@@ -1,21 +1,37 @@
 package metadata;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
+import Kafka.Varint;
+import compression.CompressionCodecs;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.CRC32;
 import java.util.zip.CRC32C;
 
+// A v2 record batch. Decoded batches parse only the 61-byte header and keep the rest as a slice
+// of the source buffer: records are decoded on first use, and encoding copies the original bytes
+// instead of re-serializing them and recomputing the CRC. A changed batch is built anew from its
+// records through the public constructor, so a decoded one is never re-encoded. The low three
+// bits of the attributes name the codec the records are compressed with, if any; the header and
+// record count are never compressed
 public class RecordBatch {
+    public static final int HEADER_SIZE = 61;
+    public static final byte MAGIC_VALUE_V2 = 2;
+    public static final int COMPRESSION_CODEC_MASK = 0x07;
+    private static final int CRC_OFFSET = 17;
+    private static final int ATTRIBUTES_OFFSET = 21;
+    private static final int RECORDS_COUNT_OFFSET = 57;
+
     private final long baseOffset;
     private final int batchLength;
     private final int partitionLeaderEpoch;
     private final byte magic;
-    private long crc; // Marked as mutable for recalculation
+    private final long crc;
     private final short attributes;
     private final int lastOffsetDelta;
     private final long baseTimestamp;
@@ -23,6 +39,9 @@ public class RecordBatch {
     private final long producerId;
     private final short producerEpoch;
     private final int baseSequence;
+    private final ByteBuffer raw; // Whole batch as read, or null for a batch built from records
+    private List<Record> records; // Decoded from raw on first use
+    private ByteBuffer compressedRecords; // Records of a built compressed batch, once compressed
 
     public long getBaseOffset() {
         return baseOffset;
@@ -44,14 +63,15 @@ public class RecordBatch {
         return crc;
     }
 
-    public void setCrc(long crc) {
-        this.crc = crc;
-    }
-
     public short getAttributes() {
         return attributes;
     }
 
+    // Codec id from the attributes; CompressionCodecs.NONE if the records are not compressed
+    public int compressionId() {
+        return attributes & COMPRESSION_CODEC_MASK;
+    }
+
     public int getLastOffsetDelta() {
         return lastOffsetDelta;
     }
@@ -76,16 +96,87 @@ public class RecordBatch {
         return baseSequence;
     }
 
-    public List<Record> getRecords() {
+    // Records, decoded from the batch bytes the first time they are asked for. Compressed records
+    // are decompressed first, which fails if the codec is not installed
+    public List<Record> getRecords() throws IOException {
+        return getRecords(Long.MAX_VALUE);
+    }
+
+    // As getRecords(), but compressed records may inflate to at most maxBytes. Used on batches that
+    // have not been validated yet, where the CRC only vouches for the compressed bytes
+    public List<Record> getRecords(long maxBytes) throws IOException {
+        if (records == null) {
+            if (compressionId() == CompressionCodecs.NONE) {
+                ByteBuffer body = raw.duplicate().position(HEADER_SIZE - 4);
+                records = ByteBufferTypes.decodeArray(body, Record::decode);
+            } else {
+                records = decodeCompressed(maxBytes);
+            }
+        }
         return records;
     }
 
-    private final List<Record> records;
+    // The header's record count of records, inflated one record at a time, with nothing left after
+    // them. Each record's length is checked against what is left of maxBytes before it is read, so
+    // a small batch that would inflate far past the limit fails without being inflated
+    private List<Record> decodeCompressed(long maxBytes) throws IOException {
+        int count = raw.getInt(RECORDS_COUNT_OFFSET);
+        if (count < 0) {
+            throw new IOException("Invalid negative record count " + count);
+        }
+        List<Record> decoded = new ArrayList<>(Math.min(count, 1024)); // The count is not trusted yet
+        long remaining = maxBytes;
+        try (InputStream in = CompressionCodecs.decompress(compressionId(), raw.duplicate().position(HEADER_SIZE))) {
+            for (int i = 0; i < count; i++) {
+                int length = Varint.readVarint(in);
+                if (length < 0) {
+                    throw new IOException("Invalid negative record length " + length);
+                }
+                int prefixSize = Varint.sizeOfVarint(length);
+                if ((long) prefixSize + length > remaining) {
+                    throw new IOException("Compressed records inflate to more than " + maxBytes + " bytes");
+                }
+                remaining -= prefixSize + length;
+
+                ByteBuffer record = ByteBuffer.allocate(prefixSize + length);
+                Varint.writeVarint(record, length);
+                if (in.readNBytes(record.array(), prefixSize, length) < length) {
+                    throw new EOFException("Compressed records end inside record " + i);
+                }
+                decoded.add(Record.decode(record.rewind()));
+                if (record.hasRemaining()) {
+                    throw new IOException(record.remaining() + " bytes left after the fields of record " + i);
+                }
+            }
+            if (in.read() >= 0) {
+                throw new IOException("Bytes left after the last compressed record");
+            }
+        }
+        return decoded;
+    }
 
-    // Constructor
+    // Number of records, from the header
+    public int getRecordCount() {
+        return raw != null ? raw.getInt(RECORDS_COUNT_OFFSET) : records.size();
+    }
+
+    // The batch exactly as read, for passing through without decoding; null for a built batch
+    public ByteBuffer rawBytes() {
+        return raw == null ? null : raw.duplicate();
+    }
+
+
+    // Constructor for a batch built from records
     public RecordBatch(long baseOffset, int batchLength, int partitionLeaderEpoch, byte magic, long crc,
                        short attributes, int lastOffsetDelta, long baseTimestamp, long maxTimestamp, long producerId,
                        short producerEpoch, int baseSequence, List<Record> records) {
+        this(baseOffset, batchLength, partitionLeaderEpoch, magic, crc, attributes, lastOffsetDelta, baseTimestamp,
+                maxTimestamp, producerId, producerEpoch, baseSequence, null, records);
+    }
+
+    private RecordBatch(long baseOffset, int batchLength, int partitionLeaderEpoch, byte magic, long crc,
+                        short attributes, int lastOffsetDelta, long baseTimestamp, long maxTimestamp, long producerId,
+                        short producerEpoch, int baseSequence, ByteBuffer raw, List<Record> records) {
         this.baseOffset = baseOffset;
         this.batchLength = batchLength;
         this.partitionLeaderEpoch = partitionLeaderEpoch;
@@ -98,94 +189,126 @@ public class RecordBatch {
         this.producerId = producerId;
         this.producerEpoch = producerEpoch;
         this.baseSequence = baseSequence;
+        this.raw = raw;
         this.records = records;
     }
 
-    // Getters (unchanged)
-    // ... (All getters are fine)
-
-    // Decode method
-    public static RecordBatch decode(DataInputStream inputStream) throws IOException {
-        long baseOffset = inputStream.readLong();
-        int batchLength = inputStream.readInt();
-        int partitionLeaderEpoch = inputStream.readInt();
-        byte magic = inputStream.readByte();
-
-        // Treat CRC as unsigned
-        long crc = Integer.toUnsignedLong(inputStream.readInt());
-
-        short attributes = inputStream.readShort();
-        int lastOffsetDelta = inputStream.readInt();
-        long baseTimestamp = inputStream.readLong();
-        long maxTimestamp = inputStream.readLong();
-        long producerId = inputStream.readLong();
-        short producerEpoch = inputStream.readShort();
-        int baseSequence = inputStream.readInt();
-        List<Record> records = PrimitiveTypes.decodeArray(inputStream, Record::decode);
+    // Decode the header and take the batch as a slice of the buffer, which is advanced past it.
+    // The slice shares the buffer's memory, so the buffer must outlive the batch
+    public static RecordBatch decode(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        ByteBufferTypes.checkLength(buffer, HEADER_SIZE);
+        int batchLength = buffer.getInt(start + 8);
+        if (batchLength < HEADER_SIZE - 12) {
+            throw new IOException("Record batch length " + batchLength + " is shorter than its header");
+        }
+        ByteBufferTypes.checkLength(buffer, 12 + batchLength);
+        ByteBuffer raw = buffer.slice(start, 12 + batchLength);
+        buffer.position(start + 12 + batchLength);
 
         return new RecordBatch(
-                baseOffset, batchLength, partitionLeaderEpoch, magic, crc,
-                attributes, lastOffsetDelta, baseTimestamp, maxTimestamp,
-                producerId, producerEpoch, baseSequence, records
+                raw.getLong(0), batchLength, raw.getInt(12), raw.get(16),
+                Integer.toUnsignedLong(raw.getInt(CRC_OFFSET)), // Treat CRC as unsigned
+                raw.getShort(ATTRIBUTES_OFFSET), raw.getInt(23), raw.getLong(27), raw.getLong(35),
+                raw.getLong(43), raw.getShort(51), raw.getInt(53), raw, null
         );
     }
 
+    // True if the stored CRC matches the bytes after it; only for decoded batches
+    public boolean isValid() {
+        return crc32c(raw.duplicate().position(CRC_OFFSET + 4)) == Integer.toUnsignedLong(raw.getInt(CRC_OFFSET));
+    }
 
-    // Encode method with CRC recalculation
-    public void encode(DataOutputStream outputStream) throws IOException {
-        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
-        DataOutputStream bufferOutput = new DataOutputStream(bufferStream);
-
-        PrimitiveTypes.encodeInt64(bufferOutput, baseOffset);
-        PrimitiveTypes.encodeInt32(bufferOutput, 0); // Placeholder for batchLength
-        PrimitiveTypes.encodeInt32(bufferOutput, partitionLeaderEpoch);
-        PrimitiveTypes.encodeInt8(bufferOutput, magic);
-
-        // Placeholder for CRC
-        int crcStartOffset = bufferStream.size();
-        PrimitiveTypes.encodeInt32(bufferOutput, 0);
-
-        // Write remaining fields
-        PrimitiveTypes.encodeInt16(bufferOutput, attributes);
-        PrimitiveTypes.encodeInt32(bufferOutput, lastOffsetDelta);
-        PrimitiveTypes.encodeInt64(bufferOutput, baseTimestamp);
-        PrimitiveTypes.encodeInt64(bufferOutput, maxTimestamp);
-        PrimitiveTypes.encodeInt64(bufferOutput, producerId);
-        PrimitiveTypes.encodeInt16(bufferOutput, producerEpoch);
-        PrimitiveTypes.encodeInt32(bufferOutput, baseSequence);
-        PrimitiveTypes.encodeArray(bufferOutput, records,(stream, record) -> record.encode(stream));
-
-        // Calculate CRC
-        byte[] buffer = bufferStream.toByteArray();
+    // CRC32C of the remaining bytes, leaving the position alone. CRC32C.update(ByteBuffer) refuses
+    // direct buffers mapped in a shared Arena, like MmapCache's, so those go through a heap copy
+    public static long crc32c(ByteBuffer bytes) {
         CRC32C crc32c = new CRC32C();
-        crc32c.update(buffer, crcStartOffset + 4, buffer.length - crcStartOffset - 4);
-        long computedCrc = crc32c.getValue();
-
-        // Write CRC back
-        encodeUInt32At(buffer, crcStartOffset, computedCrc);
+        if (!bytes.isDirect()) {
+            crc32c.update(bytes.duplicate());
+            return crc32c.getValue();
+        }
+        byte[] chunk = new byte[Math.min(bytes.remaining(), 8192)];
+        for (int position = bytes.position(); position < bytes.limit(); position += chunk.length) {
+            int length = Math.min(chunk.length, bytes.limit() - position);
+            bytes.get(position, chunk, 0, length);
+            crc32c.update(chunk, 0, length);
+        }
+        return crc32c.getValue();
+    }
 
-        // Write batchLength
-        int batchLength = buffer.length - 12; // Exclude baseOffset (8 bytes) and batchLength (4 bytes)
-        encodeUInt32At(buffer, 8, batchLength);
+    // Exact encoded size of the batch, taking the same branch as encode()
+    public int sizeOf() {
+        if (raw != null) {
+            return raw.remaining();
+        }
+        if (compressionId() != CompressionCodecs.NONE) {
+            try {
+                return HEADER_SIZE + compressedRecords().remaining();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to compress records", e); // A batch built with a codec that is not installed
+            }
+        }
+        return HEADER_SIZE - 4 + ByteBufferTypes.sizeOfArray(records, Record::sizeOf);
+    }
 
-        // Write final buffer to the outputStream
-        outputStream.write(buffer);
+    // The records encoded back to back and compressed with the batch's codec, computed once
+    private ByteBuffer compressedRecords() throws IOException {
+        if (compressedRecords == null) {
+            int size = 0;
+            for (Record record : records) {
+                size += record.sizeOf();
+            }
+            ByteBuffer encoded = ByteBuffer.allocate(size);
+            for (Record record : records) {
+                record.encode(encoded);
+            }
+            compressedRecords = CompressionCodecs.compress(compressionId(), encoded.flip());
+        }
+        return compressedRecords.duplicate();
     }
 
-    public static void encodeUInt32At(byte[] buffer, int offset, long value) {
-        // Validate range for unsigned 32-bit integer
-        if (value < 0 || value > 0xFFFFFFFFL) {
-            throw new IllegalArgumentException("Value out of range for unsigned 32-bit integer: " + value);
+    // Encode method. A decoded batch is copied as is; a built one has its records written and
+    // batchLength and CRC patched in place afterwards
+    public void encode(ByteBuffer buffer) throws IOException {
+        if (raw != null) {
+            buffer.put(raw.duplicate());
+            return;
         }
+        int start = buffer.position();
 
-        // Write the value as 4 bytes
-        buffer[offset] = (byte) ((value >>> 24) & 0xFF);
-        buffer[offset + 1] = (byte) ((value >>> 16) & 0xFF);
-        buffer[offset + 2] = (byte) ((value >>> 8) & 0xFF);
-        buffer[offset + 3] = (byte) (value & 0xFF);
-    }
+        ByteBufferTypes.encodeInt64(buffer, baseOffset);
+        ByteBufferTypes.encodeInt32(buffer, 0); // Placeholder for batchLength
+        ByteBufferTypes.encodeInt32(buffer, partitionLeaderEpoch);
+        ByteBufferTypes.encodeInt8(buffer, magic);
 
+        // Placeholder for CRC
+        int crcStartOffset = buffer.position();
+        ByteBufferTypes.encodeInt32(buffer, 0);
 
+        // Write remaining fields
+        ByteBufferTypes.encodeInt16(buffer, attributes);
+        ByteBufferTypes.encodeInt32(buffer, lastOffsetDelta);
+        ByteBufferTypes.encodeInt64(buffer, baseTimestamp);
+        ByteBufferTypes.encodeInt64(buffer, maxTimestamp);
+        ByteBufferTypes.encodeInt64(buffer, producerId);
+        ByteBufferTypes.encodeInt16(buffer, producerEpoch);
+        ByteBufferTypes.encodeInt32(buffer, baseSequence);
+        if (compressionId() == CompressionCodecs.NONE) {
+            ByteBufferTypes.encodeArray(buffer, records, (output, record) -> record.encode(output));
+        } else {
+            ByteBufferTypes.encodeInt32(buffer, records.size());
+            buffer.put(compressedRecords());
+        }
+        int end = buffer.position();
+
+        // Calculate CRC over everything after the CRC field
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(buffer.duplicate().position(crcStartOffset + 4).limit(end));
+        ByteBufferTypes.putUInt32(buffer, crcStartOffset, crc32c.getValue());
+
+        // Write batchLength, excluding baseOffset (8 bytes) and batchLength (4 bytes)
+        ByteBufferTypes.putInt32(buffer, start + 8, end - start - 12);
+    }
 
     @Override
     public String toString() {
@@ -202,7 +325,7 @@ public class RecordBatch {
                 ", producerId=" + producerId +
                 ", producerEpoch=" + producerEpoch +
                 ", baseSequence=" + baseSequence +
-                ", records=" + records +
+                ", records=" + (records != null ? records : raw == null ? "[]" : "(not decoded)") +
                 '}';
     }
 }
@@ -1,11 +1,11 @@
 package metadata;
 
-import Kafka.PrimitiveTypes;
+import Kafka.ByteBufferTypes;
+import Kafka.Varint;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class RecordHeader {
     private final String key;
@@ -26,25 +26,27 @@ public class RecordHeader {
         return value;
     }
 
-    // Decode method
-    public static RecordHeader decode(DataInputStream inputStream) throws IOException {
-        int keyLength = PrimitiveTypes.decodeVarint(inputStream);
-        byte[] keyBytes = new byte[keyLength];
-        inputStream.readFully(keyBytes);
-        String key = new String(keyBytes);
-
-        int valueLength = PrimitiveTypes.decodeVarint(inputStream);
-        byte[] value = new byte[valueLength];
-        inputStream.readFully(value);
+    // Decode method. The key length is a zigzag varint; the value may be null (length -1)
+    public static RecordHeader decode(ByteBuffer buffer) throws IOException {
+        int keyLength = Varint.readVarint(buffer);
+        if (keyLength < 0) {
+            throw new IOException("Invalid negative header key length " + keyLength);
+        }
+        byte[] keyBytes = Record.readNullableBytes(buffer, keyLength);
+        String key = new String(keyBytes, StandardCharsets.UTF_8);
+        byte[] value = Record.readNullableBytes(buffer, Varint.readVarint(buffer));
 
         return new RecordHeader(key, value);
     }
 
+    public int sizeOf() {
+        int keyLength = ByteBufferTypes.utf8Length(key);
+        return Varint.sizeOfVarint(keyLength) + keyLength + Record.sizeOfNullableBytes(value);
+    }
+
     // Encode method
-    public void encode(DataOutputStream outputStream) throws IOException {
-        PrimitiveTypes.encodeVarint(outputStream, key.length());
-        outputStream.write(key.getBytes());
-        PrimitiveTypes.encodeVarint(outputStream, value.length);
-        outputStream.write(value);
+    public void encode(ByteBuffer buffer) {
+        Record.writeNullableBytes(buffer, key.getBytes(StandardCharsets.UTF_8));
+        Record.writeNullableBytes(buffer, value);
     }
 }
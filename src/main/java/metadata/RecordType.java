@@ -3,6 +3,7 @@ package metadata;
 public enum RecordType {
     TOPIC(2),
     PARTITION(3),
+    CONFIG(4),
     FEATURE_LEVEL(12);
 
     private final int value;
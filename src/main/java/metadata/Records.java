@@ -0,0 +1,10 @@
+package metadata;
+
+import network.Send;
+
+// Raw record batches on their way to a client, either still in the log file or already in memory
+public interface Records {
+    int sizeInBytes();
+
+    Send toSend();
+}
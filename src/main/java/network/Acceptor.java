@@ -0,0 +1,71 @@
+package network;
+
+import Kafka.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+
+public class Acceptor implements Runnable {
+    private static final Logger log = Logger.getLogger(Acceptor.class);
+
+    private final ServerSocketChannel serverChannel;
+    private final List<Processor> processors;
+    private final Selector selector;
+    private int currentProcessor = 0;
+    private volatile boolean running = true;
+
+    // Constructor
+    public Acceptor(ServerSocketChannel serverChannel, List<Processor> processors) throws IOException {
+        this.serverChannel = serverChannel;
+        this.processors = processors;
+        this.selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (selector.select(500) == 0) {
+                    continue;
+                }
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (key.isAcceptable()) {
+                        accept();
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Error accepting connection: " + e.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.error("Error closing selector: " + e.getMessage());
+        }
+    }
+
+    // Hand accepted connections to processors in round-robin order
+    private void accept() throws IOException {
+        SocketChannel socketChannel;
+        while ((socketChannel = serverChannel.accept()) != null) {
+            Processor processor = processors.get(currentProcessor);
+            currentProcessor = (currentProcessor + 1) % processors.size();
+            processor.accept(socketChannel);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,43 @@
+package network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+public class ByteBufferSend implements Send {
+    private final ByteBuffer[] buffers;
+    private final long size;
+    private long remaining;
+
+    // Constructor
+    public ByteBufferSend(ByteBuffer... buffers) {
+        this.buffers = buffers;
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        this.size = total;
+        this.remaining = total;
+    }
+
+    @Override
+    public boolean completed() {
+        return remaining <= 0;
+    }
+
+    @Override
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        long written = channel.write(buffers);
+        if (written < 0) {
+            throw new EOFException("Wrote negative bytes to channel");
+        }
+        remaining -= written;
+        return written;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+}
@@ -0,0 +1,37 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+
+public class FileRegionSend implements Send {
+    private final FileChannel fileChannel;
+    private final long position;
+    private final long size;
+    private long transferred = 0;
+
+    // Constructor
+    public FileRegionSend(FileChannel fileChannel, long position, long size) {
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.size = size;
+    }
+
+    @Override
+    public boolean completed() {
+        return transferred >= size;
+    }
+
+    // Copy straight from the file to the socket (sendfile) without staging the bytes on the heap
+    @Override
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        long written = fileChannel.transferTo(position + transferred, size - transferred, channel);
+        transferred += written;
+        return written;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+}
@@ -0,0 +1,60 @@
+package network;
+
+import Kafka.ServerConfig;
+import messages.AbstractRequest;
+import messages.AbstractResponse;
+import messages.MessageHandler;
+import messages.ProduceRequest;
+import quota.ClientQuotaManager;
+
+import java.io.IOException;
+
+// Turns a decoded request into a response send, applying client quotas on the way
+public class KafkaApis {
+    private final ClientQuotaManager byteRateQuotas;
+    private final ClientQuotaManager requestRateQuotas;
+    private final ResponseTemplateCache responseTemplates;
+
+    // Constructor
+    public KafkaApis(ServerConfig config) {
+        long windowMs = config.getQuotaWindowSizeSeconds() * 1000L;
+        this.byteRateQuotas = new ClientQuotaManager(config.getQuotaWindowNum(), windowMs, config::getQuotaByteRate);
+        this.requestRateQuotas = new ClientQuotaManager(config.getQuotaWindowNum(), windowMs, config::getQuotaRequestRate);
+        this.responseTemplates = new ResponseTemplateCache(config.getResponseCacheMaxEntries());
+    }
+
+    public RequestChannel.Response handle(RequestChannel.Request channelRequest) throws IOException {
+        AbstractRequest request = channelRequest.getRequest();
+
+        // Invariant responses are sent from their encoded image with the correlation id stamped in
+        ResponseTemplate template = responseTemplates.get(request);
+        if (template != null) {
+            int throttleTimeMs = recordAndGetThrottleTimeMs(request, template.sizeOf());
+            Send send = template.toSend(request.getHeader().getCorrelationId(), throttleTimeMs);
+            return new RequestChannel.Response(channelRequest, send, throttleTimeMs);
+        }
+
+        // The size is known before encoding, so throttle_time_ms is set first and the response
+        // encoded once
+        AbstractResponse response = MessageHandler.makeResponse(request);
+        int throttleTimeMs = recordAndGetThrottleTimeMs(request, response.sizeOf());
+        if (request instanceof ProduceRequest && ((ProduceRequest) request).getAcks() == 0) {
+            return RequestChannel.Response.noResponse(channelRequest, throttleTimeMs);
+        }
+        if (throttleTimeMs > 0) {
+            response.setThrottleTimeMs(throttleTimeMs);
+        }
+
+        Send send = response.toSend();
+        return new RequestChannel.Response(channelRequest, send, throttleTimeMs);
+    }
+
+    // Charge the response bytes and the request itself against the client's quotas
+    private int recordAndGetThrottleTimeMs(AbstractRequest request, int responseSize) {
+        String clientId = request.getHeader().getClientId();
+        long nowMs = System.currentTimeMillis();
+        return Math.max(
+                byteRateQuotas.recordAndGetThrottleTimeMs(clientId, responseSize, nowMs),
+                requestRateQuotas.recordAndGetThrottleTimeMs(clientId, 1, nowMs));
+    }
+}
@@ -0,0 +1,186 @@
+package network;
+
+import Kafka.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.EnumSet;
+
+public class KafkaChannel {
+    private static final Logger log = Logger.getLogger(KafkaChannel.class);
+
+    // Why a channel has stopped reading; it resumes once every reason is cleared
+    public enum MuteReason {
+        IN_FLIGHT_LIMIT,
+        MEMORY_PRESSURE,
+        REQUEST_QUEUE_FULL,
+        THROTTLED
+    }
+
+    private final int id;
+    private final SocketChannel socketChannel;
+    private final SelectionKey key;
+    private final int maxReceiveSize;
+    private final MemoryPool memoryPool;
+    private final RequestChannel.Response[] readyResponses; // Completed responses, indexed by sequence
+    private long nextRequestSequence = 0;
+    private long nextResponseSequence = 0;
+    private NetworkReceive receive;
+    private Send send;
+    private int sendThrottleTimeMs;
+    private long throttledUntilMs;
+    private RequestChannel.Request pendingRequest; // Decoded request waiting for room in its API queue
+    private final EnumSet<MuteReason> muteReasons = EnumSet.noneOf(MuteReason.class);
+
+    // Constructor
+    public KafkaChannel(int id, SocketChannel socketChannel, SelectionKey key, int maxReceiveSize,
+                        MemoryPool memoryPool, int maxInFlightRequests) {
+        this.id = id;
+        this.socketChannel = socketChannel;
+        this.key = key;
+        this.maxReceiveSize = maxReceiveSize;
+        this.memoryPool = memoryPool;
+        this.readyResponses = new RequestChannel.Response[maxInFlightRequests];
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public SocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+
+    // Read from the socket, returning a completed receive or null if the frame is still partial
+    public NetworkReceive read() throws IOException {
+        if (receive == null) {
+            receive = new NetworkReceive(maxReceiveSize, memoryPool);
+        }
+        receive.readFrom(socketChannel);
+        if (!receive.complete()) {
+            return null;
+        }
+        NetworkReceive completed = receive;
+        receive = null;
+        return completed;
+    }
+
+    // Assign the sequence number used to put this request's response back in order
+    public long nextRequestSequence() {
+        return nextRequestSequence++;
+    }
+
+    // Requests read but whose responses have not been fully written yet
+    public int inFlightRequests() {
+        return (int) (nextRequestSequence - nextResponseSequence);
+    }
+
+    public int maxInFlightRequests() {
+        return readyResponses.length;
+    }
+
+    // Park a completed response until every earlier response has been sent
+    public void addResponse(RequestChannel.Response response) {
+        readyResponses[(int) (response.getRequest().getSequence() % readyResponses.length)] = response;
+    }
+
+    // The next response in request order, if it is ready and nothing is being sent
+    public RequestChannel.Response pollNextResponse() {
+        if (send != null) {
+            return null;
+        }
+        int slot = (int) (nextResponseSequence % readyResponses.length);
+        RequestChannel.Response response = readyResponses[slot];
+        readyResponses[slot] = null;
+        return response;
+    }
+
+    // Start sending a response; only one send may be in progress at a time
+    public void setSend(Send send, int throttleTimeMs) {
+        if (this.send != null) {
+            throw new IllegalStateException("Attempt to begin a send while one is in progress on connection " + id);
+        }
+        this.send = send;
+        this.sendThrottleTimeMs = throttleTimeMs;
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    // Write the pending send, returning true once it has been fully written
+    public boolean write() throws IOException {
+        if (send == null) {
+            return false;
+        }
+        send.writeTo(socketChannel);
+        if (!send.completed()) {
+            return false;
+        }
+        send = null;
+        nextResponseSequence++;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        return true;
+    }
+
+    public boolean hasSend() {
+        return send != null;
+    }
+
+    // Throttle time of the response that was just written
+    public int getSendThrottleTimeMs() {
+        return sendThrottleTimeMs;
+    }
+
+    public long getThrottledUntilMs() {
+        return throttledUntilMs;
+    }
+
+    public void setThrottledUntilMs(long throttledUntilMs) {
+        this.throttledUntilMs = throttledUntilMs;
+    }
+
+    public RequestChannel.Request getPendingRequest() {
+        return pendingRequest;
+    }
+
+    public void setPendingRequest(RequestChannel.Request pendingRequest) {
+        this.pendingRequest = pendingRequest;
+    }
+
+    // A frame header has been read but the memory pool could not supply its buffer
+    public boolean isWaitingForMemory() {
+        return receive != null && receive.waitingForMemory();
+    }
+
+    // Stop reading from the connection until every mute reason is cleared
+    public void mute(MuteReason reason) {
+        muteReasons.add(reason);
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+    }
+
+    public void unmute(MuteReason reason) {
+        if (muteReasons.remove(reason) && muteReasons.isEmpty() && key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    public boolean isMuted() {
+        return !muteReasons.isEmpty();
+    }
+
+    public boolean isMuted(MuteReason reason) {
+        return muteReasons.contains(reason);
+    }
+
+    public void close() {
+        if (receive != null) {
+            receive.releaseBuffer(); // Partially read frame
+            receive = null;
+        }
+        key.cancel();
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.error("Error closing client socket: " + e.getMessage());
+        }
+    }
+}
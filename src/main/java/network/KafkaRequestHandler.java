@@ -0,0 +1,53 @@
+package network;
+
+import Kafka.Constants;
+import Kafka.Logger;
+
+public class KafkaRequestHandler implements Runnable {
+    private static final Logger log = Logger.getLogger(KafkaRequestHandler.class);
+
+    private final int id;
+    private final Constants.ApiKey apiKey;
+    private final RequestChannel requestChannel;
+    private final KafkaApis apis;
+    private volatile boolean running = true;
+
+    // Constructor
+    public KafkaRequestHandler(int id, Constants.ApiKey apiKey, RequestChannel requestChannel, KafkaApis apis) {
+        this.id = id;
+        this.apiKey = apiKey;
+        this.requestChannel = requestChannel;
+        this.apis = apis;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            RequestChannel.Request request;
+            try {
+                request = requestChannel.receiveRequest(apiKey, 300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (request == null) {
+                continue;
+            }
+            handle(request);
+        }
+    }
+
+    // Build and encode the response, or ask the connection owner to close the connection on failure
+    private void handle(RequestChannel.Request request) {
+        try {
+            requestChannel.sendResponse(apis.handle(request));
+        } catch (Exception e) {
+            log.error("Request handler " + apiKey + "-" + id + " error: " + e.getMessage());
+            requestChannel.sendResponse(RequestChannel.Response.closeConnection(request));
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+    }
+}
@@ -0,0 +1,36 @@
+package network;
+
+import Kafka.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KafkaRequestHandlerPool {
+    private final List<KafkaRequestHandler> handlers = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    // Constructor
+    public KafkaRequestHandlerPool(Constants.ApiKey apiKey, int numThreads, RequestChannel requestChannel, KafkaApis apis) {
+        for (int i = 0; i < numThreads; i++) {
+            KafkaRequestHandler handler = new KafkaRequestHandler(i, apiKey, requestChannel, apis);
+            Thread thread = new Thread(handler, "kafka-request-handler-" + apiKey.name().toLowerCase() + "-" + i);
+            handlers.add(handler);
+            threads.add(thread);
+        }
+    }
+
+    public void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    public void shutdown() throws InterruptedException {
+        for (KafkaRequestHandler handler : handlers) {
+            handler.shutdown();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
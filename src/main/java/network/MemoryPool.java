@@ -0,0 +1,177 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Pool of reusable request buffers in power-of-two size classes, bounded by a global memory budget.
+// The budget covers buffers handed out as well as free buffers kept for reuse; free buffers are
+// dropped when a new allocation needs their memory.
+public class MemoryPool {
+    private static final int MIN_CLASS_SHIFT = 10; // Smallest size class is 1 KB
+    private static final int MAX_CACHED_PER_CLASS = 64;
+
+    private final long capacity;
+    private final int maxBufferSize;
+    private final boolean direct;
+    private final long maxWaitMs;
+    private final List<Deque<ByteBuffer>> freeLists; // Indexed by size class
+    private final AtomicInteger[] freeCounts;
+    private final AtomicLong availableMemory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition memoryReleased = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    // Constructor
+    public MemoryPool(long capacity, int maxBufferSize, boolean direct, long maxWaitMs) {
+        this.capacity = capacity;
+        this.maxBufferSize = maxBufferSize;
+        this.direct = direct;
+        this.maxWaitMs = maxWaitMs;
+        this.availableMemory = new AtomicLong(capacity);
+
+        int numClasses = sizeClass(Math.max(maxBufferSize, 1)) + 1;
+        this.freeLists = new ArrayList<>(numClasses);
+        this.freeCounts = new AtomicInteger[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            freeLists.add(new ConcurrentLinkedDeque<>());
+            freeCounts[i] = new AtomicInteger();
+        }
+    }
+
+    // Allocate a buffer with exactly size bytes remaining, or return null if the budget is exhausted
+    public ByteBuffer tryAllocate(int size) throws IOException {
+        if (size < 0 || size > maxBufferSize) {
+            throw new IOException("Invalid request size " + size + " (max " + maxBufferSize + ")");
+        }
+        int sizeClass = sizeClass(size);
+        int classCapacity = 1 << (sizeClass + MIN_CLASS_SHIFT);
+        if (classCapacity > capacity) {
+            throw new IOException("Request of " + size + " bytes exceeds the request memory budget of " + capacity);
+        }
+
+        // Reuse a free buffer of the same class; its memory is already accounted for
+        ByteBuffer buffer = freeLists.get(sizeClass).pollFirst();
+        if (buffer != null) {
+            freeCounts[sizeClass].decrementAndGet();
+            buffer.clear().limit(size);
+            return buffer;
+        }
+
+        if (!reserve(classCapacity)) {
+            return null;
+        }
+        buffer = direct ? ByteBuffer.allocateDirect(classCapacity) : ByteBuffer.allocate(classCapacity);
+        buffer.limit(size);
+        return buffer;
+    }
+
+    // Allocate a buffer, waiting up to the configured time for memory to be released
+    public ByteBuffer allocate(int size) throws IOException, InterruptedException {
+        ByteBuffer buffer = tryAllocate(size);
+        if (buffer != null) {
+            return buffer;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                lock.lock();
+                try {
+                    buffer = tryAllocate(size);
+                    if (buffer != null) {
+                        return buffer;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new IOException("Timed out waiting for " + size + " bytes of request memory");
+                    }
+                    memoryReleased.awaitNanos(remaining);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    // Return a buffer obtained from this pool
+    public void release(ByteBuffer buffer) {
+        int sizeClass = sizeClass(buffer.capacity());
+        if (freeCounts[sizeClass].incrementAndGet() <= MAX_CACHED_PER_CLASS) {
+            freeLists.get(sizeClass).offerFirst(buffer);
+        } else {
+            freeCounts[sizeClass].decrementAndGet();
+            availableMemory.addAndGet(buffer.capacity());
+        }
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                memoryReleased.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Memory neither handed out nor held in free lists
+    public long availableMemory() {
+        return availableMemory.get();
+    }
+
+    // True when nothing is left in the budget and no free buffer could be reused or dropped
+    public boolean isOutOfMemory() {
+        if (availableMemory.get() > 0) {
+            return false;
+        }
+        for (AtomicInteger freeCount : freeCounts) {
+            if (freeCount.get() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Take bytes from the budget, dropping cached free buffers if that is what it takes
+    private boolean reserve(int bytes) {
+        while (true) {
+            long available = availableMemory.get();
+            if (available >= bytes) {
+                if (availableMemory.compareAndSet(available, available - bytes)) {
+                    return true;
+                }
+                continue;
+            }
+            if (!evictFreeBuffer()) {
+                return false;
+            }
+        }
+    }
+
+    // Drop the largest cached free buffer, returning its memory to the budget
+    private boolean evictFreeBuffer() {
+        for (int i = freeLists.size() - 1; i >= 0; i--) {
+            ByteBuffer buffer = freeLists.get(i).pollLast();
+            if (buffer != null) {
+                freeCounts[i].decrementAndGet();
+                availableMemory.addAndGet(buffer.capacity());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(0, shift - MIN_CLASS_SHIFT);
+    }
+}
@@ -0,0 +1,46 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+import java.util.List;
+
+public class MultiSend implements Send {
+    private final List<Send> sends;
+    private final long size;
+    private int current = 0;
+
+    // Constructor
+    public MultiSend(List<Send> sends) {
+        this.sends = sends;
+        long total = 0;
+        for (Send send : sends) {
+            total += send.size();
+        }
+        this.size = total;
+    }
+
+    @Override
+    public boolean completed() {
+        return current >= sends.size();
+    }
+
+    // Write the parts in order, stopping as soon as the channel stops accepting bytes
+    @Override
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        long written = 0;
+        while (current < sends.size()) {
+            Send send = sends.get(current);
+            written += send.writeTo(channel);
+            if (!send.completed()) {
+                break;
+            }
+            current++;
+        }
+        return written;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+}
@@ -0,0 +1,78 @@
+package network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+public class NetworkReceive {
+    private final int maxSize;
+    private final MemoryPool memoryPool;
+    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+    private int requestedSize = -1;
+    private ByteBuffer payload;
+
+    // Constructor
+    public NetworkReceive(int maxSize, MemoryPool memoryPool) {
+        this.maxSize = maxSize;
+        this.memoryPool = memoryPool;
+    }
+
+    // Read the 4-byte length prefix and then the frame into a pooled buffer, returning the number of
+    // bytes read. If the pool has no memory left the frame stays unread until a later call
+    public long readFrom(ReadableByteChannel channel) throws IOException {
+        long read = 0;
+        if (sizeBuffer.hasRemaining()) {
+            int n = channel.read(sizeBuffer);
+            if (n < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+            read += n;
+            if (sizeBuffer.hasRemaining()) {
+                return read;
+            }
+            sizeBuffer.flip();
+            requestedSize = sizeBuffer.getInt();
+            if (requestedSize < 0 || requestedSize > maxSize) {
+                throw new IOException("Invalid request size " + requestedSize + " (max " + maxSize + ")");
+            }
+        }
+        if (payload == null) {
+            payload = memoryPool.tryAllocate(requestedSize);
+            if (payload == null) {
+                return read;
+            }
+        }
+        if (payload.hasRemaining()) {
+            int n = channel.read(payload);
+            if (n < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    // Length prefix read but no buffer could be allocated yet
+    public boolean waitingForMemory() {
+        return requestedSize >= 0 && payload == null;
+    }
+
+    public boolean complete() {
+        return !sizeBuffer.hasRemaining() && payload != null && !payload.hasRemaining();
+    }
+
+    // Flipped frame contents (without the length prefix); the buffer must be released to the pool
+    public ByteBuffer payload() {
+        payload.flip();
+        return payload;
+    }
+
+    // Give the buffer back to the pool if the frame will never be handed out
+    public void releaseBuffer() {
+        if (payload != null) {
+            memoryPool.release(payload);
+            payload = null;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package network;
+
+import Kafka.Logger;
+import messages.AbstractRequest;
+import messages.MessageHandler;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class Processor implements Runnable {
+    private static final Logger log = Logger.getLogger(Processor.class);
+
+    private final int id;
+    private final RequestChannel requestChannel;
+    private final int maxRequestSize;
+    private final int maxInFlightRequests;
+    private final MemoryPool memoryPool;
+    private final Selector selector;
+    private final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+    private final Queue<RequestChannel.Response> responseQueue = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, KafkaChannel> channels = new HashMap<>();
+    private final List<KafkaChannel> memoryPressureMuted = new ArrayList<>();
+    private final List<KafkaChannel> requestQueueFullMuted = new ArrayList<>();
+    private final PriorityQueue<KafkaChannel> throttledChannels =
+            new PriorityQueue<>(Comparator.comparingLong(KafkaChannel::getThrottledUntilMs));
+    private int nextConnectionId = 0;
+    private volatile boolean running = true;
+
+    // Constructor
+    public Processor(int id, RequestChannel requestChannel, int maxRequestSize, int maxInFlightRequests,
+                     MemoryPool memoryPool) throws IOException {
+        this.id = id;
+        this.requestChannel = requestChannel;
+        this.maxRequestSize = maxRequestSize;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.memoryPool = memoryPool;
+        this.selector = Selector.open();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // Called by the acceptor to hand over a new connection
+    public void accept(SocketChannel socketChannel) {
+        newConnections.add(socketChannel);
+        selector.wakeup();
+    }
+
+    // Called by request handler threads through each request's response listener
+    public void enqueueResponse(RequestChannel.Response response) {
+        responseQueue.add(response);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                configureNewConnections();
+                processNewResponses();
+                unmuteAfterMemoryPressure();
+                retryPendingRequests();
+                unmuteThrottledChannels();
+                selector.select(pollTimeoutMs());
+                processSelectedKeys();
+            } catch (Exception e) {
+                log.error("Processor " + id + " error: " + e.getMessage());
+            }
+        }
+        for (KafkaChannel channel : channels.values()) {
+            channel.close();
+        }
+        channels.clear();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.error("Error closing selector: " + e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    // Register connections handed over by the acceptor
+    private void configureNewConnections() {
+        SocketChannel socketChannel;
+        while ((socketChannel = newConnections.poll()) != null) {
+            try {
+                socketChannel.configureBlocking(false);
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                int connectionId = nextConnectionId++;
+                SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+                KafkaChannel channel = new KafkaChannel(connectionId, socketChannel, key, maxRequestSize, memoryPool, maxInFlightRequests);
+                key.attach(channel);
+                channels.put(connectionId, channel);
+            } catch (IOException e) {
+                log.error("Error configuring new connection: " + e.getMessage());
+                closeQuietly(socketChannel);
+            }
+        }
+    }
+
+    // Collect responses produced by the handler threads and start sending the ones that are next in order
+    private void processNewResponses() {
+        RequestChannel.Response response;
+        while ((response = responseQueue.poll()) != null) {
+            KafkaChannel channel = channels.get(response.getRequest().getConnectionId());
+            if (channel == null) {
+                continue; // Connection was closed while the request was being handled
+            }
+            channel.addResponse(response);
+            beginNextSend(channel);
+        }
+    }
+
+    private void beginNextSend(KafkaChannel channel) {
+        RequestChannel.Response response = channel.pollNextResponse();
+        if (response == null) {
+            return;
+        }
+        if (response.isCloseConnection()) {
+            close(channel);
+        } else {
+            channel.setSend(response.getSend(), response.getThrottleTimeMs());
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            KafkaChannel channel = (KafkaChannel) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    // Read every complete frame available, up to the in-flight limit
+                    NetworkReceive receive;
+                    while (!channel.isMuted() && (receive = channel.read()) != null) {
+                        handleReceive(channel, receive);
+                    }
+                    if (channel.isWaitingForMemory()) {
+                        // Stop polling this connection until the pool has memory again
+                        channel.mute(KafkaChannel.MuteReason.MEMORY_PRESSURE);
+                        memoryPressureMuted.add(channel);
+                    }
+                }
+                if (key.isValid() && key.isWritable() && channel.write()) {
+                    // Response fully written, a slot is free again
+                    channel.unmute(KafkaChannel.MuteReason.IN_FLIGHT_LIMIT);
+                    if (channel.getSendThrottleTimeMs() > 0) {
+                        throttle(channel, channel.getSendThrottleTimeMs());
+                    }
+                    beginNextSend(channel);
+                }
+            } catch (IOException e) {
+                close(channel);
+            } catch (Exception e) {
+                log.error("Error handling client: " + e.getMessage());
+                close(channel);
+            }
+        }
+    }
+
+    // Resume connections that were muted for lack of request memory once some has been released
+    private void unmuteAfterMemoryPressure() {
+        if (memoryPressureMuted.isEmpty() || memoryPool.isOutOfMemory()) {
+            return;
+        }
+        for (KafkaChannel channel : memoryPressureMuted) {
+            channel.unmute(KafkaChannel.MuteReason.MEMORY_PRESSURE);
+        }
+        memoryPressureMuted.clear();
+    }
+
+    // Retry requests whose API queue was full, resuming the connection once its request is queued
+    private void retryPendingRequests() {
+        Iterator<KafkaChannel> iterator = requestQueueFullMuted.iterator();
+        while (iterator.hasNext()) {
+            KafkaChannel channel = iterator.next();
+            if (requestChannel.trySendRequest(channel.getPendingRequest())) {
+                channel.setPendingRequest(null);
+                channel.unmute(KafkaChannel.MuteReason.REQUEST_QUEUE_FULL);
+                iterator.remove();
+            }
+        }
+    }
+
+    // Stop reading from a client that exceeded its quota until the throttle time has passed
+    private void throttle(KafkaChannel channel, int throttleTimeMs) {
+        throttledChannels.remove(channel);
+        channel.setThrottledUntilMs(System.currentTimeMillis() + throttleTimeMs);
+        channel.mute(KafkaChannel.MuteReason.THROTTLED);
+        throttledChannels.add(channel);
+    }
+
+    private void unmuteThrottledChannels() {
+        long nowMs = System.currentTimeMillis();
+        while (!throttledChannels.isEmpty() && throttledChannels.peek().getThrottledUntilMs() <= nowMs) {
+            throttledChannels.poll().unmute(KafkaChannel.MuteReason.THROTTLED);
+        }
+    }
+
+    // Wake up in time to unmute the next throttled channel, or soon if requests are waiting for queue space
+    private long pollTimeoutMs() {
+        if (!requestQueueFullMuted.isEmpty()) {
+            return 5;
+        }
+        if (throttledChannels.isEmpty()) {
+            return 300;
+        }
+        long untilNext = throttledChannels.peek().getThrottledUntilMs() - System.currentTimeMillis();
+        return Math.max(1, Math.min(300, untilNext));
+    }
+
+    // Decode a complete frame and queue it for its API's handler pool. The network thread never
+    // blocks on a full queue; the connection is muted and the request retried on the next poll
+    private void handleReceive(KafkaChannel channel, NetworkReceive receive) throws IOException {
+        ByteBuffer payload = receive.payload();
+        AbstractRequest request;
+        try {
+            request = MessageHandler.decodeRequest(payload);
+        } finally {
+            memoryPool.release(payload);
+        }
+
+        long sequence = channel.nextRequestSequence();
+        if (channel.inFlightRequests() >= channel.maxInFlightRequests()) {
+            channel.mute(KafkaChannel.MuteReason.IN_FLIGHT_LIMIT); // Stop reading until a response has been written
+        }
+        RequestChannel.Request channelRequest = new RequestChannel.Request(this::enqueueResponse, channel.getId(), sequence, request);
+        if (!requestChannel.trySendRequest(channelRequest)) {
+            channel.setPendingRequest(channelRequest);
+            channel.mute(KafkaChannel.MuteReason.REQUEST_QUEUE_FULL);
+            requestQueueFullMuted.add(channel);
+        }
+    }
+
+    private void close(KafkaChannel channel) {
+        channels.remove(channel.getId());
+        memoryPressureMuted.remove(channel);
+        requestQueueFullMuted.remove(channel);
+        throttledChannels.remove(channel);
+        channel.close();
+    }
+
+    private static void closeQuietly(SocketChannel socketChannel) {
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.error("Error closing client socket: " + e.getMessage());
+        }
+    }
+}
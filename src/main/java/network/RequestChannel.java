@@ -0,0 +1,133 @@
+package network;
+
+import Kafka.Constants;
+import messages.AbstractRequest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// One bounded request queue per API, each drained by its own handler pool, so a backlog of slow
+// Fetch requests never delays ApiVersions or metadata calls queued behind it
+public class RequestChannel {
+    private final Map<Constants.ApiKey, BlockingQueue<Request>> requestQueues = new EnumMap<>(Constants.ApiKey.class);
+
+    // Constructor
+    public RequestChannel(int queueSize, int controlPlaneQueueSize) {
+        for (Constants.ApiKey apiKey : Constants.ApiKey.values()) {
+            int size = apiKey.isControlPlane() ? controlPlaneQueueSize : queueSize;
+            requestQueues.put(apiKey, new ArrayBlockingQueue<>(size));
+        }
+    }
+
+    // Queue a request for its API's handler pool, blocking while that queue is full
+    public void sendRequest(Request request) throws InterruptedException {
+        queueFor(request).put(request);
+    }
+
+    // Queue a request without blocking, returning false if its API's queue is full
+    public boolean trySendRequest(Request request) {
+        return queueFor(request).offer(request);
+    }
+
+    // Take the next request for an API, or null after the timeout
+    public Request receiveRequest(Constants.ApiKey apiKey, long timeoutMs) throws InterruptedException {
+        return requestQueues.get(apiKey).poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Hand a response back to whoever owns the connection
+    public void sendResponse(Response response) {
+        response.getRequest().getResponseListener().onResponse(response);
+    }
+
+    private BlockingQueue<Request> queueFor(Request request) {
+        return requestQueues.get(request.getRequest().getHeader().getApiKey());
+    }
+
+    @FunctionalInterface
+    public interface ResponseListener {
+        void onResponse(Response response);
+    }
+
+    public static class Request {
+        private final ResponseListener responseListener;
+        private final int connectionId;
+        private final long sequence;
+        private final AbstractRequest request;
+        private final long receivedTimeNanos;
+
+        // Constructor
+        public Request(ResponseListener responseListener, int connectionId, long sequence, AbstractRequest request) {
+            this.responseListener = responseListener;
+            this.connectionId = connectionId;
+            this.sequence = sequence;
+            this.request = request;
+            this.receivedTimeNanos = System.nanoTime();
+        }
+
+        // Getters
+        public ResponseListener getResponseListener() {
+            return responseListener;
+        }
+
+        public int getConnectionId() {
+            return connectionId;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public AbstractRequest getRequest() {
+            return request;
+        }
+
+        public long getReceivedTimeNanos() {
+            return receivedTimeNanos;
+        }
+    }
+
+    public static class Response {
+        private final Request request;
+        private final Send send;
+        private final int throttleTimeMs;
+
+        // Constructor
+        public Response(Request request, Send send, int throttleTimeMs) {
+            this.request = request;
+            this.send = send;
+            this.throttleTimeMs = throttleTimeMs;
+        }
+
+        // Response that tells the connection owner to drop the connection
+        public static Response closeConnection(Request request) {
+            return new Response(request, null, 0);
+        }
+
+        // Response with nothing to write, for requests the client expects no answer to. It still
+        // takes its turn, so the responses after it stay in order
+        public static Response noResponse(Request request, int throttleTimeMs) {
+            return new Response(request, new ByteBufferSend(), throttleTimeMs);
+        }
+
+        // Getters
+        public Request getRequest() {
+            return request;
+        }
+
+        public Send getSend() {
+            return send;
+        }
+
+        // How long the connection stays muted once this response has been sent
+        public int getThrottleTimeMs() {
+            return throttleTimeMs;
+        }
+
+        public boolean isCloseConnection() {
+            return send == null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package network;
+
+import messages.AbstractResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Fully encoded image of a response that is the same for every request apart from the
+// correlation id and throttle_time_ms. Sending it costs an 8-byte prefix; the rest of the image
+// is shared read-only by every send. A response version without throttle_time_ms never reports one
+public class ResponseTemplate {
+    private static final int CORRELATION_ID_OFFSET = 4; // After the length prefix
+
+    private final ByteBuffer image;
+    private final int throttleTimeOffset; // -1 if the response has no throttle_time_ms
+
+    // Constructor
+    private ResponseTemplate(ByteBuffer image, int throttleTimeOffset) {
+        this.image = image;
+        this.throttleTimeOffset = throttleTimeOffset;
+    }
+
+    // Encode a response once; its throttle time must still be 0
+    public static ResponseTemplate of(AbstractResponse response) throws IOException {
+        int throttleTimeOffset = response.throttleTimeOffset();
+        ByteBuffer image = response.toByteBuffer();
+        if (throttleTimeOffset >= 0 && image.getInt(throttleTimeOffset) != 0) {
+            throw new IllegalArgumentException("Template encoded with a throttle time: " + response);
+        }
+        return new ResponseTemplate(image.asReadOnlyBuffer(), throttleTimeOffset);
+    }
+
+    public int sizeOf() {
+        return image.remaining();
+    }
+
+    // Stamp the image for one request. An unthrottled send shares the body; a throttled one is
+    // rare enough to take a private copy with throttle_time_ms patched in
+    public Send toSend(int correlationId, int throttleTimeMs) {
+        if (throttleTimeMs == 0 || throttleTimeOffset < 0) {
+            ByteBuffer prefix = ByteBuffer.allocate(CORRELATION_ID_OFFSET + 4);
+            prefix.putInt(image.getInt(0)).putInt(correlationId).flip();
+            return new ByteBufferSend(prefix, image.duplicate().position(prefix.limit()));
+        }
+        ByteBuffer copy = ByteBuffer.allocate(image.remaining());
+        copy.put(image.duplicate()).flip();
+        copy.putInt(CORRELATION_ID_OFFSET, correlationId);
+        copy.putInt(throttleTimeOffset, throttleTimeMs);
+        return new ByteBufferSend(copy);
+    }
+}
@@ -0,0 +1,67 @@
+package network;
+
+import messages.AbstractRequest;
+import messages.ApiVersionsResponse;
+import messages.DescribeTopicPartitionsRequest;
+import messages.MessageHandler;
+import messages.generated.DescribeTopicPartitionsRequestData;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Pre-encoded responses for requests whose answer depends only on the request body and the
+// cluster metadata. ApiVersions has one image per request version, since the layout changes with
+// it, and one shared by every version too new to serve, so a reconnect storm costs a lookup and an
+// 8-byte prefix per client. DescribeTopicPartitions images are keyed by the request data. The
+// metadata is loaded once at startup and never changes after, so no image ever goes stale
+public class ResponseTemplateCache {
+    private static final int UNSUPPORTED_VERSION = -1; // Key of the UNSUPPORTED_VERSION image
+
+    private final int maxEntries;
+    private final Map<DescribeTopicPartitionsRequestData, ResponseTemplate> describeTopicPartitions =
+            new ConcurrentHashMap<>();
+    private final Map<Integer, ResponseTemplate> apiVersions = new ConcurrentHashMap<>();
+
+    // Constructor
+    public ResponseTemplateCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    // Template for the request, or null if its response has to be built every time
+    public ResponseTemplate get(AbstractRequest request) throws IOException {
+        return switch (request.getHeader().getApiKey()) {
+            case API_VERSIONS -> apiVersionsTemplate(request);
+            case DESCRIBE_TOPIC_PARTITIONS -> describeTopicPartitionsTemplate((DescribeTopicPartitionsRequest) request);
+            default -> null;
+        };
+    }
+
+    // Racing threads may both encode the first image; either result is correct
+    private ResponseTemplate apiVersionsTemplate(AbstractRequest request) throws IOException {
+        int version = request.getHeader().getApiVersion();
+        int key = ApiVersionsResponse.isSupportedVersion(version) ? version : UNSUPPORTED_VERSION;
+        ResponseTemplate template = apiVersions.get(key);
+        if (template == null) {
+            template = ResponseTemplate.of(MessageHandler.makeResponse(request));
+            apiVersions.put(key, template);
+        }
+        return template;
+    }
+
+    private ResponseTemplate describeTopicPartitionsTemplate(DescribeTopicPartitionsRequest request) throws IOException {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        ResponseTemplate template = describeTopicPartitions.get(request.data());
+        if (template != null) {
+            return template;
+        }
+        template = ResponseTemplate.of(MessageHandler.makeResponse(request));
+        // A full cache stops growing rather than evicting; the response is still served from the image
+        if (describeTopicPartitions.size() < maxEntries) {
+            describeTopicPartitions.put(request.data(), template);
+        }
+        return template;
+    }
+}
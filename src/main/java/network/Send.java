@@ -0,0 +1,16 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+
+public interface Send {
+
+    // True once every byte has been written
+    boolean completed();
+
+    // Write as much as the channel accepts, returning the number of bytes written
+    long writeTo(GatheringByteChannel channel) throws IOException;
+
+    // Total size of the send in bytes
+    long size();
+}
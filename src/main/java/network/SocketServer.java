@@ -0,0 +1,71 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SocketServer {
+    private final String host;
+    private final int port;
+    private final int numProcessors;
+    private final int maxRequestSize;
+    private final int maxInFlightRequests;
+    private final MemoryPool memoryPool;
+    private final RequestChannel requestChannel;
+    private final List<Processor> processors = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private ServerSocketChannel serverChannel;
+    private Acceptor acceptor;
+    private Thread acceptorThread;
+
+    // Constructor
+    public SocketServer(String host, int port, int numProcessors, int maxRequestSize, int maxInFlightRequests,
+                        MemoryPool memoryPool, RequestChannel requestChannel) {
+        this.host = host;
+        this.port = port;
+        this.numProcessors = numProcessors;
+        this.maxRequestSize = maxRequestSize;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.memoryPool = memoryPool;
+        this.requestChannel = requestChannel;
+    }
+
+    // Bind the listener and start the acceptor and processor threads
+    public void startup() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true); // Enable address reuse
+        serverChannel.bind(new InetSocketAddress(host, port));
+
+        for (int i = 0; i < numProcessors; i++) {
+            Processor processor = new Processor(i, requestChannel, maxRequestSize, maxInFlightRequests, memoryPool);
+            processors.add(processor);
+            threads.add(new Thread(processor, "kafka-network-thread-" + i));
+        }
+        acceptor = new Acceptor(serverChannel, processors);
+        acceptorThread = new Thread(acceptor, "kafka-socket-acceptor");
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        acceptorThread.start();
+    }
+
+    // Block until the acceptor exits
+    public void awaitShutdown() throws InterruptedException {
+        acceptorThread.join();
+    }
+
+    public void shutdown() throws IOException, InterruptedException {
+        acceptor.shutdown();
+        acceptorThread.join();
+        serverChannel.close();
+        for (Processor processor : processors) {
+            processor.shutdown();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package quota;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Tracks one kind of usage (bytes or requests) per client id and turns quota violations into throttle time
+public class ClientQuotaManager {
+    private final int numWindows;
+    private final long windowMs;
+    private final Function<String, Long> quotaLookup;
+    private final Map<String, SlidingWindowRate> sensors = new ConcurrentHashMap<>();
+
+    // Constructor
+    public ClientQuotaManager(int numWindows, long windowMs, Function<String, Long> quotaLookup) {
+        this.numWindows = numWindows;
+        this.windowMs = windowMs;
+        this.quotaLookup = quotaLookup;
+    }
+
+    // Record usage and return how long the client must back off, or 0 if it is within its quota
+    public int recordAndGetThrottleTimeMs(String clientId, long value, long nowMs) {
+        String key = clientId == null ? "" : clientId;
+        long quota = quotaLookup.apply(key);
+        if (quota == Long.MAX_VALUE) {
+            return 0; // Unlimited
+        }
+        SlidingWindowRate rate = sensors.computeIfAbsent(key, k -> new SlidingWindowRate(numWindows, windowMs));
+        rate.record(value, nowMs);
+        return throttleTimeMs(rate.measure(nowMs), quota, rate.windowSpanMs());
+    }
+
+    // Delay that brings the observed rate back down to the quota over the measurement window
+    static int throttleTimeMs(double observedRate, long quota, long windowSpanMs) {
+        if (observedRate <= quota) {
+            return 0;
+        }
+        double throttleMs = (observedRate - quota) / quota * windowSpanMs;
+        return (int) Math.min(throttleMs, windowSpanMs);
+    }
+}
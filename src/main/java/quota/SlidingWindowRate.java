@@ -0,0 +1,65 @@
+package quota;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Rate over the last numWindows fixed windows. Recording is lock-free: each window is an immutable
+// start time plus a LongAdder, and a stale window is replaced with a single compare-and-set.
+public class SlidingWindowRate {
+    private final int numWindows;
+    private final long windowMs;
+    private final AtomicReferenceArray<Window> windows;
+
+    private static final class Window {
+        private final long startMs;
+        private final LongAdder value = new LongAdder();
+
+        private Window(long startMs) {
+            this.startMs = startMs;
+        }
+    }
+
+    // Constructor
+    public SlidingWindowRate(int numWindows, long windowMs) {
+        this.numWindows = numWindows;
+        this.windowMs = windowMs;
+        this.windows = new AtomicReferenceArray<>(numWindows);
+    }
+
+    public void record(long value, long nowMs) {
+        long startMs = nowMs - nowMs % windowMs;
+        int index = (int) ((nowMs / windowMs) % numWindows);
+        Window window = windows.get(index);
+        while (window == null || window.startMs < startMs) {
+            Window fresh = new Window(startMs);
+            if (windows.compareAndSet(index, window, fresh)) {
+                window = fresh;
+                break;
+            }
+            window = windows.get(index);
+        }
+        window.value.add(value);
+    }
+
+    // Recorded value per second over the windows that are still current
+    public double measure(long nowMs) {
+        long oldestAllowed = nowMs - numWindows * windowMs;
+        long total = 0;
+        long oldestStart = nowMs;
+        for (int i = 0; i < numWindows; i++) {
+            Window window = windows.get(i);
+            if (window != null && window.startMs > oldestAllowed) {
+                total += window.value.sum();
+                oldestStart = Math.min(oldestStart, window.startMs);
+            }
+        }
+        // Never divide by less than the full window span, so a burst right at startup is not overstated
+        long elapsedMs = Math.max(nowMs - oldestStart, (numWindows - 1) * windowMs);
+        return total * 1000.0 / elapsedMs;
+    }
+
+    // Span the rate is measured over
+    public long windowSpanMs() {
+        return numWindows * windowMs;
+    }
+}